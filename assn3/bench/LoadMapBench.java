@@ -0,0 +1,157 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares MapIO.loadMap with the original line based loader.
+ * Usage: java LoadMapBench [lines] [rounds]
+ * Generates a grid map of roughly the requested number of lines (default
+ * one million), then reports rooms loaded per second for each loader.
+ * @author JF
+ */
+public class LoadMapBench {
+
+    /* Main function */
+    public static void main(String[] args) throws Exception {
+        int lines = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        File f = File.createTempFile("bench", ".map");
+        f.deleteOnExit();
+        int rooms = generate(f.getPath(), lines);
+        System.out.println(rooms + " rooms, " + f.length() + " bytes");
+        double oldRate = 0;
+        double newRate = 0;
+        for (int i = 0; i < rounds; ++i) {
+            oldRate = Math.max(oldRate, rate(rooms, f.getPath(), false));
+            newRate = Math.max(newRate, rate(rooms, f.getPath(), true));
+        }
+        System.out.printf("line loader:  %.0f rooms/s%n", oldRate);
+        System.out.printf("MapIO.loadMap: %.0f rooms/s (%.1fx)%n", newRate,
+                newRate / oldRate);
+    }
+
+    /* Time one load and return rooms per second */
+    private static double rate(int rooms, String filename, boolean current) {
+        System.gc();    // don't charge one loader for the other's garbage
+        long start = System.nanoTime();
+        Object[] res = current ? MapIO.loadMap(filename)
+                : lineLoad(filename);
+        long elapsed = System.nanoTime() - start;
+        if (res == null) {
+            throw new IllegalStateException("load failed");
+        }
+        return rooms / (elapsed / 1e9);
+    }
+
+    /* Write a square grid with a Thing in most rooms. Each room costs
+     * about five lines (description, exit count, exits, item count, item).
+     */
+    private static int generate(String filename, int lines)
+            throws ExitExistsException, NullRoomException {
+        int side = (int)Math.sqrt(lines / 5.0);
+        Room[][] g = new Room[side][side];
+        Random rnd = new Random(2018);
+        for (int x = 0; x < side; ++x) {
+            for (int y = 0; y < side; ++y) {
+                g[x][y] = new Room("room at " + x + " " + y);
+                switch (rnd.nextInt(3)) {
+                case 0:
+                    g[x][y].enter(new Critter("rat", "a rat",
+                            rnd.nextDouble() * 100, rnd.nextInt(10)));
+                    break;
+                case 1:
+                    g[x][y].enter(new Treasure("gold",
+                            rnd.nextDouble() * 1000));
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+        for (int x = 0; x < side; ++x) {
+            for (int y = 0; y < side; ++y) {
+                if (x + 1 < side) {
+                    Room.makeExitPair(g[x][y], g[x + 1][y], "East", "West");
+                }
+                if (y + 1 < side) {
+                    Room.makeExitPair(g[x][y], g[x][y + 1], "South",
+                            "North");
+                }
+            }
+        }
+        g[0][0].enter(new Explorer("doris", "a doris"));
+        if (!MapIO.saveMap(g[0][0], filename)) {
+            throw new IllegalStateException("save failed");
+        }
+        return side * side;
+    }
+
+    /* The original loader: readLine, parseInt, substring and decode */
+    private static Object[] lineLoad(String filename) {
+        Player player = null;
+        try {
+            BufferedReader bf = new BufferedReader(new FileReader(filename));
+            String line = bf.readLine();
+            int idcap = Integer.parseInt(line);
+            Room[] rooms = new Room[idcap];
+            for (int i = 0; i < idcap; ++i) {
+                rooms[i] = new Room(bf.readLine());
+            }
+            for (int i = 0; i < idcap; ++i) {
+                int exitcount = Integer.parseInt(bf.readLine());
+                for (int j = 0; j < exitcount; ++j) {
+                    line = bf.readLine();
+                    int pos = line.indexOf(' ');
+                    int target = Integer.parseInt(line.substring(0, pos));
+                    rooms[i].addExit(line.substring(pos + 1), rooms[target]);
+                }
+            }
+            for (int i = 0; i < idcap; ++i) {
+                int itemcount = Integer.parseInt(bf.readLine());
+                for (int j = 0; j < itemcount; ++j) {
+                    Thing t = lineDecode(bf.readLine());
+                    if (t instanceof Player) {
+                        player = (Player)t;
+                    } else {
+                        rooms[i].enter(t);
+                    }
+                }
+            }
+            bf.close();
+            return new Object[] {player, rooms[0]};
+        } catch (IOException | CrawlException ex) {
+            return null;
+        }
+    }
+
+    /* The original Thing decoding: split on ';' and parse the fields.
+     * Kept here (rather than calling MapIO.decodeThing, which now goes
+     * through ThingCodecs) so the baseline stays the same as MapIO
+     * changes.
+     */
+    private static Thing lineDecode(String encoded) {
+        if ((encoded == null) || encoded.isEmpty()) {
+            return null;
+        }
+        String[] toks = encoded.split(";");
+        try {
+            switch (encoded.charAt(0)) {
+            case '$':
+                return (toks.length != 3) ? null
+                        : new Treasure(toks[2], Double.parseDouble(toks[1]));
+            case 'C':
+                return (toks.length != 5) ? null
+                        : new Critter(toks[3], toks[4],
+                            Double.parseDouble(toks[1]),
+                            Integer.parseInt(toks[2]));
+            case 'E':
+                return (toks.length != 4) ? null
+                        : new Explorer(toks[2], toks[3],
+                            Integer.parseInt(toks[1]));
+            default:
+                return null;
+            }
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+}
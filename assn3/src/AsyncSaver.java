@@ -0,0 +1,126 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/** Saves maps in the {@link MapIO#saveMap MapIO.saveMap} format on a
+* background thread.
+* <br />{@link #save save} takes a {@link MapSnapshot MapSnapshot} straight
+* away (so the map may keep changing) and queues the write. The snapshot
+* is written to a temporary file in the same directory, forced to disk
+* and then renamed over the target, so the target always holds either
+* the old map or the new one in full.
+* <br />If a save to a file is requested while an earlier one to the same
+* file is still waiting, the earlier snapshot is dropped and both
+* callers are told the result of writing the newer one.
+* @author JF
+*/
+public class AsyncSaver
+{
+    /** Saves waiting to start, by filename */
+    private final Map<String, Job> waiting = new HashMap<String, Job>();
+    private final ExecutorService executor;
+
+    /** A queued save and who to tell when it is done */
+    private static class Job
+    {
+        MapSnapshot snapshot;
+        final List<Consumer<Boolean>> done =
+                new ArrayList<Consumer<Boolean>>();
+    }
+
+    public AsyncSaver() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "map saver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Queue a save of the map reachable from root.
+    * Must be called on the thread which changes the map.
+    * @param root Start room
+    * @param filename Filename to write to
+    * @param done Told true if the save worked and false otherwise (on the
+    *       saving thread)
+    * @require There is exactly one player object anywhere in the map, as
+    *       for saveMap.
+    */
+    public void save(Room root, String filename, Consumer<Boolean> done) {
+        save(root, null, filename, done);
+    }
+
+    /** Queue a save of the map reachable from root, including the room
+    * coordinates (as for {@link MapIO.SaveOption#LAYOUT LAYOUT}).
+    * Must be called on the thread which changes the map.
+    * @param root Start room
+    * @param bm Mapper which has walked the current map from root
+    * @param filename Filename to write to
+    * @param done Told true if the save worked and false otherwise (on the
+    *       saving thread)
+    * @require There is exactly one player object anywhere in the map, as
+    *       for saveMap.
+    */
+    public void save(Room root, BoundsMapper bm, String filename,
+            Consumer<Boolean> done) {
+        MapSnapshot snapshot = new MapSnapshot(root, bm);
+        synchronized (waiting) {
+            Job job = waiting.get(filename);
+            if (job == null) {
+                job = new Job();
+                waiting.put(filename, job);
+                executor.execute(() -> run(filename));
+            }
+            job.snapshot = snapshot;
+            job.done.add(done);
+        }
+    }
+
+    /* Write the latest snapshot queued for filename */
+    private void run(String filename) {
+        Job job;
+        synchronized (waiting) {
+            job = waiting.remove(filename);
+        }
+        boolean ok = write(job.snapshot, filename);
+        for (Consumer<Boolean> c : job.done) {
+            c.accept(ok);
+        }
+    }
+
+    /* Write to a temporary file, sync it and rename it over filename */
+    private static boolean write(MapSnapshot snapshot, String filename) {
+        try {
+            MapIO.replaceFile(filename, out -> {
+                BufferedWriter bw = new BufferedWriter(
+                        new OutputStreamWriter(out));
+                snapshot.write(bw);
+                bw.flush();
+            });
+        } catch (IOException ex) {
+            return false;
+        }
+        return true;
+    }
+
+    /** Finish any queued saves and stop the saving thread.
+    * @param millis Longest time to wait
+    * @return true if every save finished in time
+    */
+    public boolean shutdown(long millis) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
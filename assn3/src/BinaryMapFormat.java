@@ -0,0 +1,240 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Compact binary encoding of the same information as the
+* {@link MapIO#saveMap MapIO.saveMap} text format.
+* <br />The layout mirrors the text format:
+* <ol><li>Magic bytes <code>CRWB</code> and a version byte</li>
+*     <li>The number of rooms</li>
+*     <li>Room descriptions</li>
+*     <li>Room exits (count, then label and target for each)</li>
+*     <li>Room contents (count, then one tagged record per Thing)</li>
+* </ol>
+* Counts and room numbers are varints (7 bits per byte, low bits first).
+* Strings are references into a table built as the file is read:
+* reference 0 introduces a new string (varint byte length then UTF-8
+* bytes) and reference n &gt; 0 repeats the n-th string seen so far.
+* <br />Things are a tag byte followed by fixed width fields:
+* <ul><li><code>$</code> value (double), short description</li>
+*     <li><code>C</code> value (double), health (int), short description,
+*         long description</li>
+*     <li><code>E</code> health (int), short description,
+*         long description</li>
+*     <li><code>R</code> text encoding of any other type of Thing (see
+*         {@link ThingCodecs ThingCodecs})</li>
+* </ul>
+* @author JF
+*/
+class BinaryMapFormat
+{
+    /** First bytes of every binary map */
+    static final byte[] MAGIC = {'C', 'R', 'W', 'B'};
+    /** Current format version */
+    static final int VERSION = 1;
+
+    /** Strings written so far and their table positions (from 1) */
+    private final Map<String, Integer> written = new HashMap<String, Integer>();
+    /** Strings read so far */
+    private final List<String> table = new ArrayList<String>();
+
+    /** Write rooms in binary form.
+    * @param rooms Rooms in file order (start room first)
+    * @param idm Position of each Room in rooms
+    * @param out Destination (should be buffered)
+    * @throws IOException if out can not be written to
+    */
+    public void write(List<Room> rooms, Map<Room, Integer> idm,
+            DataOutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        writeVarint(out, rooms.size());
+        for (Room r : rooms) {
+            writeString(out, r.getDescription());
+        }
+        for (Room r : rooms) {
+            Map<String, Room> m = r.getExits();
+            writeVarint(out, m.size());
+            for (Map.Entry<String, Room> entry : m.entrySet()) {
+                writeString(out, entry.getKey());
+                writeVarint(out, idm.get(entry.getValue()));
+            }
+        }
+        for (Room r : rooms) {
+            List<Thing> l = r.getContents();
+            writeVarint(out, l.size());
+            for (Thing t : l) {
+                writeThing(out, t);
+            }
+        }
+    }
+
+    /** Read rooms written by write.
+    * @param in Source positioned at the magic bytes (should be buffered)
+    * @param placePlayer true if the Player should be left in its room
+    * @return result as described for {@link MapIO#loadMap MapIO.loadMap}
+    *      or null if the input is not a valid binary map
+    * @throws IOException if in can not be read or ends early
+    * @throws IndexOutOfBoundsException if a reference is out of range
+    */
+    public Object[] read(DataInputStream in, boolean placePlayer)
+            throws IOException {
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (in.readByte() != MAGIC[i]) {
+                return null;
+            }
+        }
+        if (in.readUnsignedByte() != VERSION) {
+            return null;
+        }
+        Player player = null;
+        int idcap = readVarint(in);
+        Room[] rooms = new Room[idcap];
+        for (int i = 0; i < idcap; ++i) {
+            rooms[i] = new Room(readString(in));
+        }
+        for (int i = 0; i < idcap; ++i) {
+            int exitcount = readVarint(in);
+            for (int j = 0; j < exitcount; ++j) {
+                String exname = readString(in);
+                try {
+                    rooms[i].addExit(exname, rooms[readVarint(in)]);
+                } catch (ExitExistsException e) {
+                    return null;
+                } catch (NullRoomException e) {
+                    return null;
+                }
+            }
+        }
+        for (int i = 0; i < idcap; ++i) {
+            int itemcount = readVarint(in);
+            for (int j = 0; j < itemcount; ++j) {
+                Thing t = readThing(in, rooms[0]);
+                if (t == null) {
+                    return null;
+                }
+                if ((t instanceof Player) && !placePlayer) {
+                    player = (Player)t;
+                } else {
+                    rooms[i].enter(t);
+                }
+            }
+        }
+        Object[] res = new Object[3];   // no layout in this format
+        res[0] = player;
+        res[1] = rooms[0];
+        return res;
+    }
+
+    private void writeThing(DataOutputStream out, Thing t)
+            throws IOException {
+        if (t.getClass() == Treasure.class) {
+            Treasure tr = (Treasure)t;
+            out.writeByte('$');
+            out.writeDouble(tr.getValue());
+            writeString(out, tr.getShort());
+        } else if (t.getClass() == Critter.class) {
+            Critter c = (Critter)t;
+            out.writeByte('C');
+            out.writeDouble(c.getValue());
+            out.writeInt(c.getHealth());
+            writeString(out, c.getShort());
+            writeString(out, c.getLong());
+        } else if (t.getClass() == Explorer.class) {
+            Explorer e = (Explorer)t;
+            out.writeByte('E');
+            out.writeInt(e.getHealth());
+            writeString(out, e.getShort());
+            writeString(out, e.getLong());
+        } else {
+            out.writeByte('R');
+            writeString(out, ThingCodecs.encode(t));
+        }
+    }
+
+    private Thing readThing(DataInputStream in, Room root)
+            throws IOException {
+        switch (in.readUnsignedByte()) {
+        case '$':
+            double value = in.readDouble();
+            return new Treasure(readString(in), value);
+        case 'C':
+            double worth = in.readDouble();
+            int health = in.readInt();
+            String shortDesc = readString(in);
+            return new Critter(shortDesc, readString(in), worth, health);
+        case 'E':
+            int life = in.readInt();
+            String name = readString(in);
+            return new Explorer(name, readString(in), life);
+        case 'R':
+            return MapIO.decodeThing(readString(in), root);
+        default:
+            return null;
+        }
+    }
+
+    private void writeString(DataOutputStream out, String s)
+            throws IOException {
+        Integer ref = written.get(s);
+        if (ref != null) {
+            writeVarint(out, ref);
+            return;
+        }
+        written.put(s, written.size() + 1);
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, 0);
+        writeVarint(out, b.length);
+        out.write(b);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int ref = readVarint(in);
+        if (ref > 0) {
+            return table.get(ref - 1);
+        }
+        byte[] b = new byte[readVarint(in)];
+        in.readFully(b);
+        String s = new String(b, StandardCharsets.UTF_8);
+        table.add(s);
+        return s;
+    }
+
+    /** Write a non-negative int using 7 bits per byte.
+    * @param out Destination
+    * @param v value to write
+    * @throws IOException if out can not be written to
+    */
+    static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /** Read an int written by writeVarint.
+    * @param in Source
+    * @return value read
+    * @throws IOException if in can not be read or the value is malformed
+    */
+    static int readVarint(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (v < 0) {
+                    throw new IOException("varint out of range");
+                }
+                return v;
+            }
+        }
+        throw new IOException("varint too long");
+    }
+}
@@ -1,11 +1,14 @@
 import java.util.*;
 
 /** Find the bounding box for the overall map.
+* <br />After {@link #track track} the coordinates and bounds are kept up
+* to date as exits are added and removed (moving Things around costs
+* nothing), instead of walking the map again.
 * @author JF
 */
 public class BoundsMapper extends MapWalker {
-  /** Map Rooms to coordinates*/
-  public Map<Room, Pair> coords;
+  /** Map Rooms to coordinates (and coordinates to Rooms) */
+  public CoordTable coords;
   
   /** Minimum x coordinate for rooms (root has x=0) */
   public int xMin;
@@ -18,12 +21,179 @@ public class BoundsMapper extends MapWalker {
   
   /** Maximum y coordinate for rooms (root has y=0) */  
   public int yMax;  
+
+  /** Start room */
+  private final Room root;
+  /** Follows changes to the map while tracking (null otherwise) */
+  private Tracker tracker;
+  /** Number of rooms with each x and y coordinate (while tracking) */
+  private TreeMap<Integer, Integer> xCounts, yCounts;
+  /** Rooms by position (null until asked for) */
+  private SpatialIndex index;
   
   public BoundsMapper(Room root) {
     super(root);
-    coords = new HashMap<Room, Pair>();
+    this.root = root;
+    coords = new CoordTable();
     xMin = xMax = yMin = yMax = 0;    
   }
+
+  /** Keeps coords in step with the rooms which can be reached */
+  private class Tracker extends Reachability {
+    Tracker() {
+      super(root);
+    }
+
+    @Override
+    protected void reached(Room room) {
+      if (xCounts != null) {    // not while the constructor is running
+        place(room);
+      }
+    }
+
+    @Override
+    protected void lost(Room room) {
+      if (coords.contains(room)) {
+        long p = coords.get(room);
+        unplace(room);
+        count(p, -1);
+      }
+    }
+  }
+
+  /** Keep the coordinates and bounds up to date from now on.
+  * <br />Rooms which already have coordinates (eg from a walk or a saved
+  * layout) keep them, other reachable rooms are placed as walk would
+  * place them. From then on a room which becomes reachable is placed
+  * next to a neighbour which already has coordinates, using the same
+  * rules as walk, and a room which can no longer be reached is dropped.
+  * Rooms which have been placed are never moved, so on a map where exits
+  * come in pairs and agree with each other the result is the same as a
+  * fresh walk.
+  * <br />This listens to every reachable room until
+  * {@link #stopTracking stopTracking} or {@link #reset reset} is called.
+  */
+  public void track() {
+    stopTracking();
+    boolean placed = coords.size() > 0;
+    Tracker t = new Tracker();
+    if (!placed) {
+      walk();
+    }
+    List<Room> unreachable = new ArrayList<Room>();
+    coords.forEach((r, x, y) -> {
+      if (!t.isReachable(r)) {
+        unreachable.add(r);
+      }
+    });
+    for (Room r : unreachable) {
+      unplace(r);
+    }
+    xCounts = new TreeMap<Integer, Integer>();
+    yCounts = new TreeMap<Integer, Integer>();
+    coords.forEach((r, x, y) -> count(CoordTable.pack(x, y), 1));
+    xMin = xCounts.isEmpty() ? 0 : xCounts.firstKey();
+    xMax = xCounts.isEmpty() ? 0 : xCounts.lastKey();
+    yMin = yCounts.isEmpty() ? 0 : yCounts.firstKey();
+    yMax = yCounts.isEmpty() ? 0 : yCounts.lastKey();
+    tracker = t;
+    for (Room r : new ReachableRooms(root)) {
+      if (!coords.contains(r)) {     // missing from a saved layout
+        place(r);
+      }
+    }
+  }
+
+  /** Stop keeping the coordinates up to date. */
+  public void stopTracking() {
+    if (tracker != null) {
+      tracker.close();
+      tracker = null;
+    }
+    xCounts = yCounts = null;
+  }
+
+  /* Give a newly reachable room coordinates. A room added with
+   * makeExitPair is reached before its own exit back exists, so if none
+   * of its exits lead to a placed room it goes next to the room it was
+   * reached from.
+   */
+  private void place(Room room) {
+    Room from = tracker.reachedFrom(room);
+    boolean placed = false;
+    if (coords.contains(from) && !hasPlacedNeighbour(room)) {
+      for (Map.Entry<String, Room> e : from.getExits().entrySet()) {
+        if ((e.getValue() == room) && isDirection(e.getKey())) {
+          long n = offset(coords.get(from), e.getKey());
+          put(room, CoordTable.x(n), CoordTable.y(n));
+          placed = true;
+          break;
+        }
+      }
+    }
+    if (!placed) {
+      visit(room);
+    }
+    count(coords.get(room), 1);
+  }
+
+  /* Would visit find a neighbour to place room next to? */
+  private boolean hasPlacedNeighbour(Room room) {
+    Map<String, Room> exits = room.getExits();
+    return hasVisited(exits.get("North")) || hasVisited(exits.get("South"))
+        || hasVisited(exits.get("East")) || hasVisited(exits.get("West"));
+  }
+
+  /* Packed cell a step through an exit from p (p for other labels) */
+  private static long offset(long p, String label) {
+    int x = CoordTable.x(p);
+    int y = CoordTable.y(p);
+    switch (label) {
+    case "North":
+      return CoordTable.pack(x, y - 1);  // remember screen coords flipped
+    case "South":
+      return CoordTable.pack(x, y + 1);
+    case "East":
+      return CoordTable.pack(x + 1, y);
+    case "West":
+      return CoordTable.pack(x - 1, y);
+    default:
+      return p;
+    }
+  }
+
+  /* Is label one of the four directions? */
+  private static boolean isDirection(String label) {
+    return label.equals("North") || label.equals("South")
+        || label.equals("East") || label.equals("West");
+  }
+
+  /* Add (or remove) a room's coordinates to the counts and bounds */
+  private void count(long p, int delta) {
+    if (xCounts == null) {
+      return;
+    }
+    int x = CoordTable.x(p);
+    int y = CoordTable.y(p);
+    xCounts.merge(x, delta, Integer::sum);
+    yCounts.merge(y, delta, Integer::sum);
+    if (delta < 0) {
+      xCounts.remove(x, 0);
+      yCounts.remove(y, 0);
+      xMin = xCounts.firstKey();
+      xMax = xCounts.lastKey();
+      yMin = yCounts.firstKey();
+      yMax = yCounts.lastKey();
+    }
+  }
+
+  @Override
+  public boolean hasVisited(Room room) {
+    if (tracker != null) {
+      return coords.contains(room);
+    }
+    return super.hasVisited(room);
+  }
   
   /** Assign room coordinates relative to a neighbour.
   * <br />If room has no known neighbours, give it coordinate (0,0).<br /> 
@@ -41,40 +211,71 @@ public class BoundsMapper extends MapWalker {
   */
   protected void visit(Room room) {
     Map<String, Room> exits = room.getExits();
-    Pair n = null;
-    if (hasVisited(exits.get("North"))) {
-        Pair p = coords.get(exits.get("North"));
-        n = new Pair(p.x,p.y + 1);  // remember screen coords flipped
-    } else if (hasVisited(exits.get("South"))) {
-        Pair p = coords.get(exits.get("South"));
-        n = new Pair(p.x,p.y - 1);  // remember screen coords flipped
-    } else if (hasVisited(exits.get("East"))) {
-        Pair p = coords.get(exits.get("East"));
-        n = new Pair(p.x - 1,p.y);
-    } else if (hasVisited(exits.get("West"))) {
-        Pair p = coords.get(exits.get("West"));
-        n = new Pair(p.x + 1,p.y);
+    Room n;
+    if (hasVisited(n = exits.get("North"))) {
+        // remember screen coords flipped
+        put(room, coords.getX(n), coords.getY(n) + 1);
+    } else if (hasVisited(n = exits.get("South"))) {
+        // remember screen coords flipped
+        put(room, coords.getX(n), coords.getY(n) - 1);
+    } else if (hasVisited(n = exits.get("East"))) {
+        put(room, coords.getX(n) - 1, coords.getY(n));
+    } else if (hasVisited(n = exits.get("West"))) {
+        put(room, coords.getX(n) + 1, coords.getY(n));
     } else {
         // can't be sure where we are, assume 0, 0
-        n = new Pair(0,0);
+        put(room, 0, 0);
     }
-    coords.put(room, n);
-    if (n.x < xMin) {
-      xMin = n.x;
-    } else if (n.x > xMax) {
-      xMax = n.x;
+  }
+
+  /** Find rooms by position.
+  * <br />The index is built from coords the first time this is called and
+  * kept up to date as rooms are placed and dropped (by walk or while
+  * tracking) until reset is called.
+  * @return index of the rooms with coordinates
+  */
+  public SpatialIndex index() {
+    if (index == null) {
+      index = new SpatialIndex(coords);
     }
-    if (n.y < yMin) {
-      yMin = n.y;
-    } else if (n.y > yMax) {
-      yMax = n.y;
+    return index;
+  }
+
+  /* Record a room's coordinates and grow the bounds to fit */
+  private void put(Room room, int x, int y) {
+    unplace(room);
+    coords.put(room, x, y);
+    if (index != null) {
+      index.add(room, x, y);
+    }
+    if (x < xMin) {
+      xMin = x;
+    } else if (x > xMax) {
+      xMax = x;
+    }
+    if (y < yMin) {
+      yMin = y;
+    } else if (y > yMax) {
+      yMax = y;
+    }
+  }
+
+  /* Forget a room's coordinates */
+  private void unplace(Room room) {
+    if (coords.contains(room)) {
+      if (index != null) {
+        index.remove(room, coords.getX(room), coords.getY(room));
+      }
+      coords.remove(room);
     }
   }
 
   @Override 
   public void reset() {
+    stopTracking();
     super.reset();
-    coords = new HashMap<Room, Pair>();
+    index = null;
+    coords = new CoordTable();
     xMin = xMax = yMin = yMax = 0;    
   }
 }
@@ -0,0 +1,97 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/** Text which is still sitting, encoded, in a byte buffer.
+* Decoding is put off until the characters are actually needed.
+* <br />The bytes must not change while the text is in use.
+* @author JF
+*/
+class ByteText implements CharSequence
+{
+    private ByteBuffer buf;
+    private int offset;
+    private int length;
+    private final Charset charset;
+    /** Decoded form (null until needed) */
+    private String decoded;
+    /** 1 if every byte is ASCII, 0 if not, -1 if not checked yet */
+    private int ascii;
+
+    /**
+    * @param buf Buffer holding the encoded text
+    * @param offset Index of the first byte in buf
+    * @param length Number of bytes
+    * @param charset Encoding of the bytes
+    */
+    public ByteText(ByteBuffer buf, int offset, int length, Charset charset) {
+        this.charset = charset;
+        set(buf, offset, length);
+    }
+
+    /** Point this object at different bytes.
+    * @param buf Buffer holding the encoded text
+    * @param offset Index of the first byte in buf
+    * @param length Number of bytes
+    */
+    void set(ByteBuffer buf, int offset, int length) {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+        this.decoded = null;
+        this.ascii = -1;
+    }
+
+    /** Is the text plain ASCII (so each byte is one char)?
+    * @return true if no byte has its top bit set
+    */
+    private boolean ascii() {
+        if (ascii < 0) {
+            ascii = 1;
+            for (int i = 0; i < length; ++i) {
+                if (buf.get(offset + i) < 0) {
+                    ascii = 0;
+                    break;
+                }
+            }
+        }
+        return ascii == 1;
+    }
+
+    @Override
+    public int length() {
+        if ((decoded == null) && ascii()) {
+            return length;
+        }
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (decoded == null) {
+            if ((index < 0) || (index >= length)) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (ascii()) {
+                return (char)buf.get(offset + index);
+            }
+        }
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (decoded == null) {
+            byte[] b = new byte[length];
+            for (int i = 0; i < length; ++i) {
+                b[i] = buf.get(offset + i);
+            }
+            decoded = new String(b, charset);
+        }
+        return decoded;
+    }
+}
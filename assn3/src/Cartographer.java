@@ -5,15 +5,27 @@ import java.util.*;
 
 /**
  * This class will be responsible for rendering the "map" in the GUI.
+ * After watch(), update() only redraws the rooms whose contents changed
+ * since the last update, clipped to their squares. Changes to exits or
+ * to where the map starts (xMin, yMin) redraw everything.
  * @author Howie L.
  */
-public class Cartographer extends Canvas {
+public class Cartographer extends Canvas implements RoomListener {
     /* Sketcher and constants */
     private GraphicsContext context;
     private int ROOM_WIDTH = 50;
     private int ROOM_HEIGHT = 50;
     private int EXIT_LINE_LENGTH = 7;
 
+    /* Change tracking */
+    private BoundsMapper watched;
+    private List<Room> heard = new ArrayList<Room>();
+    private SparseBitSet heardIds = new SparseBitSet();
+    private List<Room> dirty = new ArrayList<Room>();
+    private SparseBitSet dirtyIds = new SparseBitSet();
+    private boolean redrawAll;
+    private int drawnXMin, drawnYMin;
+
     /**
      * Constructor of the class.
      * @param width Canvas width
@@ -28,28 +40,45 @@ public class Cartographer extends Canvas {
     }
 
     /**
-     * Draw all the rooms, exits and things.
+     * Draw all the rooms, exits and things that fit on the canvas.
      * @param bm Bounds mapper that stores the whole map information.
      */
     public void draw(BoundsMapper bm) {
-        Map<Room, Pair> roomCoords = bm.coords;
-        for (Map.Entry<Room, Pair> roomEntry : roomCoords.entrySet()) {
-            Room r = roomEntry.getKey();
-            Pair loc = roomEntry.getValue();
-            drawRoom(bm, loc);
-            drawExit(bm, r, loc);
-            drawItem(bm, r, loc);
-        }
+        draw(bm, 0, 0, this.getWidth(), this.getHeight());
+    }
+
+    /**
+     * Draw the rooms, exits and things in part of the canvas. Only the
+     * rooms near that part are looked at (see BoundsMapper.index).
+     * @param bm Bounds mapper that stores the whole map information.
+     * @param x Left edge of the part
+     * @param y Top edge of the part
+     * @param width Width of the part
+     * @param height Height of the part
+     */
+    public void draw(BoundsMapper bm, double x, double y, double width,
+            double height) {
+        /* Exit strokes reach a little way into the next room */
+        int x0 = (int)Math.floor(x/ROOM_WIDTH) + bm.xMin - 1;
+        int y0 = (int)Math.floor(y/ROOM_HEIGHT) + bm.yMin - 1;
+        int x1 = (int)Math.floor((x+width)/ROOM_WIDTH) + bm.xMin + 1;
+        int y1 = (int)Math.floor((y+height)/ROOM_HEIGHT) + bm.yMin + 1;
+        bm.index().query(x0, y0, x1, y1, (r, rx, ry) -> {
+            drawRoom(bm, rx, ry);
+            drawExit(bm, r, rx, ry);
+            drawItem(bm, r, rx, ry);
+        });
     }
 
     /**
      * Draw a single room as a square.
      * @param bm Bounds mapper that stores the whole map information.
-     * @param loc Room coordinates
+     * @param x Room x coordinate
+     * @param y Room y coordinate
      */
-    private void drawRoom(BoundsMapper bm, Pair loc) {
-        this.context.strokeRect((loc.x-bm.xMin)*this.ROOM_WIDTH,
-                (loc.y-bm.yMin)*this.ROOM_HEIGHT,
+    private void drawRoom(BoundsMapper bm, int x, int y) {
+        this.context.strokeRect((x-bm.xMin)*this.ROOM_WIDTH,
+                (y-bm.yMin)*this.ROOM_HEIGHT,
                 this.ROOM_WIDTH,
                 this.ROOM_HEIGHT);
     }
@@ -59,36 +88,37 @@ public class Cartographer extends Canvas {
      * midpoints of edges.
      * @param bm Bounds mapper that stores the whole map information.
      * @param r Room to get exits from
-     * @param loc Room coordinates
+     * @param x Room x coordinate
+     * @param y Room y coordinate
      */
-    private void drawExit(BoundsMapper bm, Room r, Pair loc) {
+    private void drawExit(BoundsMapper bm, Room r, int x, int y) {
         Map<String, Room> exits = r.getExits();
         double pt1X, pt1Y, pt2X, pt2Y;
         for (Map.Entry<String, Room> entry : exits.entrySet()) {
             switch (entry.getKey()) {
                 case "East":
-                    pt1X = (loc.x-bm.xMin+1)*ROOM_WIDTH + EXIT_LINE_LENGTH/2;
-                    pt1Y = (loc.y-bm.yMin+0.5)*ROOM_HEIGHT;
-                    pt2X = (loc.x-bm.xMin+1)*ROOM_WIDTH - EXIT_LINE_LENGTH/2;
-                    pt2Y = (loc.y-bm.yMin+0.5)*ROOM_HEIGHT;
+                    pt1X = (x-bm.xMin+1)*ROOM_WIDTH + EXIT_LINE_LENGTH/2;
+                    pt1Y = (y-bm.yMin+0.5)*ROOM_HEIGHT;
+                    pt2X = (x-bm.xMin+1)*ROOM_WIDTH - EXIT_LINE_LENGTH/2;
+                    pt2Y = (y-bm.yMin+0.5)*ROOM_HEIGHT;
                     break;
                 case "West":
-                    pt1X = (loc.x-bm.xMin)*ROOM_WIDTH + EXIT_LINE_LENGTH/2;
-                    pt1Y = (loc.y-bm.yMin+0.5)*ROOM_HEIGHT;
-                    pt2X = (loc.x-bm.xMin)*ROOM_WIDTH - EXIT_LINE_LENGTH/2;
-                    pt2Y = (loc.y-bm.yMin+0.5)*ROOM_HEIGHT;
+                    pt1X = (x-bm.xMin)*ROOM_WIDTH + EXIT_LINE_LENGTH/2;
+                    pt1Y = (y-bm.yMin+0.5)*ROOM_HEIGHT;
+                    pt2X = (x-bm.xMin)*ROOM_WIDTH - EXIT_LINE_LENGTH/2;
+                    pt2Y = (y-bm.yMin+0.5)*ROOM_HEIGHT;
                     break;
                 case "North":
-                    pt1X = (loc.x-bm.xMin+0.5)*ROOM_WIDTH;
-                    pt1Y = (loc.y-bm.yMin)*ROOM_HEIGHT - EXIT_LINE_LENGTH/2;
-                    pt2X = (loc.x-bm.xMin+0.5)*ROOM_WIDTH;
-                    pt2Y = (loc.y-bm.yMin)*ROOM_HEIGHT + EXIT_LINE_LENGTH/2;
+                    pt1X = (x-bm.xMin+0.5)*ROOM_WIDTH;
+                    pt1Y = (y-bm.yMin)*ROOM_HEIGHT - EXIT_LINE_LENGTH/2;
+                    pt2X = (x-bm.xMin+0.5)*ROOM_WIDTH;
+                    pt2Y = (y-bm.yMin)*ROOM_HEIGHT + EXIT_LINE_LENGTH/2;
                     break;
                 case "South":
-                    pt1X = (loc.x-bm.xMin+0.5)*ROOM_WIDTH;
-                    pt1Y = (loc.y-bm.yMin+1)*ROOM_HEIGHT - EXIT_LINE_LENGTH/2;
-                    pt2X = (loc.x-bm.xMin+0.5)*ROOM_WIDTH;
-                    pt2Y = (loc.y-bm.yMin+1)*ROOM_HEIGHT + EXIT_LINE_LENGTH/2;
+                    pt1X = (x-bm.xMin+0.5)*ROOM_WIDTH;
+                    pt1Y = (y-bm.yMin+1)*ROOM_HEIGHT - EXIT_LINE_LENGTH/2;
+                    pt2X = (x-bm.xMin+0.5)*ROOM_WIDTH;
+                    pt2Y = (y-bm.yMin+1)*ROOM_HEIGHT + EXIT_LINE_LENGTH/2;
                     break;
                 default:
                     pt1X = pt1Y = pt2X = pt2Y = -1;
@@ -102,23 +132,24 @@ public class Cartographer extends Canvas {
      * Draw things in a room.
      * @param bm Bounds mapper that stores the whole map information.
      * @param r Room to get things from
-     * @param loc Room coordinates
+     * @param x Room x coordinate
+     * @param y Room y coordinate
      */
-    private void drawItem(BoundsMapper bm, Room r, Pair loc) {
+    private void drawItem(BoundsMapper bm, Room r, int x, int y) {
         List<Thing> items = r.getContents();
         double ptX, ptY;
         for (Thing item : items) {
             if (item instanceof Player) {
-                ptX = (loc.x-bm.xMin+0.125)*ROOM_WIDTH;
-                ptY = (loc.y-bm.yMin+0.25)*ROOM_HEIGHT;
+                ptX = (x-bm.xMin+0.125)*ROOM_WIDTH;
+                ptY = (y-bm.yMin+0.25)*ROOM_HEIGHT;
                 context.strokeText("@", ptX, ptY);
             } else if (item instanceof Treasure) {
-                ptX = (loc.x-bm.xMin+0.75)*ROOM_WIDTH;
-                ptY = (loc.y-bm.yMin+0.25)*ROOM_HEIGHT;
+                ptX = (x-bm.xMin+0.75)*ROOM_WIDTH;
+                ptY = (y-bm.yMin+0.25)*ROOM_HEIGHT;
                 context.strokeText("$", ptX, ptY);
             } else if (item instanceof Critter) {
-                ptX = (loc.x-bm.xMin+0.125)*ROOM_WIDTH;
-                ptY = (loc.y-bm.yMin+0.875)*ROOM_HEIGHT;
+                ptX = (x-bm.xMin+0.125)*ROOM_WIDTH;
+                ptY = (y-bm.yMin+0.875)*ROOM_HEIGHT;
                 if (((Critter) item).isAlive()) {
                     context.strokeText("M", ptX, ptY);
                 } else {
@@ -134,4 +165,104 @@ public class Cartographer extends Canvas {
     public void clear() {
         context.clearRect(0, 0, this.getWidth(), this.getHeight());
     }
+
+    /**
+     * Follow changes to the rooms of a map, so that update() only has to
+     * redraw what changed. The next update() redraws everything.
+     * @param bm Bounds mapper that stores the whole map information (it
+     *      should be tracking, so that its coordinates stay up to date).
+     */
+    public void watch(BoundsMapper bm) {
+        unwatch();
+        this.watched = bm;
+        this.redrawAll = true;
+    }
+
+    /**
+     * Stop following changes to the map.
+     */
+    public void unwatch() {
+        for (Room r : heard) {
+            r.removeListener(this);
+        }
+        heard.clear();
+        heardIds.clear();
+        dirty.clear();
+        dirtyIds.clear();
+        this.watched = null;
+    }
+
+    /**
+     * Bring the drawing up to date with the map being watched. Costs the
+     * number of rooms which changed, unless everything has to be redrawn.
+     */
+    public void update() {
+        BoundsMapper bm = this.watched;
+        if (bm == null) {
+            return;
+        }
+        if (redrawAll || (bm.xMin != drawnXMin) || (bm.yMin != drawnYMin)) {
+            bm.coords.forEach((r, x, y) -> listenTo(r));
+            clear();
+            draw(bm);
+        } else {
+            for (Room r : dirty) {
+                if (bm.coords.contains(r)) {
+                    redrawRoom(bm, bm.coords.getX(r), bm.coords.getY(r));
+                }
+            }
+        }
+        dirty.clear();
+        dirtyIds.clear();
+        this.redrawAll = false;
+        this.drawnXMin = bm.xMin;
+        this.drawnYMin = bm.yMin;
+    }
+
+    /**
+     * Clear one room's square and draw it again, along with the parts of
+     * its neighbours which reach into it.
+     * @param bm Bounds mapper that stores the whole map information.
+     * @param x Room x coordinate
+     * @param y Room y coordinate
+     */
+    private void redrawRoom(BoundsMapper bm, int x, int y) {
+        double left = (x-bm.xMin)*ROOM_WIDTH;
+        double top = (y-bm.yMin)*ROOM_HEIGHT;
+        context.save();
+        context.beginPath();
+        context.rect(left, top, ROOM_WIDTH, ROOM_HEIGHT);
+        context.clip();
+        context.clearRect(left, top, ROOM_WIDTH, ROOM_HEIGHT);
+        draw(bm, left, top, ROOM_WIDTH, ROOM_HEIGHT);
+        context.restore();
+    }
+
+    /**
+     * Start listening to a room (if we aren't already).
+     * @param r Room to listen to
+     */
+    private void listenTo(Room r) {
+        if (heardIds.set(r.getId())) {
+            heard.add(r);
+            r.addListener(this);
+        }
+    }
+
+    @Override
+    public void contentsChanged(Room room) {
+        if (dirtyIds.set(room.getId())) {
+            dirty.add(room);
+        }
+    }
+
+    @Override
+    public void exitAdded(Room room, String label, Room target) {
+        this.redrawAll = true;
+    }
+
+    @Override
+    public void exitRemoved(Room room, String label, Room target) {
+        this.redrawAll = true;
+    }
 }
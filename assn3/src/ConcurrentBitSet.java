@@ -0,0 +1,115 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Set of {@link Room#getId Room ids} (or other non-negative ints) which
+* several threads may add to at once.
+* <br />Laid out like a {@link SparseBitSet SparseBitSet}: pages of 4096
+* bits found through a directory covering the pages between the lowest
+* and highest ones used, so it grows to fit whatever is added (eg Rooms
+* created during a walk) and costs memory for the ranges it holds. Pages
+* are created under a lock and never move; testing and adding values on
+* an existing page takes no lock.
+* @author JF
+*/
+class ConcurrentBitSet
+{
+    /** log2(bits per page) */
+    private static final int SHIFT = 12;
+    /** longs per page */
+    private static final int WORDS = 1 << (SHIFT - 6);
+
+    /** Pages for page numbers base, base + 1, ... (null if empty).
+    *   Replaced as a whole when it grows. */
+    private static class Directory
+    {
+        final int base;
+        final AtomicReferenceArray<AtomicLongArray> pages;
+
+        Directory(int base, int length) {
+            this.base = base;
+            this.pages = new AtomicReferenceArray<AtomicLongArray>(length);
+        }
+    }
+
+    private volatile Directory dir = new Directory(0, 0);
+
+    /** Is a value in the set?
+    * @param i Value to check
+    * @return true if i has been added (false if it is negative)
+    */
+    public boolean get(int i) {
+        AtomicLongArray page = (i < 0) ? null : find(dir, i >>> SHIFT);
+        return (page != null)
+                && ((page.get((i >>> 6) & (WORDS - 1)) & (1L << i)) != 0);
+    }
+
+    /** Add a value to the set.
+    * If several threads add the same value at once, exactly one of them
+    * is told it was new.
+    * @param i Value to add
+    * @return true if i was not in the set before
+    * @throws IndexOutOfBoundsException if i is negative
+    */
+    public boolean set(int i) {
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("bit " + i);
+        }
+        AtomicLongArray page = find(dir, i >>> SHIFT);
+        if (page == null) {
+            page = create(i >>> SHIFT);
+        }
+        int w = (i >>> 6) & (WORDS - 1);
+        long bit = 1L << i;
+        while (true) {
+            long old = page.get(w);
+            if ((old & bit) != 0) {
+                return false;
+            }
+            if (page.compareAndSet(w, old, old | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /* Page n in d (null if d does not have it) */
+    private static AtomicLongArray find(Directory d, int n) {
+        int p = n - d.base;
+        if ((p < 0) || (p >= d.pages.length())) {
+            return null;
+        }
+        return d.pages.get(p);
+    }
+
+    /* Page n, creating it (and growing the directory) if no other thread
+     * has
+     */
+    private synchronized AtomicLongArray create(int n) {
+        Directory d = dir;
+        AtomicLongArray page = find(d, n);
+        if (page != null) {
+            return page;
+        }
+        int len = d.pages.length();
+        if (len == 0) {
+            d = new Directory(n, 1);
+        } else if (n < d.base) {
+            int grow = Math.min(d.base, Math.max(d.base - n, len));
+            d = copy(d, d.base - grow, len + grow);
+        } else if (n - d.base >= len) {
+            d = copy(d, d.base, Math.max(n - d.base + 1, len * 2));
+        }
+        page = new AtomicLongArray(WORDS);
+        d.pages.set(n - d.base, page);
+        dir = d;
+        return page;
+    }
+
+    /* Directory starting at base holding the pages of d */
+    private static Directory copy(Directory d, int base, int length) {
+        Directory res = new Directory(base, length);
+        for (int p = 0; p < d.pages.length(); ++p) {
+            res.pages.set(d.base - base + p, d.pages.get(p));
+        }
+        return res;
+    }
+}
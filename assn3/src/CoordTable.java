@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/** Coordinates of {@link Room Room}s, looked up in either direction
+* without boxing.
+* <br />Each Room's cell is packed into a <code>long</code> (x in the high
+* half, y in the low half). Rooms and cells are kept in dense parallel
+* arrays, found through a {@link SparseIntArray SparseIntArray} by
+* {@link Room#getId id}, and an open addressing table maps packed cells
+* back to ids. Memory and going through every Room cost the number of
+* Rooms rather than the highest id.
+* <br />If several Rooms are put on the same cell (a map whose exits do
+* not agree), {@link #at at} only finds one of them, and none once that
+* one is removed.
+* Not thread safe.
+* @author JF
+*/
+public class CoordTable
+{
+    /** Told about each Room in a table */
+    public interface Visitor
+    {
+        /**
+        * @param room Room with coordinates
+        * @param x x coordinate
+        * @param y y coordinate
+        */
+        void room(Room room, int x, int y);
+    }
+
+    /** Marks an empty slot in the reverse index */
+    private static final int EMPTY = -1;
+
+    /** Rooms in the table and their packed cells, first size entries */
+    private Room[] rooms;
+    private long[] cells;
+    private int size;
+    /** Position of each Room in rooms (by id, -1 or meaningless for Rooms
+    *   which are not in the table) */
+    private final SparseIntArray slots = new SparseIntArray(-1);
+    /** Reverse index: packed cell and id for each slot (power of two
+    *   long, at most half full) */
+    private long[] keys;
+    private int[] ids;
+
+    /** An empty table. */
+    public CoordTable() {
+        this(16);
+    }
+
+    /**
+    * @param expected Number of Rooms the table should hold without growing
+    */
+    public CoordTable(int expected) {
+        int n = Math.max(expected, 4);
+        rooms = new Room[n];
+        cells = new long[n];
+        int cap = Integer.highestOneBit(n * 2 - 1) << 1;
+        keys = new long[cap];
+        ids = new int[cap];
+        Arrays.fill(ids, EMPTY);
+    }
+
+    /** Pack a cell into a long.
+    * @param x x coordinate
+    * @param y y coordinate
+    * @return both coordinates in one value
+    */
+    public static long pack(int x, int y) {
+        return ((long)x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+    * @param cell Value from {@link #pack pack}
+    * @return x coordinate
+    */
+    public static int x(long cell) {
+        return (int)(cell >> 32);
+    }
+
+    /**
+    * @param cell Value from {@link #pack pack}
+    * @return y coordinate
+    */
+    public static int y(long cell) {
+        return (int)cell;
+    }
+
+    /**
+    * @return number of Rooms with coordinates
+    */
+    public int size() {
+        return size;
+    }
+
+    /**
+    * @param room Room to query
+    * @return true if room has coordinates
+    */
+    public boolean contains(Room room) {
+        if (room == null) {
+            return false;
+        }
+        int s = slots.get(room.getId());
+        return (s >= 0) && (s < size) && (rooms[s] == room);
+    }
+
+    /**
+    * @param room Room to query
+    * @return packed cell of room
+    * @require contains(room)
+    */
+    public long get(Room room) {
+        return cells[slots.get(room.getId())];
+    }
+
+    /**
+    * @param room Room to query
+    * @return x coordinate of room
+    * @require contains(room)
+    */
+    public int getX(Room room) {
+        return x(cells[slots.get(room.getId())]);
+    }
+
+    /**
+    * @param room Room to query
+    * @return y coordinate of room
+    * @require contains(room)
+    */
+    public int getY(Room room) {
+        return y(cells[slots.get(room.getId())]);
+    }
+
+    /** Find the Room on a cell.
+    * @param x x coordinate
+    * @param y y coordinate
+    * @return Room there (null if there isn't one)
+    */
+    public Room at(int x, int y) {
+        int i = find(pack(x, y));
+        return (ids[i] == EMPTY) ? null : rooms[slots.get(ids[i])];
+    }
+
+    /** Give a Room coordinates (replacing any it had).
+    * @param room Room to place
+    * @param x x coordinate
+    * @param y y coordinate
+    */
+    public void put(Room room, int x, int y) {
+        remove(room);
+        int id = room.getId();
+        if (size == rooms.length) {
+            rooms = Arrays.copyOf(rooms, size * 2);
+            cells = Arrays.copyOf(cells, size * 2);
+        }
+        long cell = pack(x, y);
+        rooms[size] = room;
+        cells[size] = cell;
+        slots.put(id, size++);
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int i = find(cell);
+        keys[i] = cell;
+        ids[i] = id;
+    }
+
+    /** Take away a Room's coordinates.
+    * @param room Room to remove
+    * @return false if room had no coordinates
+    */
+    public boolean remove(Room room) {
+        if (!contains(room)) {
+            return false;
+        }
+        int id = room.getId();
+        int s = slots.get(id);
+        int i = find(cells[s]);
+        if (ids[i] == id) {
+            unlink(i);
+        }
+            // move the last Room into the gap
+        --size;
+        rooms[s] = rooms[size];
+        cells[s] = cells[size];
+        slots.put(rooms[s].getId(), s);
+        rooms[size] = null;
+        return true;
+    }
+
+    /** Call v for every Room in the table (the table must not be changed
+    * until this returns).
+    * @param v Visitor to call
+    */
+    public void forEach(Visitor v) {
+        for (int i = 0; i < size; ++i) {
+            v.room(rooms[i], x(cells[i]), y(cells[i]));
+        }
+    }
+
+    /* Slot holding cell, or the empty slot where it would go */
+    private int find(long cell) {
+        int mask = keys.length - 1;
+        int i = hash(cell) & mask;
+        while ((ids[i] != EMPTY) && (keys[i] != cell)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(long cell) {
+        long h = cell * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /* Empty slot i, moving later entries of the same run back so that
+     * every entry can still be found from its home slot.
+     */
+    private void unlink(int i) {
+        int mask = keys.length - 1;
+        int hole = i;
+        for (int j = (i + 1) & mask; ids[j] != EMPTY; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+                // can j's entry move to the hole (is home outside (hole, j])?
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                ids[hole] = ids[j];
+                hole = j;
+            }
+        }
+        ids[hole] = EMPTY;
+    }
+
+    private void rehash(int cap) {
+        keys = new long[cap];
+        ids = new int[cap];
+        Arrays.fill(ids, EMPTY);
+        for (int i = 0; i < size; ++i) {
+            int j = find(cells[i]);
+            keys[j] = cells[i];
+            ids[j] = rooms[i].getId();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Output stream which keeps track of how many bytes went through it.
+* @author JF
+*/
+class CountingOutputStream extends FilterOutputStream
+{
+    private long count;
+
+    /**
+    * @param out Stream to pass bytes on to
+    */
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /** Bytes written so far
+    * @return number of bytes
+    */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        ++count;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+}
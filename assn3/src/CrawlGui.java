@@ -1,4 +1,5 @@
 import java.util.*;
+import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -54,6 +55,8 @@ public class CrawlGui extends javafx.application.Application {
         EAST, WEST, NORTH, SOUTH
     }
     private Room currRoom;
+    /* Writes saves without holding up the GUI */
+    private final AsyncSaver saver = new AsyncSaver();
 
     /**
      * The action to take when any of the direction buttons East, West, North
@@ -285,6 +288,7 @@ public class CrawlGui extends javafx.application.Application {
                         t instanceof Critter) {
                     if (((Critter) t).isAlive()) {
                         player.fight((Critter) t);
+                        currRoom.markChanged();
                         if (player.isAlive()) {
                             this.txtArea.appendText("You won\n");
                         } else {
@@ -302,7 +306,8 @@ public class CrawlGui extends javafx.application.Application {
     /**
      * The action to take when the Save button is pressed. Show a dialog box
      * (titled "Save filename?") for a file name to use with MapIO.saveMap.
-     * Display either "Saved" or "Unable to save" as appropriate.
+     * Display either "Saved" or "Unable to save" as appropriate once the
+     * file has been written in the background.
      */
     public void saveBtnAct() {
         TextInputDialog tid = new TextInputDialog();
@@ -313,14 +318,18 @@ public class CrawlGui extends javafx.application.Application {
         Optional<String> result = tid.showAndWait();
         if (result.isPresent()) {
             String filename = result.get();
-            if (MapIO.saveMap(base, filename)) {
-                this.txtArea.appendText("Saved\n");
-            } else {
-                this.txtArea.appendText("Unable to save\n");
-            }
+            saver.save(base, bm, filename, saved -> Platform.runLater(() ->
+                    this.txtArea.appendText(saved ? "Saved\n"
+                            : "Unable to save\n")));
         }
     }
 
+    /* Let any saves in progress finish before exiting */
+    @Override
+    public void stop() {
+        saver.shutdown(30000);
+    }
+
     /* Main function */
     public static void main(String[] args) {
         /* Check if argument is empty */
@@ -345,8 +354,11 @@ public class CrawlGui extends javafx.application.Application {
         this.player = (Player) playerAndRoom[0];
         this.base = (Room) playerAndRoom[1];
         base.enter(player);
-        bm = new BoundsMapper(base);
-        bm.walk();
+        bm = (BoundsMapper) playerAndRoom[2];
+        if (bm == null) {   // no layout was saved with the map
+            bm = new ParallelBoundsMapper(base);
+            bm.walk();
+        }
         this.currRoom = base;
 
         /* Set and display GUI widgets */
@@ -357,12 +369,16 @@ public class CrawlGui extends javafx.application.Application {
         stage.setTitle("Crawl - Explore");
         this.st = stage;
         this.addAllWidgets(canvasWidth, canvasHeight);
-        this.cartographer.draw(bm);
+        this.cartographer.watch(bm);
+        this.cartographer.update();
         this.txtArea.appendText("You find yourself in " +
                 currRoom.getDescription() + "\n");
         Scene scene = new Scene(this.rootBox);
         stage.setScene(scene);
         stage.show();
+            // keep the layout up to date from now on (after the first
+            // frame, as this has to look at every room)
+        Platform.runLater(() -> bm.track());
     }
 
     /**
@@ -492,16 +508,13 @@ public class CrawlGui extends javafx.application.Application {
         this.setRootBox();
     }
 
-    /* Return the room where the player is currently at. */
+    /* Return the room where the player is currently at.
+     * Only the last known room and its neighbours are searched, as the
+     * player has at most gone through one exit since then. */
     private Room findPlayerRoom() {
-        Map<Room, Pair> roomCoords = bm.coords;
-        for (Map.Entry<Room, Pair> roomEntry : roomCoords.entrySet()) {
-            Room r = roomEntry.getKey();
-            if (r.getContents().contains(player)) {
-                return r;
-            }
-        }
-        return null;
+        return new ReachableRooms(currRoom, 1, null).stream()
+                .filter(r -> r.getContents().contains(player))
+                .findFirst().orElse(null);
     }
 
     /* Determine whether anything is stopping the player from leaving. */
@@ -548,12 +561,10 @@ public class CrawlGui extends javafx.application.Application {
     }
 
     /**
-     * Redraw the cartographer if anything in the map changed.
+     * Redraw the parts of the cartographer where anything in the map
+     * changed.
      */
     private void updateCanvas() {
-        bm.reset();
-        bm.walk();
-        this.cartographer.clear();
-        this.cartographer.draw(bm);
+        this.cartographer.update();
     }
 }
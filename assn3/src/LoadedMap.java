@@ -0,0 +1,41 @@
+/** Rooms read from a map file, kept in file order until the result is
+* handed back to the caller.
+* @author JF
+*/
+class LoadedMap
+{
+    /** Rooms in file order (start room first) */
+    Room[] rooms;
+    /** Player taken out of its room (null if none was found or it was
+    *   left in place) */
+    Player player;
+    /** Room the Player was found in (-1 if there was none) */
+    int playerRoom;
+    /** Coordinates saved with the map (null if there were none or they no
+    *   longer fit the rooms) */
+    MapLayout layout;
+
+    /**
+    * @param rooms Rooms in file order
+    * @param player Player taken out of its room (may be null)
+    * @param playerRoom Position of the room the Player was in (or -1)
+    */
+    LoadedMap(Room[] rooms, Player player, int playerRoom) {
+        this.rooms = rooms;
+        this.player = player;
+        this.playerRoom = playerRoom;
+    }
+
+    /** The map in the form returned by {@link MapIO#loadMap MapIO.loadMap}
+    * @return [0] the Player (or null), [1] the start room and [2] a
+    *       BoundsMapper set up from the saved layout (or null)
+    * @throws IndexOutOfBoundsException if there are no rooms
+    */
+    Object[] result() {
+        Object[] res = new Object[3];
+        res[0] = player;
+        res[1] = rooms[0];
+        res[2] = (layout == null) ? null : layout.toMapper(rooms);
+        return res;
+    }
+}
@@ -1,19 +1,86 @@
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /** Static routines to save and load {@link Room Room}s
 * @author JF
 */
 public class MapIO
 {
+    /** Optional extras for {@link MapIO#saveMap(Room, String, SaveOption...)
+    * saveMap}.
+    */
+    public enum SaveOption {
+        /** Append a {@link SectionIndex SectionIndex} trailer so that
+        *   {@link MapIO#loadParallel loadParallel} can split the work up */
+        SECTION_OFFSETS,
+        /** Write a {@link RoomIndex RoomIndex} next to the file so that
+        *   {@link MapIO#readRoom readRoom} can go straight to any room */
+        ROOM_INDEX,
+        /** Compress the file with gzip (loading detects this by itself).
+        *   Can not be combined with the options above, as they record
+        *   offsets into the uncompressed text. */
+        COMPRESS,
+        /** Add the room coordinates found by a {@link BoundsMapper
+        *   BoundsMapper} so that loading can hand one back without
+        *   walking the map (see {@link MapLayout MapLayout}) */
+        LAYOUT
+    }
+
+    /** Size of the buffers used when streaming files */
+    private static final int STREAM_BUFFER = 64 * 1024;
+
+    /** Writes the contents of a file for {@link MapIO#replaceFile
+    * replaceFile}
+    */
+    interface FileBody
+    {
+        /**
+        * @param out Stream to the new file (flush it but do not close it)
+        * @throws IOException if the contents can not be written
+        */
+        void write(OutputStream out) throws IOException;
+    }
+
     /** Write rooms to a new file (using Java serialisation)
     * @param root Start room to explore from
     * @param filename Filename to write to
     * @return true if successful
     */
     public static boolean serializeMap(Room root, String filename) {
+        return serializeMap(root, filename, new SaveOption[0]);
+    }
+
+    /** Write rooms to a new file (using Java serialisation), optionally
+    * compressed.
+    * @param root Start room to explore from
+    * @param filename Filename to write to
+    * @param options Only {@link SaveOption#COMPRESS COMPRESS} applies here
+    * @return true if successful (false if any other option is given)
+    */
+    public static boolean serializeMap(Room root, String filename,
+            SaveOption... options) {
+        boolean compress = false;
+        for (SaveOption o : options) {
+            if (o != SaveOption.COMPRESS) {
+                return false;
+            }
+            compress = true;
+        }
         try {
-            FileOutputStream fs = new FileOutputStream(filename);
+            OutputStream fs = new FileOutputStream(filename);
+            if (compress) {
+                fs = new GZIPOutputStream(fs, STREAM_BUFFER);
+            }
+            fs = new BufferedOutputStream(fs, STREAM_BUFFER);
             ObjectOutputStream os = new ObjectOutputStream(fs);
             os.writeObject(root);
             os.close();
@@ -23,13 +90,13 @@ public class MapIO
         return true;
     }
 
-    /** Read serialised Rooms from a file 
+    /** Read serialised Rooms from a file (which may be compressed)
     * @param filename Filename to read Rooms from
     * @return start Room or null on failure
     */
     public static Room deserializeMap(String filename) {
         try{
-            FileInputStream ifs = new FileInputStream(filename);
+            InputStream ifs = new BufferedInputStream(openInput(filename));
             ObjectInputStream is = new ObjectInputStream(ifs);
             Room t = (Room)is.readObject();
             is.close();
@@ -116,6 +183,29 @@ C;1.0;5;frog;a frog<br />
 </code>
     */
     public static boolean saveMap(Room root, String filename) {
+        return saveMap(root, filename, new SaveOption[0]);
+    }
+
+    /** Write Rooms to a new file (using encoded String form) with extra
+    * information which older readers will ignore.
+    * <br />The file is replaced as a whole (see {@link #replaceFile
+    * replaceFile}), so a save which fails part way leaves the old file
+    * and its journal as they were.
+    * @param root Start room
+    * @param filename Filename to write to
+    * @param options Extras to include
+    * @return true if successful (false if the options can not be combined)
+    * @see #saveMap(Room, String)
+    */
+    public static boolean saveMap(Room root, String filename,
+            SaveOption... options) {
+        EnumSet<SaveOption> opts = EnumSet.noneOf(SaveOption.class);
+        opts.addAll(Arrays.asList(options));
+        if (opts.contains(SaveOption.COMPRESS)
+                && (opts.contains(SaveOption.SECTION_OFFSETS)
+                    || opts.contains(SaveOption.ROOM_INDEX))) {
+            return false;
+        }
         // There are two tasks here:
         // 1: To have a sequence of Rooms (with root at the start
         // 2: To be able to lookup a room's position in the sequence
@@ -139,61 +229,190 @@ C;1.0;5;frog;a frog<br />
         */
             // But we'd like repeatable ordering, which hashing Room
             // objects does not give us. So We'll use a custom MapWalker
-        SeqWalker sw=new SeqWalker(root);
-        sw.walk();
-        List<Room> rooms = sw.seq;
+        List<Room> rooms = roomSequence(root);
             // now we want to be able to find Rooms quickly
+        Map<Room, Integer> idm = roomIds(rooms);
+            // now we can look up any Room's position quickly
+        try {
+            replaceFile(filename, out -> {
+                CountingOutputStream counter = new CountingOutputStream(out);
+                GZIPOutputStream gz = opts.contains(SaveOption.COMPRESS)
+                        ? new GZIPOutputStream(counter, STREAM_BUFFER) : null;
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                        (gz != null) ? gz : counter));
+                SectionIndex index = null;
+                if (opts.contains(SaveOption.SECTION_OFFSETS)) {
+                    index = new SectionIndex(rooms.size(), SectionIndex.BLOCK);
+                    index.track(bw, counter);
+                }
+                writeMap(rooms, idm, bw, index);
+                if (opts.contains(SaveOption.LAYOUT) && !rooms.isEmpty()) {
+                    MapLayout.walk(rooms).write(bw);
+                }
+                if (index != null) {
+                    index.writeTrailer();
+                }
+                bw.flush();
+                if (gz != null) {
+                    gz.finish();
+                }
+                counter.flush();
+            });
+            if (opts.contains(SaveOption.ROOM_INDEX)) {
+                RoomIndex.build(filename);
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+        return true;    
+    }
+
+    /** Write a map file by way of a temporary file in the same directory,
+    * which is forced to disk and then renamed over filename, so filename
+    * always holds either the old map or the new one in full. Once the new
+    * file is in place any journal or room index belonging to the old one
+    * (which would not fit the new one) is deleted.
+    * @param filename File to replace
+    * @param body Writes the new contents
+    * @throws IOException if the new file can not be written or renamed
+    */
+    static void replaceFile(String filename, FileBody body)
+            throws IOException {
+        Path target = new File(filename).getAbsoluteFile().toPath();
+        Path dir = target.getParent();
+        File tmp = File.createTempFile(target.getFileName() + ".save", ".tmp",
+                dir.toFile());
+        try {
+            FileOutputStream fs = new FileOutputStream(tmp);
+            try {
+                body.write(fs);
+                fs.getFD().sync();
+            } finally {
+                fs.close();
+            }
+            try {
+                Files.move(tmp.toPath(), target,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), target,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+            syncDirectory(dir);
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+        new File(MapJournal.journalName(filename)).delete();
+        new File(RoomIndex.indexName(filename)).delete();
+    }
+
+    /* Make a rename durable where the platform allows it */
+    private static void syncDirectory(Path dir) {
+        try {
+            FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ);
+            try {
+                ch.force(true);
+            } finally {
+                ch.close();
+            }
+        } catch (IOException ex) {      // not supported (eg on Windows)
+        }
+    }
+
+    /** Reachable rooms in file order.
+    * @param root Start room (will be first)
+    * @return repeatable sequence of all Rooms reachable from root
+    */
+    static List<Room> roomSequence(Room root) {
+        SeqWalker sw = new SeqWalker(root);
+        sw.walk();
+        return sw.seq;
+    }
+
+    /** Position of each Room in a sequence.
+    * @param rooms Rooms in file order
+    * @return map from each Room to its index in rooms
+    */
+    static Map<Room, Integer> roomIds(List<Room> rooms) {
         Map<Room, Integer> idm = new HashMap<Room, Integer>();
         int count = 0;
         for (Room r : rooms) {
             idm.put(r, count++);
         }
-            // now we can look up any Room's position quickly
-        StringBuilder sb = new StringBuilder();
+        return idm;
+    }
+
+    /** Stream the saveMap encoding of rooms to out, one section at a time.
+    * Nothing is accumulated here, so memory use does not depend on the
+    * size of the text being produced.
+    * @param rooms Rooms in file order (start room first)
+    * @param idm Position of each Room in rooms
+    * @param out Destination (should be buffered)
+    * @param index Told where each room starts (may be null)
+    * @throws IOException if out can not be written to
+    */
+    static void writeMap(List<Room> rooms, Map<Room, Integer> idm,
+            Writer out, SectionIndex index) throws IOException {
             // write the ID cap to the file 
-        sb.append(idm.size());
-        sb.append('\n');       
+        out.write(Integer.toString(idm.size()));
+        out.write('\n');       
             // output all of the rooms in sequence
+        int count = 0;
         for (Room r : rooms) {
-            sb.append(r.getDescription());
-            sb.append('\n');
+            if (index != null) {
+                index.room(SectionIndex.DESCRIPTIONS, count++);
+            }
+            out.write(r.getDescription());
+            out.write('\n');
+        }
+        if (index != null) {
+            index.end(SectionIndex.DESCRIPTIONS);
         }
 
           //     then link them up
+        count = 0;
         for (Room r : rooms) {
+            if (index != null) {
+                index.room(SectionIndex.EXITS, count++);
+            }
             Map<String, Room> m = r.getExits();
-            sb.append(m.size());
-            sb.append('\n');             
+            out.write(Integer.toString(m.size()));
+            out.write('\n');             
             for (Map.Entry<String, Room> entry : m.entrySet()) {
-                sb.append(idm.get(entry.getValue()));
-                sb.append(" ");
-                sb.append(entry.getKey());
-                sb.append('\n');        
+                out.write(Integer.toString(idm.get(entry.getValue())));
+                out.write(' ');
+                out.write(entry.getKey());
+                out.write('\n');        
             }
+        }
+        if (index != null) {
+            index.end(SectionIndex.EXITS);
         }
           //     then fill in the objects
+        count = 0;
+        ThingWriter tw = new ThingWriter(out);
         for (Room r : rooms) {
+            if (index != null) {
+                index.room(SectionIndex.CONTENTS, count++);
+            }
             List<Thing> l = r.getContents();
-            int size = l.size();
-            sb.append(l.size());
-            sb.append('\n');
+            out.write(Integer.toString(l.size()));
+            out.write('\n');
             for (Thing t : l) {
-                sb.append(t.repr());
-                sb.append('\n');
+                tw.write(t);
+                out.write('\n');
             }
         }
-        try {
-            FileWriter fw = new FileWriter(filename);
-            fw.write(sb.toString());
-            fw.close();
-        } catch (IOException ioe) {
-            return false;
+        if (index != null) {
+            index.end(SectionIndex.CONTENTS);
         }
-        return true;    
     }    
     
     /** Decode a String into a Thing. (Need to be able to decode, 
-    *     Treasure, Critter, Explorer)
+    *     Treasure, Critter, Explorer, Builder and any type added to
+    *     {@link ThingCodecs ThingCodecs})
     * @param encoded String to decode
     * @param root start room for the map
     * @return Decoded Thing or null on failure. (null arguments or 
@@ -203,104 +422,429 @@ C;1.0;5;frog;a frog<br />
         if ((encoded == null) || (root == null)) {
             return null;
         }
-        switch (encoded.charAt(0)) {
-        case '$': return Treasure.decode(encoded);
-        case 'C': return Critter.decode(encoded);
-        case 'E': return Explorer.decode(encoded);
-        }
-    
-        return null;
+        return ThingCodecs.decode(encoded, root);
     }
     
     /** Read information from a file created with saveMap
     * @param filename Filename to read from
-    * @return null if unsucessful. If successful, an array of two Objects. 
-           [0] being the Player object (if found) and 
-           [1] being the start room. 
+    * @return null if unsucessful. If successful, an array of three Objects. 
+           [0] being the Player object (if found), 
+           [1] being the start room and
+           [2] being a BoundsMapper already holding the layout saved with
+           {@link SaveOption#LAYOUT LAYOUT} (or null if there was none). 
     * @detail. Do not add the player to the room they appear in, the caller 
            will be responsible for placing the player in the start room.
+           Changes recorded by a {@link SaveTracker SaveTracker} since the
+           file was written are applied.
     */
     public static Object[] loadMap(String filename) {
-        Player player = null;
+        try {
+            InputStream is = openInput(filename);
+            try {
+                return result(filename, readRooms(new MapParser(is), false));
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            return null;
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
 
+    /** Read information from a file created with saveMap by memory
+    * mapping it.
+    * Room descriptions are left in the mapped file until something asks
+    * for them, so little of the file is decoded onto the heap. The Room
+    * graph and its contents are still built in full.
+    * Compressed files can not be mapped and are read as by
+    * {@link #loadMap loadMap}.
+    * @param filename Filename to read from
+    * @return as for {@link #loadMap loadMap}
+    */
+    public static Object[] loadMapped(String filename) {
         try {
-            BufferedReader bf = new BufferedReader(
-                    new FileReader(filename));
-            String line = bf.readLine();
-            int idcap = Integer.parseInt(line);
-            Room[] rooms = new Room[idcap];
-            for (int i = 0; i < idcap; ++i) {
-                line = bf.readLine();
-                if (line == null) {
-                    return null;
+            RandomAccessFile raf = new RandomAccessFile(filename, "r");
+            try {
+                if (isCompressed(raf)) {
+                    return loadMap(filename);
                 }
-                rooms[i] = new Room(line);
+                return result(filename, readRooms(
+                        new MappedMapParser(raf.getChannel(), 0), false));
+            } finally {
+                raf.close();    // mappings stay valid after closing
             }
-            for (int i = 0; i < idcap; ++i) {  // for each room set up exits
-                line = bf.readLine();
-                int exitcount=Integer.parseInt(line);
-                for (int j=0; j < exitcount; ++j) {
-                    line = bf.readLine();
-                    if (line == null) {
-                        return null;
-                    }
-                    int pos = line.indexOf(' ');
-                    if (pos < 0) {
-                        return null;
-                    }
-                    int target = Integer.parseInt(line.substring(0,pos));
-                    String exname = line.substring(pos+1);
-                    try {
-                        rooms[i].addExit(exname, rooms[target]);
-                    } catch (ExitExistsException e) {
-                        return null;
-                    } catch (NullRoomException e) {
-                        return null;
-                    }
+        } catch (IOException ex) {
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            return null;
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /** Read information from a file created with saveMap, decoding
+    * blocks of rooms in parallel.
+    * Needs the trailer written by the
+    * {@link SaveOption#SECTION_OFFSETS SECTION_OFFSETS} option, otherwise
+    * this reads the file the same way as {@link #loadMapped loadMapped}
+    * (or {@link #loadMap loadMap} if it is compressed).
+    * @param filename Filename to read from
+    * @return as for {@link #loadMap loadMap}
+    */
+    public static Object[] loadParallel(String filename) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(filename, "r");
+            try {
+                if (isCompressed(raf)) {
+                    return loadMap(filename);
                 }
-            }
-            for (int i = 0;i<idcap;++i) {
-                line = bf.readLine();
-                int itemcount = Integer.parseInt(line);
-                for (int j = 0; j < itemcount; ++j) {
-                    line = bf.readLine();
-                    if (line == null) {
-                        return null;
-                    }                    
-                    Thing t = decodeThing(line, rooms[0]);
-                    if (t == null) {
-                        return null;
-                    }
-                    if (t instanceof Player) { // we don't add 
-                        player = (Player)t;      // players to rooms
-                    } else {
-                        rooms[i].enter(t);
-                    }
+                FileChannel ch = raf.getChannel();
+                SectionIndex index = SectionIndex.read(ch);
+                if (index == null) {
+                    return result(filename,
+                            readRooms(new MappedMapParser(ch, 0), false));
                 }
+                return result(filename, new ParallelMapLoader(ch, index)
+                        .load(ForkJoinPool.commonPool()));
+            } finally {
+                raf.close();
             }
-            Object[] res = new Object[2];                        
-            res[0] = player;
-            res[1] = rooms[0];
-            return res;
         } catch (IOException ex) {
             return null;
+        } catch (UncheckedIOException ex) {
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            return null;
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /** Read through a map without building it.
+    * The visitor is told about each room, exit and Thing in turn (see
+    * {@link MapVisitor MapVisitor}). Works on files written by saveMap
+    * (compressed or not) and by saveBinary. Memory use does not grow
+    * with the size of a text map. Unlike loading, any changes in a
+    * journal next to the file are not included.
+    * @param filename Filename to read from
+    * @param visitor Told about the contents of the map
+    * @return true if the whole map was scanned, false if it could not be
+    *       read or is not a valid map (the visitor may have been told
+    *       about part of it)
+    */
+    public static boolean scan(String filename, MapVisitor visitor) {
+        MapScanner scanner = new MapScanner(visitor);
+        try {
+            RandomAccessFile raf = new RandomAccessFile(filename, "r");
+            try {
+                if (isBinary(raf)) {
+                    FileChannel ch = raf.getChannel();
+                    return scanner.scanBinary(ch.map(
+                            FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+                }
+            } finally {
+                raf.close();    // mappings stay valid after closing
+            }
+            InputStream is = openInput(filename);
+            try {
+                return scanner.scanText(new MapParser(is));
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        } catch (IllegalArgumentException ex) {  // eg binary file over 2GB
+            return false;
         } catch (IndexOutOfBoundsException ex) {
+            return false;
+        }
+    }
+
+    /* Does a file start with the binary format's magic bytes? */
+    private static boolean isBinary(RandomAccessFile raf) throws IOException {
+        byte[] magic = new byte[BinaryMapFormat.MAGIC.length];
+        raf.seek(0);
+        int n = raf.read(magic);
+        raf.seek(0);
+        return (n == magic.length) && Arrays.equals(magic,
+                BinaryMapFormat.MAGIC);
+    }
+
+    /** (Re)build the room index for a file created with saveMap.
+    * The index is kept in a separate file (filename + ".idx").
+    * @param filename Map file to index
+    * @return true if successful
+    */
+    public static boolean writeIndex(String filename) {
+        try {
+            RoomIndex.build(filename);
+        } catch (IOException ex) {
+            return false;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+        return true;
+    }
+
+    /** Read a single room from a file created with saveMap without
+    * loading the rest of the map.
+    * Uses the room index, building it first if it is missing or out of
+    * date.
+    * @param filename Map file to read from
+    * @param id Position of the room in the file (the start room is 0)
+    * @return the room as saved, or null on failure
+    */
+    public static RoomRecord readRoom(String filename, int id) {
+        try {
+            RoomIndex index = new RoomIndex(filename);
+            try {
+                return index.read(id, null);
+            } finally {
+                index.close();
+            }
+        } catch (IOException ex) {
             return null;
         } catch (NumberFormatException nfe) {
             return null;
         }
     }
+
+    /** Parse a whole map in saveMap format, keeping the rooms in file
+    * order.
+    * @param mp Parser positioned at the start of the map
+    * @param placePlayer true if the Player should be left in its room
+    * @return rooms read or null for a bad encoding
+    * @throws IOException if the input ends early or can't be read
+    * @throws NumberFormatException if a count or room number is malformed
+    * @throws IndexOutOfBoundsException if an exit leads to an unknown room
+    */
+    static LoadedMap readRooms(MapParser mp, boolean placePlayer)
+            throws IOException {
+        Player player = null;
+        int playerRoom = -1;
+        int idcap = mp.readInt();
+        if (idcap < 0) {
+            throw new NumberFormatException("negative room count");
+        }
+        Room[] rooms = new Room[idcap];
+        for (int i = 0; i < idcap; ++i) {
+            rooms[i] = mp.readRoom();
+        }
+        for (int i = 0; i < idcap; ++i) {  // for each room set up exits
+            int exitcount = mp.readInt();
+            for (int j = 0; j < exitcount; ++j) {
+                mp.nextLine();
+                int target = mp.intUntil((byte)' ');
+                String exname = mp.restAsLabel();
+                try {
+                    rooms[i].addExit(exname, rooms[target]);
+                } catch (ExitExistsException e) {
+                    return null;
+                } catch (NullRoomException e) {
+                    return null;
+                }
+            }
+        }
+        for (int i = 0; i < idcap; ++i) {
+            int itemcount = mp.readInt();
+            for (int j = 0; j < itemcount; ++j) {
+                Thing t = mp.readThing(rooms[0]);
+                if (t == null) {
+                    return null;
+                }
+                if (t instanceof Player) {
+                    playerRoom = i;
+                }
+                if ((t instanceof Player) && !placePlayer) { // we don't add 
+                    player = (Player)t;                     // players to rooms
+                } else {
+                    rooms[i].enter(t);
+                }
+            }
+        }
+        LoadedMap map = new LoadedMap(rooms, player, playerRoom);
+        if (idcap > 0) {
+            map.layout = MapLayout.read(mp, idcap);
+        }
+        return map;
+    }
+
+    /** Open a map file for reading, undoing any compression.
+    * Files which start with the gzip magic bytes are decompressed.
+    * @param filename File to open
+    * @return stream of the file's (uncompressed) contents
+    * @throws IOException if the file can not be opened
+    */
+    static InputStream openInput(String filename) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(
+                new FileInputStream(filename), 2);
+        try {
+            byte[] magic = new byte[2];
+            int n = 0;
+            while (n < magic.length) {
+                int got = in.read(magic, n, magic.length - n);
+                if (got < 0) {
+                    break;
+                }
+                n += got;
+            }
+            in.unread(magic, 0, n);
+            if ((n == 2) && isGzipMagic(magic[0], magic[1])) {
+                return new GZIPInputStream(in, STREAM_BUFFER);
+            }
+            return in;
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /* Does a file start with the gzip magic bytes? */
+    private static boolean isCompressed(RandomAccessFile raf)
+            throws IOException {
+        raf.seek(0);
+        int b0 = raf.read();
+        int b1 = raf.read();
+        raf.seek(0);
+        return isGzipMagic(b0, b1);
+    }
+
+    private static boolean isGzipMagic(int b0, int b1) {
+        return ((b0 & 0xff) == (GZIPInputStream.GZIP_MAGIC & 0xff))
+                && ((b1 & 0xff) == (GZIPInputStream.GZIP_MAGIC >> 8));
+    }
+
+    /** Apply any journal written since a map file was saved.
+    * @param filename Map file the rooms were read from
+    * @param map Rooms read from that file (may be null)
+    * @param placePlayer true if the Player was left in its room
+    * @return map with the journal applied, or null if map is null or the
+    *       journal does not fit it
+    * @throws IOException if the journal can not be read
+    * @see SaveTracker
+    */
+    static LoadedMap replayJournal(String filename, LoadedMap map,
+            boolean placePlayer) throws IOException {
+        if ((map == null) || !MapJournal.exists(filename)) {
+            return map;
+        }
+        MapJournal journal = new MapJournal(filename, map.playerRoom);
+        try {
+            return journal.replay(map, placePlayer) ? map : null;
+        } finally {
+            journal.close();
+        }
+    }
+
+    /* Result for loadMap and friends */
+    private static Object[] result(String filename, LoadedMap map)
+            throws IOException {
+        map = replayJournal(filename, map, false);
+        return (map == null) ? null : map.result();
+    }
     
+    /** Write Rooms to a new file in the compact binary format.
+    * Holds the same information as {@link #saveMap saveMap}, but uses
+    * varints for counts and room numbers, a shared table for repeated
+    * strings and full precision for values.
+    * @param root Start room
+    * @param filename Filename to write to
+    * @return true if successful
+    * @see BinaryMapFormat
+    */
+    public static boolean saveBinary(Room root, String filename) {
+        List<Room> rooms = roomSequence(root);
+        Map<Room, Integer> idm = roomIds(rooms);
+        try {
+            DataOutputStream os = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(filename)));
+            try {
+                new BinaryMapFormat().write(rooms, idm, os);
+            } finally {
+                os.close();
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+        return true;
+    }
+
+    /** Read information from a file created with saveBinary
+    * @param filename Filename to read from
+    * @return as for {@link #loadMap loadMap}
+    */
+    public static Object[] loadBinary(String filename) {
+        return readBinary(filename, false);
+    }
+
+    /* Read a binary map, optionally leaving the player in place */
+    private static Object[] readBinary(String filename, boolean placePlayer) {
+        try {
+            DataInputStream is = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(filename)));
+            try {
+                return new BinaryMapFormat().read(is, placePlayer);
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+
+    /** Convert a file written by saveMap into the binary format.
+    * Unlike loading and saving, the player stays in the room it was in.
+    * Any journal for textFile is applied first.
+    * @param textFile Filename to read from
+    * @param binaryFile Filename to write to
+    * @return true if successful
+    */
+    public static boolean textToBinary(String textFile, String binaryFile) {
+        LoadedMap res;
+        try {
+            InputStream is = openInput(textFile);
+            try {
+                res = replayJournal(textFile,
+                        readRooms(new MapParser(is), true), true);
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        } catch (IndexOutOfBoundsException ex) {
+            return false;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+        return (res != null) && saveBinary(res.rooms[0], binaryFile);
+    }
+
+    /** Convert a file written by saveBinary into the saveMap text format.
+    * @param binaryFile Filename to read from
+    * @param textFile Filename to write to
+    * @return true if successful
+    */
+    public static boolean binaryToText(String binaryFile, String textFile) {
+        Object[] res = readBinary(binaryFile, true);
+        return (res != null) && saveMap((Room)res[1], textFile);
+    }
+
     /** 
     * Used to find a sequence of reachable rooms
+    * (in MapWalker order, reading exits in parallel)
     * @author JF
     */
-    static class SeqWalker extends MapWalker 
+    static class SeqWalker extends ParallelMapWalker 
     {
         private int count;
         public List<Room> seq;
         public SeqWalker(Room start) {
-            super(start);
+            super(start, true);
             count = 0;
             seq = new LinkedList<Room>();
         }
@@ -0,0 +1,373 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/** Append-only file of changed rooms which sits next to a saveMap file.
+* <br />The journal for <code>name</code> is kept in
+* <code>name.journal</code>. Each record is a line <code>@id</code>
+* followed by the room's description, exits and contents in the same
+* form they take in the sections of a saveMap file. A later record for a
+* room replaces any earlier one (and the room in the map file).
+* Room numbers at or beyond the map's room count are rooms which were
+* created after the map was saved.
+* <br />Records which must be applied together are preceded by a line
+* <code>+count</code>; if the group was not completely written (up to and
+* including the newline ending its last line), none of it is used.
+* @author JF
+*/
+class MapJournal
+{
+    private final RandomAccessFile file;
+    /** Offset and length of the latest record for each room */
+    private final Map<Integer, long[]> latest = new HashMap<Integer, long[]>();
+    /** Room holding the Player after the records read so far */
+    private int playerRoom;
+
+    /** Open (or create) the journal for a map and find its records.
+    * A partly written record at the end (left by a crash) is discarded.
+    * @param filename Map file the journal belongs to
+    * @param playerRoom Room holding the Player according to the map file
+    * @throws IOException if the journal can not be opened or read
+    */
+    public MapJournal(String filename, int playerRoom) throws IOException {
+        file = new RandomAccessFile(journalName(filename), "rw");
+        this.playerRoom = playerRoom;
+        scan();
+    }
+
+    /** Name of the journal for a map file
+    * @param filename Map file
+    * @return filename of the journal
+    */
+    static String journalName(String filename) {
+        return filename + ".journal";
+    }
+
+    /** Does a map file have a journal with records in it?
+    * @param filename Map file
+    * @return true if there is a non-empty journal
+    */
+    static boolean exists(String filename) {
+        return new File(journalName(filename)).length() > 0;
+    }
+
+    /* Index the records, truncating after the last complete group */
+    private void scan() throws IOException {
+        FileChannel ch = file.getChannel();
+        long good = 0;
+        if (ch.size() > 0) {
+            MappedMapParser mp = new MappedMapParser(ch, 0);
+            List<long[]> group = new ArrayList<long[]>();
+            try {
+                while (good < ch.size()) {
+                    mp.nextLine();
+                    int count = 1;
+                    if (mp.lineTag() == '+') {
+                        count = mp.parseInt(mp.lineStart + 1, mp.lineEnd);
+                        mp.nextLine();
+                    }
+                    group.clear();
+                    for (int k = 0; k < count; ++k) {
+                        if (k > 0) {
+                            mp.nextLine();
+                        }
+                        group.add(scanRecord(mp));
+                    }
+                    long end = mp.offset();
+                    if (!endsLine(ch, end)) {
+                        break;      // last line was cut short
+                    }
+                    for (long[] rec : group) {
+                        int id = (int)rec[0];
+                        latest.put(id, new long[] {rec[1], rec[2]});
+                        if (rec[3] != 0) {
+                            playerRoom = id;
+                        } else if (id == playerRoom) {
+                            playerRoom = -1;
+                        }
+                    }
+                    good = end;
+                }
+            } catch (IOException ex) {    // incomplete record
+            } catch (NumberFormatException nfe) {
+            }
+        }
+        if (good < ch.size()) {
+            ch.truncate(good);
+        }
+    }
+
+    /* Is the byte before offset a newline? */
+    private static boolean endsLine(FileChannel ch, long offset)
+            throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(1);
+        return (offset > 0) && (ch.read(b, offset - 1) == 1)
+                && (b.get(0) == '\n');
+    }
+
+    /* Skip the record whose @id line is current.
+     * Gives id, offset, length and whether there is a Player (0 or 1).
+     */
+    private static long[] scanRecord(MappedMapParser mp) throws IOException {
+        if (mp.lineTag() != '@') {
+            throw new NumberFormatException("missing @");
+        }
+        int id = mp.parseInt(mp.lineStart + 1, mp.lineEnd);
+        if (id < 0) {
+            throw new NumberFormatException("negative room number");
+        }
+        long start = mp.lineOffset();
+        mp.nextLine();
+        skipBlock(mp, false);
+        boolean player = skipBlock(mp, true);
+        return new long[] {id, start, mp.offset() - start, player ? 1 : 0};
+    }
+
+    /* Skip a count line and that many lines, noting any Player (by
+     * decoding the items, as replay does)
+     */
+    private static boolean skipBlock(MapParser mp, boolean items)
+            throws IOException {
+        boolean player = false;
+        int count = mp.readInt();
+        for (int j = 0; j < count; ++j) {
+            if (items) {
+                player |= (mp.readThing(null) instanceof Player);
+            } else {
+                mp.nextLine();
+            }
+        }
+        return player;
+    }
+
+    /** Which room holds the Player once the journal is applied?
+    * @return room number or -1 if there is no Player
+    */
+    public int getPlayerRoom() {
+        return playerRoom;
+    }
+
+    /** Rooms which have records
+    * @return map from room number to the offset and length of its
+    *       latest record
+    */
+    public Map<Integer, long[]> getRecords() {
+        return latest;
+    }
+
+    /** Read the latest record for a room.
+    * @param id Room number
+    * @param root Start room of the map (given to Things which need it)
+    * @return record or null if the room has no valid record
+    * @throws IOException if the journal can not be read
+    */
+    public RoomRecord read(int id, Room root) throws IOException {
+        long[] at = latest.get(id);
+        if (at == null) {
+            return null;
+        }
+        try {
+            MapParser mp = RoomIndex.parser(file.getChannel(), at[0],
+                    at[0] + at[1]);
+            return RoomRecord.read(mp.readTagged((byte)'@'), mp, mp, mp,
+                    root);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /** Add a record for a room.
+    * @param id Number of the room
+    * @param room Room to record
+    * @param ids Gives the number of each room an exit leads to
+    * @throws IOException if the journal can not be written
+    */
+    public void append(int id, Room room, ToIntFunction<Room> ids)
+            throws IOException {
+        append(id, room.getDescription(), room.getExits(), ids,
+                room.getContents());
+    }
+
+    /** Add a record for a room given its parts.
+    * @param id Number of the room
+    * @param description Room description
+    * @param exits Exits from the room
+    * @param ids Gives the number of each room an exit leads to
+    * @param contents Things in the room
+    * @throws IOException if the journal can not be written
+    */
+    public void append(int id, String description, Map<String, Room> exits,
+            ToIntFunction<Room> ids, List<Thing> contents)
+            throws IOException {
+        byte[] record = encode(id, description, exits, ids, contents)
+                .getBytes();
+        long at = file.length();
+        file.seek(at);
+        file.write(record);
+        latest.put(id, new long[] {at, record.length});
+        noteContents(id, contents);
+    }
+
+    /* Keep track of the Player after recording a room */
+    private void noteContents(int id, List<Thing> contents) {
+        boolean player = false;
+        for (Thing t : contents) {
+            player |= (t instanceof Player);
+        }
+        if (player) {
+            playerRoom = id;
+        } else if (id == playerRoom) {
+            playerRoom = -1;
+        }
+    }
+
+    /** Apply the latest record for each room to a map read from the file
+    * this journal belongs to.
+    * Rooms which were created after the map was saved are added to the
+    * end of map.rooms (any numbers with no record are left null).
+    * @param map Rooms read from the map file (changed in place)
+    * @param placePlayer true if the Player should be left in its room
+    * @return false if a record is damaged or an exit leads to a room
+    *       which does not exist
+    * @throws IOException if the journal can not be read
+    */
+    public boolean replay(LoadedMap map, boolean placePlayer)
+            throws IOException {
+        int count = map.rooms.length;
+        for (int id : latest.keySet()) {
+            count = Math.max(count, id + 1);
+        }
+        Room[] rooms = Arrays.copyOf(map.rooms, count);
+        RoomRecord[] records = new RoomRecord[count];
+        Room root = (map.rooms.length > 0) ? map.rooms[0] : null;
+        for (int id : latest.keySet()) {
+            records[id] = read(id, root);
+            if (records[id] == null) {
+                return false;
+            }
+            if (rooms[id] == null) {
+                rooms[id] = new Room(records[id].getDescription());
+            }
+        }
+        Player player = map.player;
+        if ((map.playerRoom >= 0) && (records[map.playerRoom] != null)) {
+            player = null;      // its room has been replaced
+        }
+        for (int id = 0; id < count; ++id) {
+            RoomRecord rec = records[id];
+            if (rec == null) {
+                continue;
+            }
+            Room room = rooms[id];
+            room.resetState(rec.getDescription());
+            Map<String, Room> exits = room.exitMap();
+            for (int j = 0; j < rec.getExitCount(); ++j) {
+                int target = rec.getExitTarget(j);
+                if ((target < 0) || (target >= count)
+                        || (rooms[target] == null)) {
+                    return false;
+                }
+                exits.put(rec.getExitLabel(j), rooms[target]);
+            }
+            for (Thing t : rec.getContents()) {
+                if ((t instanceof Player) && !placePlayer) {
+                    player = (Player)t;
+                } else {
+                    room.contentList().add(t);
+                }
+            }
+        }
+        map.rooms = rooms;
+        if (!latest.isEmpty()) {    // rooms may have moved
+            map.layout = null;
+        }
+        map.player = player;
+        map.playerRoom = playerRoom;
+        return true;
+    }
+
+    /** Add records for several rooms as one group.
+    * If the group is cut short (eg by a crash) none of it will be read
+    * back.
+    * @param rooms Rooms to record
+    * @param ids Gives the number of each Room (in rooms or reached by
+    *       an exit)
+    * @throws IOException if the journal can not be written
+    */
+    public void appendAll(List<Room> rooms, ToIntFunction<Room> ids)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("+" + rooms.size() + "\n").getBytes());
+        long at = file.length();
+        long[][] spans = new long[rooms.size()][];
+        for (int i = 0; i < rooms.size(); ++i) {
+            Room r = rooms.get(i);
+            byte[] record = encode(ids.applyAsInt(r), r.getDescription(),
+                    r.getExits(), ids, r.getContents()).getBytes();
+            spans[i] = new long[] {at + out.size(), record.length};
+            out.write(record);
+        }
+        file.seek(at);
+        file.write(out.toByteArray());
+        for (int i = 0; i < rooms.size(); ++i) {
+            Room r = rooms.get(i);
+            int id = ids.applyAsInt(r);
+            latest.put(id, spans[i]);
+            noteContents(id, r.getContents());
+        }
+    }
+
+    /** Encode a record.
+    * @param id Number of the room
+    * @param description Room description
+    * @param exits Exits from the room
+    * @param ids Gives the number of each room an exit leads to
+    * @param contents Things in the room
+    * @return text of the record
+    */
+    static String encode(int id, String description, Map<String, Room> exits,
+            ToIntFunction<Room> ids, List<Thing> contents) {
+        StringBuilder sb = new StringBuilder();
+        ThingWriter tw = new ThingWriter(sb);
+        sb.append('@').append(id).append('\n');
+        sb.append(description).append('\n');
+        sb.append(exits.size()).append('\n');
+        for (Map.Entry<String, Room> entry : exits.entrySet()) {
+            sb.append(ids.applyAsInt(entry.getValue())).append(' ')
+                    .append(entry.getKey()).append('\n');
+        }
+        sb.append(contents.size()).append('\n');
+        try {
+            for (Thing t : contents) {
+                tw.write(t);
+                sb.append('\n');
+            }
+        } catch (IOException ex) {      // StringBuilder does not throw
+            throw new IllegalStateException(ex);
+        }
+        return sb.toString();
+    }
+
+    /** Force records to disk
+    * @throws IOException if the journal can not be synced
+    */
+    public void sync() throws IOException {
+        file.getChannel().force(false);
+    }
+
+    /** Release the file
+    * @throws IOException if it can not be closed
+    */
+    public void close() throws IOException {
+        file.close();
+    }
+}
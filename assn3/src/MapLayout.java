@@ -0,0 +1,134 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/** Room coordinates saved with a map so that a
+* {@link BoundsMapper BoundsMapper} can be set up without walking it.
+* <br />The section follows the room contents in a saveMap file:
+* <code>#layout xMin xMax yMin yMax</code> and then a line <code>x y</code>
+* for each room, in the same order as the rooms. Readers which stop after
+* the contents never see it.
+* <br />The coordinates are the ones a walk from the start room finds, so
+* a map loaded with its layout looks the same as one which was walked.
+* @author JF
+*/
+class MapLayout
+{
+    /** First line of the section */
+    static final String TAG = "#layout";
+
+    /** Coordinates of each room (in file order) */
+    private final int[] xs;
+    private final int[] ys;
+    /** Bounding box */
+    private final int xMin, xMax, yMin, yMax;
+
+    private MapLayout(int[] xs, int[] ys, int xMin, int xMax, int yMin,
+            int yMax) {
+        this.xs = xs;
+        this.ys = ys;
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+    }
+
+    /** Walk a map to find its layout.
+    * @param rooms Rooms in file order (start room first)
+    * @return coordinates of the rooms
+    */
+    static MapLayout walk(List<Room> rooms) {
+        BoundsMapper bm = new BoundsMapper(rooms.get(0));
+        bm.walk();
+        return from(rooms, bm);
+    }
+
+    /** Copy the layout a BoundsMapper has already found.
+    * @param rooms Rooms in file order (start room first)
+    * @param bm Mapper which has walked the map from rooms[0]
+    * @return coordinates of the rooms or null if bm is missing any of them
+    */
+    static MapLayout from(List<Room> rooms, BoundsMapper bm) {
+        int[] xs = new int[rooms.size()];
+        int[] ys = new int[rooms.size()];
+        int i = 0;
+        for (Room r : rooms) {
+            if (!bm.coords.contains(r)) {
+                return null;
+            }
+            xs[i] = bm.coords.getX(r);
+            ys[i] = bm.coords.getY(r);
+            ++i;
+        }
+        return new MapLayout(xs, ys, bm.xMin, bm.xMax, bm.yMin, bm.yMax);
+    }
+
+    /** Write the section.
+    * @param out Destination (should be buffered)
+    * @throws IOException if out can not be written to
+    */
+    void write(Writer out) throws IOException {
+        out.write(TAG + ' ' + xMin + ' ' + xMax + ' ' + yMin + ' ' + yMax
+                + '\n');
+        for (int i = 0; i < xs.length; ++i) {
+            out.write(Integer.toString(xs[i]));
+            out.write(' ');
+            out.write(Integer.toString(ys[i]));
+            out.write('\n');
+        }
+    }
+
+    /** Read the section if there is one.
+    * @param mp Parser positioned just after the room contents
+    * @param count Number of rooms in the map
+    * @return layout or null if the section is missing or malformed
+    * @throws IOException if the input can not be read
+    */
+    static MapLayout read(MapParser mp, int count) throws IOException {
+        try {
+            mp.nextLine();
+            int tagEnd = mp.lineStart + TAG.length();
+            if ((mp.lineEnd <= tagEnd) || (mp.buf.get(tagEnd) != ' ')
+                    || !mp.decode(mp.lineStart, tagEnd).equals(TAG)) {
+                return null;
+            }
+            mp.cursor = tagEnd + 1;
+            int xMin = mp.intUntil((byte)' ');
+            int xMax = mp.intUntil((byte)' ');
+            int yMin = mp.intUntil((byte)' ');
+            int yMax = mp.parseInt(mp.cursor, mp.lineEnd);
+            int[] xs = new int[count];
+            int[] ys = new int[count];
+            for (int i = 0; i < count; ++i) {
+                mp.nextLine();
+                xs[i] = mp.intUntil((byte)' ');
+                ys[i] = mp.parseInt(mp.cursor, mp.lineEnd);
+            }
+            return new MapLayout(xs, ys, xMin, xMax, yMin, yMax);
+        } catch (EOFException ex) {
+            return null;
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /** Set up a BoundsMapper from the saved coordinates.
+    * @param rooms Rooms in file order (the same number as were saved)
+    * @return mapper holding the coordinates and bounding box, as if it
+    *       had walked the map from rooms[0]
+    */
+    BoundsMapper toMapper(Room[] rooms) {
+        CoordTable coords = new CoordTable(rooms.length);
+        for (int i = 0; i < rooms.length; ++i) {
+            coords.put(rooms[i], xs[i], ys[i]);
+        }
+        BoundsMapper bm = new BoundsMapper(rooms[0]);
+        bm.coords = coords;
+        bm.xMin = xMin;
+        bm.xMax = xMax;
+        bm.yMin = yMin;
+        bm.yMax = yMax;
+        return bm;
+    }
+}
@@ -0,0 +1,425 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/** Reads the {@link MapIO#saveMap MapIO.saveMap} text format straight out
+* of a byte buffer.
+* <br />Numbers, exit labels and the <code>;</code> separated fields of
+* Thing encodings are parsed in place, so the only Strings created are
+* the descriptions which end up being kept.
+* <br />Lines are split on '\n' bytes, so the platform charset must be
+* ASCII compatible (as it is for every charset FileWriter would
+* sensibly use for these files).
+* @author JF
+*/
+class MapParser implements ThingReader
+{
+    /** Exit labels which are handed out without decoding */
+    private static final String[] LABELS = {"North", "South", "East",
+            "West"};
+    private static final byte[][] LABEL_BYTES = new byte[LABELS.length][];
+    /** Exact powers of ten for the fast path in parseDouble */
+    private static final double[] POW10 = new double[23];
+
+    static {
+        for (int i = 0; i < LABELS.length; ++i) {
+            LABEL_BYTES[i] = LABELS[i].getBytes();
+        }
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; ++i) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /** Where more bytes come from (null if buf holds everything) */
+    private InputStream in;
+    private byte[] chunk;
+    /** Bytes being parsed, between position 0 and limit() */
+    protected ByteBuffer buf;
+    /** Start of the unread part of buf */
+    protected int pos;
+    /** Bounds of the current line (end excludes the line terminator) */
+    protected int lineStart, lineEnd;
+    /** Field cursor within the current line */
+    protected int cursor;
+    /** Encoding used by the map file */
+    protected final Charset charset;
+    /** Offsets of ';' separated fields within the current line */
+    private int[] fieldStart = new int[8];
+    private int[] fieldEnd = new int[8];
+    private int fieldCount;
+    /** Scratch space for decoding from buffers without an array */
+    private byte[] scratch = new byte[256];
+
+    /**
+    * @param in Stream to read from (the caller is responsible for closing it)
+    */
+    public MapParser(InputStream in) {
+        this.in = in;
+        this.chunk = new byte[64 * 1024];
+        this.buf = ByteBuffer.wrap(chunk, 0, 0);
+        this.charset = Charset.defaultCharset();
+    }
+
+    /**
+    * @param buf Complete contents to parse (from position 0 to the limit)
+    */
+    protected MapParser(ByteBuffer buf) {
+        this(buf, Charset.defaultCharset());
+    }
+
+    /**
+    * @param buf Complete contents to parse (from position 0 to the limit)
+    * @param charset Encoding of the contents
+    */
+    protected MapParser(ByteBuffer buf, Charset charset) {
+        this.buf = buf;
+        this.charset = charset;
+    }
+
+    /** Make more bytes available after the limit of buf.
+    * Bytes from lineStart onwards must be kept (but may be moved).
+    * @return false if there is nothing more to read
+    * @throws IOException if the underlying input fails
+    */
+    protected boolean refill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        int keep = buf.limit() - pos;
+        if (keep == chunk.length) {   // a single line fills the buffer
+            byte[] bigger = new byte[chunk.length * 2];
+            System.arraycopy(chunk, pos, bigger, 0, keep);
+            chunk = bigger;
+        } else {
+            System.arraycopy(chunk, pos, chunk, 0, keep);
+        }
+        pos = 0;
+        int n = in.read(chunk, keep, chunk.length - keep);
+        if (n < 0) {
+            buf = ByteBuffer.wrap(chunk, 0, keep);
+            return false;
+        }
+        buf = ByteBuffer.wrap(chunk, 0, keep + n);
+        return true;
+    }
+
+    /** Advance to the next line.
+    * @throws EOFException if there are no more lines
+    * @throws IOException if the underlying input fails
+    */
+    public void nextLine() throws IOException {
+        int i = pos;
+        while (true) {
+            int limit = buf.limit();
+            while ((i < limit) && (buf.get(i) != '\n')) {
+                ++i;
+            }
+            if (i < limit) {
+                break;
+            }
+            int scanned = i - pos;
+            if (!refill()) {
+                if (pos == buf.limit()) {
+                    throw new EOFException();
+                }
+                i = buf.limit();    // last line has no terminator
+                break;
+            }
+            i = pos + scanned;
+        }
+        lineStart = pos;
+        lineEnd = i;
+        if ((lineEnd > lineStart) && (buf.get(lineEnd - 1) == '\r')) {
+            --lineEnd;
+        }
+        pos = (i < buf.limit()) ? i + 1 : i;
+        cursor = lineStart;
+    }
+
+    /** Read a line consisting of a single integer.
+    * @return value on the line
+    * @throws NumberFormatException if the line is not an integer
+    * @throws IOException if there is no line to read
+    */
+    public int readInt() throws IOException {
+        nextLine();
+        return parseInt(lineStart, lineEnd);
+    }
+
+    /** Read a whole line as a String.
+    * @return contents of the line (without the terminator)
+    * @throws IOException if there is no line to read
+    */
+    public String readLine() throws IOException {
+        nextLine();
+        return decode(lineStart, lineEnd);
+    }
+
+    /** First byte of the current line
+    * @return the byte or -1 if the line is empty
+    */
+    public int lineTag() {
+        return (lineStart < lineEnd) ? buf.get(lineStart) : -1;
+    }
+
+    /** Read a line made up of a tag byte followed by an integer.
+    * @param tag Byte the line must start with
+    * @return value after the tag
+    * @throws NumberFormatException if the line does not match
+    * @throws IOException if there is no line to read
+    */
+    public int readTagged(byte tag) throws IOException {
+        nextLine();
+        if (lineTag() != tag) {
+            throw new NumberFormatException("missing " + (char)tag);
+        }
+        return parseInt(lineStart + 1, lineEnd);
+    }
+
+    /** Read a line holding a room description.
+    * @return new Room with that description
+    * @throws IOException if there is no line to read
+    */
+    public Room readRoom() throws IOException {
+        return new Room(readLine());
+    }
+
+    /** Parse an integer from the cursor up to the next sep in the
+    * current line and move the cursor past the separator.
+    * @param sep Separator which ends the number
+    * @return value parsed
+    * @throws NumberFormatException if sep is missing or the text before
+    *       it is not an integer
+    */
+    public int intUntil(byte sep) {
+        int end = cursor;
+        while ((end < lineEnd) && (buf.get(end) != sep)) {
+            ++end;
+        }
+        if (end == lineEnd) {
+            throw new NumberFormatException("missing separator");
+        }
+        int res = parseInt(cursor, end);
+        cursor = end + 1;
+        return res;
+    }
+
+    /** The rest of the current line as an exit label.
+    * Common labels are returned as shared constants.
+    * @return label from the cursor to the end of the line
+    */
+    public String restAsLabel() {
+        int len = lineEnd - cursor;
+        for (int i = 0; i < LABELS.length; ++i) {
+            byte[] b = LABEL_BYTES[i];
+            if (b.length == len) {
+                int j = 0;
+                while ((j < len) && (buf.get(cursor + j) == b[j])) {
+                    ++j;
+                }
+                if (j == len) {
+                    return LABELS[i];
+                }
+            }
+        }
+        return decode(cursor, lineEnd);
+    }
+
+    /** Read a line holding an encoded Thing.
+    * Accepts the same inputs as {@link MapIO#decodeThing
+    *     MapIO.decodeThing}.
+    * @param root Start room of the map being read (may be null)
+    * @return decoded Thing or null if the line is not a valid encoding
+    * @throws IOException if there is no line to read
+    */
+    public Thing readThing(Room root) throws IOException {
+        nextLine();
+        if (lineStart == lineEnd) {
+            return null;
+        }
+        ThingCodec<?> codec = ThingCodecs.forTag(buf.get(lineStart) & 0xff);
+        if (codec == null) {
+            return null;
+        }
+        splitFields();
+        try {
+            return codec.decode(this, root);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /** Read a line holding an encoded Thing and split it into fields
+    * without decoding it. The fields are then available through the
+    * {@link ThingReader ThingReader} methods.
+    * @return the first byte of the line (0-255) or -1 if it is empty
+    * @throws IOException if there is no line to read
+    */
+    int readFields() throws IOException {
+        nextLine();
+        splitFields();
+        return (lineStart < lineEnd) ? buf.get(lineStart) & 0xff : -1;
+    }
+
+    /** Split a range of buf (rather than a line) into ';' separated
+    * fields, as for {@link #readFields readFields}.
+    * @param start First byte
+    * @param end End of range (exclusive)
+    */
+    void splitRange(int start, int end) {
+        lineStart = start;
+        lineEnd = end;
+        cursor = start;
+        splitFields();
+    }
+
+    /* Find ';' separated fields in the current line using the same rules
+     * as String.split (trailing empty fields are dropped).
+     */
+    private void splitFields() {
+        fieldCount = 0;
+        int start = lineStart;
+        for (int i = lineStart; i <= lineEnd; ++i) {
+            if ((i == lineEnd) || (buf.get(i) == ';')) {
+                if (fieldCount == fieldStart.length) {
+                    fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                    fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                }
+                fieldStart[fieldCount] = start;
+                fieldEnd[fieldCount] = i;
+                ++fieldCount;
+                start = i + 1;
+            }
+        }
+        while ((fieldCount > 0)
+                && (fieldStart[fieldCount - 1] == fieldEnd[fieldCount - 1])) {
+            --fieldCount;
+        }
+    }
+
+    /** Number of fields in the Thing being read
+    * @return field count (after dropping trailing empty fields)
+    */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /** A field of the Thing being read
+    * @param i Field number
+    * @return decoded field
+    */
+    public String text(int i) {
+        return decode(fieldStart[i], fieldEnd[i]);
+    }
+
+    /** A field of the Thing being read as an int
+    * @param i Field number
+    * @return value of the field
+    * @throws NumberFormatException if the field is not an int
+    */
+    public int intField(int i) {
+        return parseInt(fieldStart[i], fieldEnd[i]);
+    }
+
+    /** A field of the Thing being read as a double
+    * @param i Field number
+    * @return value of the field
+    * @throws NumberFormatException if the field is not a double
+    */
+    public double doubleField(int i) {
+        return parseDouble(fieldStart[i], fieldEnd[i]);
+    }
+
+    /* Same result as Integer.parseInt on the decoded bytes.
+     * Plain ASCII numbers are handled here, anything else is handed over.
+     */
+    protected int parseInt(int start, int end) {
+        int i = start;
+        boolean neg = false;
+        if ((i < end) && ((buf.get(i) == '-') || (buf.get(i) == '+'))) {
+            neg = (buf.get(i) == '-');
+            ++i;
+        }
+        if ((i == end) || (end - i > 10)) {
+            return Integer.parseInt(decode(start, end));
+        }
+        long v = 0;
+        for (; i < end; ++i) {
+            int d = buf.get(i) - '0';
+            if ((d < 0) || (d > 9)) {
+                return Integer.parseInt(decode(start, end));
+            }
+            v = v * 10 + d;
+        }
+        v = neg ? -v : v;
+        if ((v < Integer.MIN_VALUE) || (v > Integer.MAX_VALUE)) {
+            throw new NumberFormatException("out of range");
+        }
+        return (int)v;
+    }
+
+    /* Same result as Double.parseDouble on the decoded bytes.
+     * Handles [-]digits[.digits] with at most 15 significant digits and
+     * 22 decimal places directly: both the digits and the power of ten are
+     * exact doubles then, so a single division rounds correctly.
+     * Anything else is handed over.
+     */
+    protected double parseDouble(int start, int end) {
+        int i = start;
+        boolean neg = false;
+        if ((i < end) && ((buf.get(i) == '-') || (buf.get(i) == '+'))) {
+            neg = (buf.get(i) == '-');
+            ++i;
+        }
+        long mant = 0;
+        int seen = 0;      // digits read
+        int digits = 0;    // significant digits read
+        int scale = -1;    // digits after the point (-1 if no point)
+        for (; i < end; ++i) {
+            byte b = buf.get(i);
+            if ((b == '.') && (scale < 0)) {
+                scale = 0;
+            } else if ((b >= '0') && (b <= '9')) {
+                mant = mant * 10 + (b - '0');
+                ++seen;
+                if ((mant != 0) && (++digits > 15)) {
+                    break;
+                }
+                if (scale >= 0) {
+                    ++scale;
+                }
+            } else {
+                break;
+            }
+        }
+        if ((i < end) || (seen == 0) || (scale == 0) || (scale > 22)) {
+            return Double.parseDouble(decode(start, end));
+        }
+        double v = (scale > 0) ? mant / POW10[scale] : mant;
+        return neg ? -v : v;
+    }
+
+    /** Decode bytes from buf using the platform charset.
+    * @param start First byte
+    * @param end End of range (exclusive)
+    * @return decoded String
+    */
+    protected String decode(int start, int end) {
+        int len = end - start;
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, len,
+                    charset);
+        }
+        if (scratch.length < len) {
+            scratch = new byte[len];
+        }
+        for (int i = 0; i < len; ++i) {
+            scratch[i] = buf.get(start + i);
+        }
+        return new String(scratch, 0, len, charset);
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Pushes the contents of a saved map to a {@link MapVisitor MapVisitor}
+* without building the map (see {@link MapIO#scan MapIO.scan}).
+* <br />Text is handed out as {@link ByteText ByteText} which is pointed
+* at each description or label in turn, and Thing fields are split in
+* place, so nothing is decoded unless the visitor asks for it.
+* <br />Text maps are streamed, so memory use only depends on the longest
+* line. Binary maps are mapped into memory. Their strings are
+* references into a table which grows as the file is read (see
+* {@link BinaryMapFormat BinaryMapFormat}), so the position and length of
+* each distinct string is kept; the strings themselves stay in the file.
+* @author JF
+*/
+class MapScanner
+{
+    private final MapVisitor visitor;
+
+    /**
+    * @param visitor Told about each part of the map
+    */
+    public MapScanner(MapVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /** Scan a map in saveMap format.
+    * Any sections after the contents (eg a layout) are ignored.
+    * @param mp Parser positioned at the start of the map
+    * @return false if an exit leads to an unknown room
+    * @throws IOException if the input ends early or can't be read
+    * @throws NumberFormatException if a count or room number is malformed
+    */
+    public boolean scanText(MapParser mp) throws IOException {
+        int count = mp.readInt();
+        if (count < 0) {
+            throw new NumberFormatException("negative room count");
+        }
+        visitor.start(count);
+        ByteText text = new ByteText(mp.buf, 0, 0, mp.charset);
+        for (int i = 0; i < count; ++i) {
+            mp.nextLine();
+            text.set(mp.buf, mp.lineStart, mp.lineEnd - mp.lineStart);
+            visitor.room(i, text);
+        }
+        for (int i = 0; i < count; ++i) {
+            int exitcount = mp.readInt();
+            for (int j = 0; j < exitcount; ++j) {
+                mp.nextLine();
+                int target = mp.intUntil((byte)' ');
+                if ((target < 0) || (target >= count)) {
+                    return false;
+                }
+                text.set(mp.buf, mp.cursor, mp.lineEnd - mp.cursor);
+                visitor.exit(i, text, target);
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            int itemcount = mp.readInt();
+            for (int j = 0; j < itemcount; ++j) {
+                int tag = mp.readFields();
+                if (tag < 0) {
+                    return false;
+                }
+                visitor.thing(i, (char)tag, mp);
+            }
+        }
+        visitor.end();
+        return true;
+    }
+
+    /** Scan a map in binary format.
+    * @param buf Whole file (from position 0 to the limit)
+    * @return false if the input is not a valid binary map
+    * @throws IndexOutOfBoundsException if the input ends early
+    */
+    public boolean scanBinary(ByteBuffer buf) {
+        return new BinaryScan(buf).scan();
+    }
+
+    /** State for one binary scan */
+    private class BinaryScan
+    {
+        private final ByteBuffer buf;
+        /** Read position */
+        private int pos;
+        /** Position and length of each string in the table */
+        private int[] starts = new int[1024];
+        private int[] lengths = new int[1024];
+        private int strings;
+        /** Description or label being handed out */
+        private final ByteText text;
+        /** Fields of $, C and E records */
+        private final FixedFields fixed;
+        /** Fields of R records (text encodings) */
+        private final MapParser encoded;
+
+        BinaryScan(ByteBuffer buf) {
+            this.buf = buf;
+            text = new ByteText(buf, 0, 0, StandardCharsets.UTF_8);
+            fixed = new FixedFields(buf);
+            encoded = new MapParser(buf, StandardCharsets.UTF_8);
+        }
+
+        boolean scan() {
+            for (int i = 0; i < BinaryMapFormat.MAGIC.length; ++i) {
+                if (buf.get(pos++) != BinaryMapFormat.MAGIC[i]) {
+                    return false;
+                }
+            }
+            if ((buf.get(pos++) & 0xff) != BinaryMapFormat.VERSION) {
+                return false;
+            }
+            int count = varint();
+            if (count < 0) {
+                return false;
+            }
+            visitor.start(count);
+            for (int i = 0; i < count; ++i) {
+                int s = string();
+                if (s < 0) {
+                    return false;
+                }
+                text.set(buf, starts[s], lengths[s]);
+                visitor.room(i, text);
+            }
+            for (int i = 0; i < count; ++i) {
+                int exitcount = varint();
+                for (int j = 0; j < exitcount; ++j) {
+                    int s = string();
+                    int target = varint();
+                    if ((s < 0) || (target < 0) || (target >= count)) {
+                        return false;
+                    }
+                    text.set(buf, starts[s], lengths[s]);
+                    visitor.exit(i, text, target);
+                }
+            }
+            for (int i = 0; i < count; ++i) {
+                int itemcount = varint();
+                for (int j = 0; j < itemcount; ++j) {
+                    if (!thing(i)) {
+                        return false;
+                    }
+                }
+            }
+            visitor.end();
+            return true;
+        }
+
+        /* Read one Thing record and hand it to the visitor */
+        private boolean thing(int room) {
+            int tagAt = pos;
+            int tag = buf.get(pos++) & 0xff;
+            fixed.start(tagAt);
+            switch (tag) {
+            case '$':
+                fixed.number(buf.getDouble(pos), false);
+                pos += 8;
+                return text(fixed) && give(room, tag, fixed);
+            case 'C':
+                fixed.number(buf.getDouble(pos), false);
+                pos += 8;
+                fixed.number(buf.getInt(pos), true);
+                pos += 4;
+                return text(fixed) && text(fixed) && give(room, tag, fixed);
+            case 'E':
+                fixed.number(buf.getInt(pos), true);
+                pos += 4;
+                return text(fixed) && text(fixed) && give(room, tag, fixed);
+            case 'R':
+                int s = string();
+                if ((s < 0) || (lengths[s] == 0)) {
+                    return false;
+                }
+                encoded.splitRange(starts[s], starts[s] + lengths[s]);
+                return give(room, buf.get(starts[s]) & 0xff, encoded);
+            default:
+                return false;
+            }
+        }
+
+        private boolean text(FixedFields f) {
+            int s = string();
+            if (s < 0) {
+                return false;
+            }
+            f.text(starts[s], lengths[s]);
+            return true;
+        }
+
+        private boolean give(int room, int tag, ThingReader fields) {
+            if (fields == fixed) {
+                fixed.finish();
+            }
+            visitor.thing(room, (char)tag, fields);
+            return true;
+        }
+
+        /* Read a string reference, adding new strings to the table.
+         * Returns the table position or -1 for a bad reference.
+         */
+        private int string() {
+            int ref = varint();
+            if (ref > 0) {
+                return (ref <= strings) ? ref - 1 : -1;
+            }
+            int len = varint();
+            if ((ref < 0) || (len < 0) || (len > buf.limit() - pos)) {
+                return -1;
+            }
+            if (strings == starts.length) {
+                starts = Arrays.copyOf(starts, strings * 2);
+                lengths = Arrays.copyOf(lengths, strings * 2);
+            }
+            starts[strings] = pos;
+            lengths[strings] = len;
+            pos += len;
+            return strings++;
+        }
+
+        /* As BinaryMapFormat.readVarint, but -1 for a bad value */
+        private int varint() {
+            int v = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = buf.get(pos++) & 0xff;
+                v |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v < 0) ? -1 : v;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Fields of a binary $, C or E record, numbered as in the text
+    * encoding. Numbers are kept as values and text as positions in the
+    * buffer.
+    */
+    private static class FixedFields implements ThingReader
+    {
+        private static final int TEXT = 0, INT = 1, DOUBLE = 2;
+        private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+        private final ByteBuffer buf;
+        private int count;
+        private final int[] kinds = new int[5];
+        private final double[] numbers = new double[5];
+        private final int[] starts = new int[5];
+        private final int[] lengths = new int[5];
+        private byte[] scratch = new byte[256];
+
+        FixedFields(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        /* Begin a record with the tag byte as field 0 */
+        void start(int tagAt) {
+            count = 0;
+            text(tagAt, 1);
+        }
+
+        void number(double v, boolean integer) {
+            kinds[count] = integer ? INT : DOUBLE;
+            numbers[count++] = v;
+        }
+
+        void text(int start, int length) {
+            kinds[count] = TEXT;
+            starts[count] = start;
+            lengths[count++] = length;
+        }
+
+        /* Drop trailing empty fields, as splitting the text form would */
+        void finish() {
+            while ((count > 0) && (kinds[count - 1] == TEXT)
+                    && (lengths[count - 1] == 0)) {
+                --count;
+            }
+        }
+
+        @Override
+        public int fieldCount() {
+            return count;
+        }
+
+        @Override
+        public String text(int i) {
+            if (i >= count) {
+                throw new IndexOutOfBoundsException();
+            }
+            switch (kinds[i]) {
+            case INT:
+                return Integer.toString((int)numbers[i]);
+            case DOUBLE:
+                return Double.toString(numbers[i]);
+            default:
+                int len = lengths[i];
+                if (scratch.length < len) {
+                    scratch = new byte[len];
+                }
+                for (int j = 0; j < len; ++j) {
+                    scratch[j] = buf.get(starts[i] + j);
+                }
+                return new String(scratch, 0, len, UTF8);
+            }
+        }
+
+        @Override
+        public int intField(int i) {
+            if ((i < count) && (kinds[i] == INT)) {
+                return (int)numbers[i];
+            }
+            return Integer.parseInt(text(i));
+        }
+
+        @Override
+        public double doubleField(int i) {
+            if ((i < count) && (kinds[i] != TEXT)) {
+                return numbers[i];
+            }
+            return Double.parseDouble(text(i));
+        }
+    }
+}
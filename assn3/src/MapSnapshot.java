@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Copy of everything {@link MapIO#saveMap MapIO.saveMap} would write for
+* a map, taken at one moment.
+* <br />Taking the snapshot copies the rooms (without using up
+* {@link Room#getId ids}) and encodes the Things which may change later
+* (Treasures can not, so they are encoded when the snapshot is written).
+* The copies are written by {@link MapIO#writeMap MapIO.writeMap}, the same
+* as a saveMap file.
+* The snapshot can then be written from another thread while the map
+* carries on changing.
+* @author JF
+*/
+class MapSnapshot
+{
+    /** Copies of the rooms in file order (see {@link Room#copy Room.copy}) */
+    private final List<Room> rooms;
+    /** Position of each copy in rooms */
+    private final Map<Room, Integer> ids;
+    /** Room coordinates to save with the map (may be null) */
+    private final MapLayout layout;
+
+    /** Stands in for a Thing which has already been encoded */
+    private static class Encoded extends Thing
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String encoded;
+
+        Encoded(String encoded) {
+            super("", "");
+            this.encoded = encoded;
+        }
+
+        @Override
+        public String repr() {
+            return encoded;     // no codec, so ThingWriter writes this
+        }
+    }
+
+    /** Copy the map reachable from a Room.
+    * Must be called on the thread which changes the map.
+    * @param root Start room
+    */
+    public MapSnapshot(Room root) {
+        this(root, null);
+    }
+
+    /** Copy the map reachable from a Room along with its layout.
+    * Must be called on the thread which changes the map.
+    * @param root Start room
+    * @param bm Mapper which has walked the current map from root (if it
+    *       is null or out of date no layout is saved)
+    */
+    public MapSnapshot(Room root, BoundsMapper bm) {
+        List<Room> live = MapIO.roomSequence(root);
+        Map<Room, Integer> idm = MapIO.roomIds(live);
+        rooms = new ArrayList<Room>(live.size());
+        for (Room r : live) {
+            rooms.add(Room.copy(r.getDescription()));
+        }
+        int i = 0;
+        for (Room r : live) {
+            Room copy = rooms.get(i++);
+            Map<String, Room> exits = copy.exitMap();
+            for (Map.Entry<String, Room> entry : r.getExits().entrySet()) {
+                exits.put(entry.getKey(),
+                        rooms.get(idm.get(entry.getValue())));
+            }
+            List<Thing> items = copy.contentList();
+            for (Thing t : r.getContents()) {
+                items.add((t.getClass() == Treasure.class) ? t
+                        : new Encoded(ThingCodecs.encode(t)));
+            }
+        }
+        ids = MapIO.roomIds(rooms);
+        layout = (bm == null) ? null : MapLayout.from(live, bm);
+    }
+
+    /** Write the snapshot in saveMap format.
+    * @param out Destination (should be buffered)
+    * @throws IOException if out can not be written to
+    */
+    public void write(Writer out) throws IOException {
+        MapIO.writeMap(rooms, ids, out, null);
+        if (layout != null) {
+            layout.write(out);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks or converts every saved map in a directory, several files at a
+ * time.
+ * <br />Usage:<br />
+ * <code>java MapTool [-threads n] validate dir</code><br />
+ * <code>java MapTool [-threads n] convert dir outdir text|binary</code>
+ * <br />Maps may be in the saveMap text format (compressed or not), the
+ * binary format or Java serialisation; the format is worked out from the
+ * start of each file. Text and binary maps are checked in a single
+ * streaming pass with {@link MapIO#scan MapIO.scan}: every exit must lead
+ * to one of the rooms, every Thing must decode and there must be exactly
+ * one Player. Serialised maps have to be read in full. Maps are converted
+ * only if they pass. Journal and index files are skipped.
+ * <br />Problems are listed per file, followed by the overall throughput.
+ * The exit status is 1 if any file failed.
+ * @author JF
+ */
+public class MapTool {
+
+    /** Ways a map may be stored */
+    private enum Format { TEXT, BINARY, SERIALISED }
+
+    /** What happened to one file */
+    private static class Outcome {
+        final File file;
+        /** null if all went well */
+        final String problem;
+
+        Outcome(File file, String problem) {
+            this.file = file;
+            this.problem = problem;
+        }
+    }
+
+    /** Checks the parts of a map reported by MapIO.scan */
+    private static class Checker implements MapVisitor {
+        private int rooms;
+        private int players;
+        /** First problem found (null if none) */
+        private String problem;
+
+        @Override
+        public void start(int rooms) {
+            this.rooms = rooms;
+        }
+
+        @Override
+        public void thing(int room, char tag, ThingReader fields) {
+            if (problem != null) {
+                return;
+            }
+            ThingCodec<?> codec = ThingCodecs.forTag(tag);
+            Thing t = null;
+            if (codec != null) {
+                try {
+                    t = codec.decode(fields, null);
+                } catch (NumberFormatException nfe) {
+                    t = null;
+                }
+            }
+            if (t == null) {
+                problem = "bad '" + tag + "' record in room " + room;
+            } else if (t instanceof Player) {
+                ++players;
+            }
+        }
+
+        /* Problem with the whole map (null if there is none) */
+        String result() {
+            if (problem != null) {
+                return problem;
+            }
+            if (rooms == 0) {
+                return "no rooms";
+            }
+            return (players == 1) ? null : players + " players";
+        }
+    }
+
+    /* Main function */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int a = 0;
+        if ((args.length > 1) && args[0].equals("-threads")) {
+            try {
+                threads = Integer.parseInt(args[1]);
+            } catch (NumberFormatException nfe) {
+                threads = 0;
+            }
+            a = 2;
+        }
+        String[] rest = Arrays.copyOfRange(args, a, args.length);
+        boolean validate = (rest.length == 2) && rest[0].equals("validate");
+        boolean convert = (rest.length == 4) && rest[0].equals("convert")
+                && (rest[3].equals("text") || rest[3].equals("binary"));
+        if ((threads < 1) || (!validate && !convert)) {
+            System.err.println("Proper Usage is: java MapTool [-threads n] "
+                    + "validate dir\n"
+                    + "   or: java MapTool [-threads n] convert dir outdir "
+                    + "text|binary");
+            System.exit(1);
+        }
+        File dir = new File(rest[1]);
+        File outDir = convert ? new File(rest[2]) : null;
+        Format target = !convert ? null
+                : rest[3].equals("text") ? Format.TEXT : Format.BINARY;
+        if (!dir.isDirectory()
+                || ((outDir != null) && !outDir.isDirectory()
+                    && !outDir.mkdirs())) {
+            System.err.println("Unable to use directory");
+            System.exit(2);
+        }
+        System.exit(run(mapFiles(dir), outDir, target, threads) ? 0 : 1);
+    }
+
+    /* Files in dir which may be maps (in name order) */
+    private static List<File> mapFiles(File dir) {
+        List<File> res = new ArrayList<File>();
+        File[] all = dir.listFiles();
+        if (all != null) {
+            Arrays.sort(all);
+            for (File f : all) {
+                String name = f.getName();
+                if (f.isFile() && !name.endsWith(MapJournal.journalName(""))
+                        && !name.endsWith(RoomIndex.indexName(""))) {
+                    res.add(f);
+                }
+            }
+        }
+        return res;
+    }
+
+    /* Handle every file on a pool of workers and report the results.
+     * Returns true if every file was fine.
+     */
+    private static boolean run(List<File> files, File outDir, Format target,
+            int threads) {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Outcome>> results = new ArrayList<Future<Outcome>>();
+        for (File f : files) {
+            results.add(pool.submit(() -> process(f, outDir, target)));
+        }
+        pool.shutdown();
+        int failed = 0;
+        long bytes = 0;
+        for (Future<Outcome> future : results) {
+            Outcome o;
+            try {
+                o = future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException ex) {    // eg out of memory
+                o = new Outcome(files.get(results.indexOf(future)),
+                        ex.getCause().toString());
+            }
+            bytes += o.file.length();
+            if (o.problem != null) {
+                ++failed;
+                System.out.println(o.file.getName() + ": " + o.problem);
+            }
+        }
+        double secs = Math.max(System.nanoTime() - start, 1) / 1e9;
+        System.out.printf("%d files, %d failed, %.1f MB in %.2fs "
+                + "(%.1f files/s, %.1f MB/s, %d threads)%n", files.size(),
+                failed, bytes / 1e6, secs, files.size() / secs,
+                bytes / 1e6 / secs, threads);
+        return failed == 0;
+    }
+
+    /* Check one file and convert it if asked to */
+    private static Outcome process(File f, File outDir, Format target) {
+        String name = f.getPath();
+        Format format = formatOf(name);
+        if (format == null) {
+            return new Outcome(f, "unable to read");
+        }
+        String problem = check(name, format);
+        if ((problem == null) && (outDir != null)) {
+            problem = convert(name, format,
+                    new File(outDir, f.getName()).getPath(), target);
+        }
+        return new Outcome(f, problem);
+    }
+
+    /* Work out how a map is stored (null if it can't be read) */
+    private static Format formatOf(String filename) {
+        byte[] head = new byte[4];
+        int n = 0;
+        try {
+            InputStream in = MapIO.openInput(filename);
+            try {
+                while (n < head.length) {
+                    int got = in.read(head, n, head.length - n);
+                    if (got < 0) {
+                        break;
+                    }
+                    n += got;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+        if ((n == 4) && Arrays.equals(head, BinaryMapFormat.MAGIC)) {
+            return Format.BINARY;
+        }
+        if ((n >= 2) && ((head[0] & 0xff) == 0xac)
+                && ((head[1] & 0xff) == 0xed)) {     // stream magic
+            return Format.SERIALISED;
+        }
+        return Format.TEXT;
+    }
+
+    /* Problem with a map (null if there is none) */
+    private static String check(String filename, Format format) {
+        if (format == Format.SERIALISED) {
+            Room root = MapIO.deserializeMap(filename);
+            if (root == null) {
+                return "bad serialised map";
+            }
+            int players = 0;
+            for (Room r : MapIO.roomSequence(root)) {
+                for (Thing t : r.getContents()) {
+                    if (t instanceof Player) {
+                        ++players;
+                    }
+                }
+            }
+            return (players == 1) ? null : players + " players";
+        }
+        Checker checker = new Checker();
+        if (!MapIO.scan(filename, checker)) {
+            return (checker.problem != null) ? checker.problem
+                    : "bad structure";
+        }
+        return checker.result();
+    }
+
+    /* Write a map in the target format (null if it worked) */
+    private static String convert(String from, Format format, String to,
+            Format target) {
+        boolean ok;
+        if (format == target) {
+            try {
+                Files.copy(new File(from).toPath(), new File(to).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                File journal = new File(MapJournal.journalName(from));
+                if (journal.exists()) {     // the copy needs its changes
+                    Files.copy(journal.toPath(),
+                            new File(MapJournal.journalName(to)).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+                ok = true;
+            } catch (IOException ex) {
+                ok = false;
+            }
+        } else if (format == Format.TEXT) {
+            ok = MapIO.textToBinary(from, to);
+        } else if (format == Format.BINARY) {
+            ok = MapIO.binaryToText(from, to);
+        } else {
+            Room root = MapIO.deserializeMap(from);
+            ok = (root != null) && ((target == Format.TEXT)
+                    ? MapIO.saveMap(root, to) : MapIO.saveBinary(root, to));
+        }
+        return ok ? null : "unable to convert";
+    }
+}
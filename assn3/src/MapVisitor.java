@@ -0,0 +1,64 @@
+/**
+ * Told about the contents of a saved map by
+ * {@link MapIO#scan MapIO.scan}, without any Rooms or Things being built.
+ * <br />Calls follow the order of the file: {@link #start start}, every
+ * room, every exit (grouped by the room they leave), every Thing (grouped
+ * by the room holding it) and then {@link #end end}.
+ * <br />The text and field arguments are only valid during the call: the
+ * same objects are reused for the next one. Nothing is decoded unless the
+ * visitor asks for it (eg by calling toString), so a visitor should copy
+ * out only what it needs.
+ * Each method does nothing by default, so visitors only need to override
+ * the parts they care about.
+ *
+ * @author JF
+ */
+public interface MapVisitor {
+
+    /**
+     * Scanning has started.
+     *
+     * @param rooms Number of rooms in the map
+     */
+    default void start(int rooms) {
+    }
+
+    /**
+     * A room.
+     *
+     * @param id          Position of the room in the file (start room is 0)
+     * @param description Description of the room
+     */
+    default void room(int id, CharSequence description) {
+    }
+
+    /**
+     * An exit from one room to another.
+     *
+     * @param from  Room the exit leaves
+     * @param label Name of the exit
+     * @param to    Room the exit goes to
+     */
+    default void exit(int from, CharSequence label, int to) {
+    }
+
+    /**
+     * A Thing in a room.
+     * The fields are numbered as in the Thing's text encoding, so field 0
+     * holds the tag (eg <code>C;value;health;short;long</code> for a
+     * Critter). Numeric fields should be read with intField and
+     * doubleField.
+     *
+     * @param room   Room holding the Thing
+     * @param tag    Tag character of the Thing's encoding
+     * @param fields Fields of the Thing's encoding
+     */
+    default void thing(int room, char tag, ThingReader fields) {
+    }
+
+    /**
+     * The whole map has been scanned.
+     */
+    default void end() {
+    }
+}
@@ -1,14 +1,20 @@
 import java.util.*;
 
 /** Iterator over all reachable {@link Room Room}s
+* <br />Rooms are tracked by {@link Room#getId id} in
+* {@link SparseBitSet SparseBitSet}s (so a walk costs memory for the map
+* it covers, not for every Room ever made), and each Room is queued at
+* most once.
 * @author JF
 */
 public class MapWalker
 {
-    /** Rooms we have already processed */
-    private Set<Room> visited;
+    /** Rooms we have already processed (by id) */
+    private SparseBitSet visited;
+    /** Rooms which have been added to toVisit (by id) */
+    private SparseBitSet queued;
     /** Current todo list */
-    private Deque<Room> toVisit;
+    private ArrayDeque<Room> toVisit;
     private Room start;
     
     /**
@@ -17,7 +23,8 @@ public class MapWalker
     * @param start Room to begin exploring from
     */
     public MapWalker(Room start) {
-        visited = new HashSet<Room>();
+        visited = new SparseBitSet();
+        queued = new SparseBitSet();
         this.start = start;
     }
 
@@ -27,8 +34,9 @@ public class MapWalker
      * internally to ensure that parent state is cleared as well.
     */
     protected void reset() {
-        visited = new HashSet<Room>();
-        toVisit = new LinkedList<Room>();    
+        visited = new SparseBitSet();
+        queued = new SparseBitSet();
+        toVisit = new ArrayDeque<Room>();
     }
 
     /** 
@@ -39,16 +47,19 @@ public class MapWalker
     */
     public void walk() {
         reset();
-        toVisit.add(start);    
+        toVisit.add(start);
+        queued.set(start.getId());
+            // Rooms are visited in the order they were first queued, just
+            // as if every exit were queued and repeats skipped
         while (! toVisit.isEmpty()) {
             Room r = toVisit.removeFirst();
-            if (!visited.contains(r)) {
-                visited.add(r);
-                for (Room e : r.getExits().values()) {
+            visited.set(r.getId());
+            for (Room e : r.getExits().values()) {
+                if (queued.set(e.getId())) {
                     toVisit.add(e);
                 }
-                visit(r);
             }
+            visit(r);
         }
     }
 
@@ -60,7 +71,7 @@ public class MapWalker
         if (room == null) {
             return false;
         }
-        return visited.contains(room);
+        return visited.get(room.getId());
     }
 
     /** process a room
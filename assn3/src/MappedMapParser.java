@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** A {@link MapParser MapParser} which reads a memory mapped file.
+* <br />The file is mapped in windows so that maps larger than 2GB can be
+* read. Room descriptions are handed out as {@link ByteText ByteText}
+* views into the mapping rather than being decoded as they are read.
+* @author JF
+*/
+class MappedMapParser extends MapParser
+{
+    /** Largest window mapped at once (unless a single line is bigger) */
+    private static final int WINDOW = 1 << 30;
+
+    private final FileChannel channel;
+    /** File offset treated as the end of the input */
+    private final long size;
+    /** File offset of the start of buf */
+    private long base;
+
+    /**
+    * @param channel Open channel for the file (may be closed once parsing
+    *       is finished)
+    * @param start File offset to start parsing from
+    * @throws IOException if the file can not be mapped
+    */
+    public MappedMapParser(FileChannel channel, long start)
+            throws IOException {
+        this(channel, start, channel.size());
+    }
+
+    /**
+    * @param channel Open channel for the file (may be closed once parsing
+    *       is finished)
+    * @param start File offset to start parsing from
+    * @param end File offset to treat as the end of the input
+    * @throws IOException if the file can not be mapped
+    */
+    public MappedMapParser(FileChannel channel, long start, long end)
+            throws IOException {
+        super(map(channel, start, Math.min(WINDOW, end - start)));
+        this.channel = channel;
+        this.size = end;
+        this.base = start;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long start, long len)
+            throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+    }
+
+    @Override
+    protected boolean refill() throws IOException {
+        long start = base + pos;
+        int keep = buf.limit() - pos;
+        if (start + keep >= size) {
+            return false;
+        }
+        long len = WINDOW;
+        if (keep == buf.limit()) {    // one line fills the window
+            len = Integer.MAX_VALUE;
+        }
+        buf = map(channel, start, Math.min(len, size - start));
+        base = start;
+        pos = 0;
+        return buf.limit() > keep;
+    }
+
+    /** File offset of the start of the current line
+    * @return offset in bytes
+    */
+    public long lineOffset() {
+        return base + lineStart;
+    }
+
+    /** File offset of the next unread byte
+    * @return offset in bytes
+    */
+    public long offset() {
+        return base + pos;
+    }
+
+    /** Read a room description without decoding it.
+    * @return Room with a description which is decoded on first use
+    * @throws IOException if there is no line to read
+    */
+    @Override
+    public Room readRoom() throws IOException {
+        nextLine();
+        return new Room(new ByteText(buf, lineStart, lineEnd - lineStart,
+                charset));
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Room whose state is loaded from a {@link PagedWorld PagedWorld} when it
+ * is first used and may be dropped again when memory is short.
+ * The object itself stays in place, so references to it remain valid
+ * while its state comes and goes. If nothing refers to it, the world may
+ * forget it and later hand out a new object for the same position; that
+ * object has the same {@link Room#getId id}, so walks which track rooms
+ * by id still see each position once.
+ *
+ * @author JF
+ * @serial exclude
+ */
+class PagedRoom extends Room {
+
+    private static final long serialVersionUID = 1L;
+
+    // World this room belongs to
+    private final transient PagedWorld world;
+    // Position of the room in the save file (not its Room id)
+    private final int position;
+    // Has the room been changed since it was loaded or written back?
+    boolean dirty;
+    // Hash of the room's encoding when it was loaded or written back
+    long cleanHash;
+
+    /**
+     * @param world World which holds this room's state
+     * @param position Position of the room in the save file
+     * @param id Room id the world keeps for this position
+     */
+    PagedRoom(PagedWorld world, int position, int id) {
+        super("", id);
+        this.world = world;
+        this.position = position;
+    }
+
+    /**
+     * Position of this room in the save file.
+     *
+     * @return room number in the file
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /*
+     * Description without loading the room first
+     */
+    String rawDescription() {
+        return super.getDescription();
+    }
+
+    @Override
+    public String getDescription() {
+        world.touch(this);
+        return super.getDescription();
+    }
+
+    @Override
+    public void setDescription(String description) {
+        world.touch(this);
+        dirty = true;
+        super.setDescription(description);
+    }
+
+    @Override
+    public Map<String, Room> getExits() {
+        world.touch(this);
+        return super.getExits();
+    }
+
+    @Override
+    public List<Thing> getContents() {
+        world.touch(this);
+        return super.getContents();
+    }
+
+    @Override
+    public void addExit(String name, Room target) throws ExitExistsException,
+            NullRoomException {
+        world.touch(this);
+        super.addExit(name, target);
+        dirty = true;
+    }
+
+    @Override
+    public void removeExit(String name) {
+        world.touch(this);
+        dirty = true;
+        super.removeExit(name);
+    }
+
+    @Override
+    public void enter(Thing item) {
+        world.touch(this);
+        dirty = true;
+        super.enter(item);
+    }
+
+    @Override
+    public boolean leave(Thing item) {
+        world.touch(this);
+        boolean res = super.leave(item);
+        dirty |= res;
+        return res;
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A map which is read from its save file a room at a time, as rooms are
+ * first used, rather than all at once.
+ * <br />Rooms are handed out as ordinary {@link Room Room} references, so
+ * {@link MapWalker MapWalker}s and the GUI can move around without knowing
+ * which rooms are in memory. At most <code>budget</code> rooms are kept in
+ * memory; the least recently used room is dropped when another is needed.
+ * Changed rooms are written to the map's {@link MapJournal journal} as they
+ * are dropped (and on {@link #flush flush}), and read back from there when
+ * next used.
+ * <br />Some rooms are never dropped: any room holding a Player, and any
+ * room with an exit to a Room which does not belong to this world (such as
+ * one created after the world was opened).
+ * <br />A room which is not in memory is only remembered while something
+ * (eg an exit of a room in memory) refers to it, so the number of rooms
+ * remembered follows the budget rather than how much of the map has been
+ * visited. Each room number keeps the same {@link Room#getId Room id}
+ * however often it is forgotten and handed out again, so walks which track
+ * rooms by id (such as MapWalker) see each room once.
+ * <br />Note: Things in a dropped room are re-created when the room is
+ * next used, so references to them should not be kept.
+ * @author JF
+ */
+public class PagedWorld {
+    /** Fewest rooms which will be kept in memory */
+    public static final int MIN_BUDGET = 16;
+
+    // Index into the save file
+    private final RoomIndex index;
+    // Changed rooms
+    private final MapJournal journal;
+    // Most rooms to keep in memory
+    private final int budget;
+    // Rooms handed out and still referred to (loaded or not) by number
+    private final Map<Integer, Handle> rooms;
+    // Handles of rooms which are no longer referred to
+    private final ReferenceQueue<PagedRoom> forgotten;
+    // Room id of room number 0 (room n has id firstId + n)
+    private final int firstId;
+    // Rooms in memory, least recently used first
+    private final LinkedHashMap<PagedRoom, Boolean> resident;
+    private final Room root;
+    private Player player;
+
+    /*
+     * Use open
+     */
+    private PagedWorld(String filename, int budget) throws IOException {
+        this.index = new RoomIndex(filename);
+        this.journal = new MapJournal(filename, index.getPlayerRoom());
+        this.budget = Math.max(budget, MIN_BUDGET);
+        this.rooms = new HashMap<Integer, Handle>();
+        this.forgotten = new ReferenceQueue<PagedRoom>();
+        this.firstId = Room.reserveIds(positions());
+        this.resident = new LinkedHashMap<PagedRoom, Boolean>(16, 0.75f,
+                true);
+        this.root = room(0);
+    }
+
+    /**
+     * Open a map file written by {@link MapIO#saveMap MapIO.saveMap}.
+     * Like {@link MapIO#loadMap MapIO.loadMap}, the Player is taken out of
+     * the room it was saved in; the caller is responsible for placing it.
+     *
+     * @param filename Map file to read
+     * @param budget   Most rooms to keep in memory at once
+     * @return the world or null if the file can not be read
+     */
+    public static PagedWorld open(String filename, int budget) {
+        try {
+            PagedWorld w = new PagedWorld(filename, budget);
+            if (w.index.size() == 0) {
+                w.close();
+                return null;
+            }
+            w.root.getExits();    // check the start room can be read
+            int where = w.journal.getPlayerRoom();
+            if (where >= 0) {
+                PagedRoom r = w.room(where);
+                for (Thing t : r.getContents()) {
+                    if (t instanceof Player) {
+                        w.player = (Player)t;
+                    }
+                }
+                if (w.player != null) {
+                    r.contentList().remove(w.player);
+                    r.dirty = true;
+                }
+            }
+            return w;
+        } catch (IOException ex) {
+            return null;
+        } catch (UncheckedIOException ex) {
+            return null;
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /**
+     * The start room.
+     *
+     * @return room 0 of the map
+     */
+    public Room getRoot() {
+        return root;
+    }
+
+    /**
+     * The Player read from the map.
+     *
+     * @return the Player or null if the map has none
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * How many rooms are currently in memory?
+     *
+     * @return number of resident rooms
+     */
+    public int getResidentCount() {
+        return resident.size();
+    }
+
+    /*
+     * Number of room numbers in the save file and journal
+     */
+    private int positions() {
+        int n = index.size();
+        for (int position : journal.getRecords().keySet()) {
+            n = Math.max(n, position + 1);
+        }
+        return n;
+    }
+
+    /*
+     * Reference to a handed out room which does not keep it in memory
+     */
+    private static class Handle extends WeakReference<PagedRoom> {
+        // Number of the room
+        final int position;
+
+        Handle(PagedRoom room, ReferenceQueue<PagedRoom> queue) {
+            super(room, queue);
+            this.position = room.getPosition();
+        }
+    }
+
+    /*
+     * The (possibly unloaded) room with a given number
+     */
+    private PagedRoom room(int position) {
+        purge();
+        Handle h = rooms.get(position);
+        PagedRoom r = (h == null) ? null : h.get();
+        if (r == null) {
+            r = new PagedRoom(this, position, firstId + position);
+            rooms.put(position, new Handle(r, forgotten));
+        }
+        return r;
+    }
+
+    /*
+     * Forget rooms which are no longer referred to. They are not in memory
+     * (resident holds those) and so have nothing to write back.
+     */
+    private void purge() {
+        Handle h;
+        while ((h = (Handle)forgotten.poll()) != null) {
+            if (rooms.get(h.position) == h) {
+                rooms.remove(h.position);
+            }
+        }
+    }
+
+    /*
+     * Is room the one this world hands out for its number?
+     */
+    private boolean owns(PagedRoom room) {
+        Handle h = rooms.get(room.getPosition());
+        return (h != null) && (h.get() == room);
+    }
+
+    /*
+     * Make sure a room's state is in memory and mark it most recently used
+     */
+    void touch(PagedRoom room) {
+        if (resident.get(room) != null) {
+            return;
+        }
+        try {
+            if (load(room) == null) {
+                throw new UncheckedIOException(new IOException(
+                        "room " + room.getPosition() + " is not readable"));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        resident.put(room, Boolean.TRUE);
+        evict(room);
+    }
+
+    /*
+     * Read a room's state (from the journal if it has been written back)
+     */
+    private PagedRoom load(PagedRoom room) throws IOException {
+        int position = room.getPosition();
+        RoomRecord rec = journal.read(position, root);
+        if (rec == null) {
+            rec = index.read(position, root);
+        }
+        if (rec == null) {
+            return null;
+        }
+        room.resetState(rec.getDescription());
+        Map<String, Room> exits = room.exitMap();
+        for (int i = 0; i < rec.getExitCount(); ++i) {
+            exits.put(rec.getExitLabel(i), room(rec.getExitTarget(i)));
+        }
+        room.contentList().addAll(rec.getContents());
+        room.dirty = false;
+        room.cleanHash = hash(room);
+        return room;
+    }
+
+    /*
+     * Drop least recently used rooms until we are within budget, keeping
+     * newest (which has only just been read in)
+     */
+    private void evict(PagedRoom newest) {
+        Iterator<PagedRoom> it = resident.keySet().iterator();
+        while ((resident.size() > budget) && it.hasNext()) {
+            PagedRoom r = it.next();
+            if ((r == newest) || pinned(r)) {
+                continue;
+            }
+            try {
+                writeBack(r);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            it.remove();
+            r.resetState("");
+        }
+    }
+
+    /*
+     * Rooms which must stay in memory
+     */
+    private boolean pinned(PagedRoom r) {
+        for (Thing t : r.contentList()) {
+            if (t instanceof Player) {
+                return true;
+            }
+        }
+        return !allOwn(r);
+    }
+
+    /*
+     * Do all of a room's exits lead to rooms of this world?
+     */
+    private boolean allOwn(PagedRoom r) {
+        for (Room e : r.exitMap().values()) {
+            if (!(e instanceof PagedRoom) || !owns((PagedRoom)e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Write a room to the journal if it differs from what was loaded
+     */
+    private void writeBack(PagedRoom r) throws IOException {
+        if (!r.dirty && (hash(r) == r.cleanHash)) {
+            return;    // includes Things which changed in place
+        }
+        journal.append(r.getPosition(), r.rawDescription(), r.exitMap(),
+            e -> ((PagedRoom)e).getPosition(), r.contentList());
+        r.dirty = false;
+        r.cleanHash = hash(r);
+    }
+
+    /*
+     * 64 bit FNV-1a hash of a room's saved form
+     */
+    private static long hash(PagedRoom r) {
+        String s = MapJournal.encode(r.getPosition(), r.rawDescription(),
+                r.exitMap(), e -> (e instanceof PagedRoom)
+                ? ((PagedRoom)e).getPosition() : -1, r.contentList());
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); ++i) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Write every changed room in memory to the journal and sync it.
+     * Rooms which are pinned in memory are written as long as all of their
+     * exits lead to rooms of this world.
+     *
+     * @return true if successful
+     */
+    public boolean flush() {
+        try {
+            for (PagedRoom r : resident.keySet()) {
+                if (allOwn(r)) {
+                    writeBack(r);
+                }
+            }
+            journal.sync();
+        } catch (IOException ex) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Flush changes and release the save file.
+     *
+     * @return true if successful
+     */
+    public boolean close() {
+        boolean ok = flush();
+        try {
+            index.close();
+            journal.close();
+        } catch (IOException ex) {
+            return false;
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** A {@link BoundsMapper BoundsMapper} whose walk lays the map out using
+* several threads.
+* <br />The walk goes one level of a breadth first spanning tree at a time
+* (as {@link ParallelMapWalker ParallelMapWalker} does). Each frontier is
+* split into chunks handled by a pool of tasks: a task places its Rooms
+* and claims the Rooms reached from them for the next frontier. A Room is
+* placed next to its first neighbour (checking North, South, East then
+* West, as BoundsMapper does) from an earlier level, so every
+* coordinate it needs was written before its level started. Before each
+* level its Rooms are numbered in order (by {@link Room#getId id}, in a
+* {@link SparseIntArray SparseIntArray}) and each task writes the cells
+* of its own Rooms. Each chunk keeps its own bounding box and the boxes
+* are combined after each level, so tasks share nothing but the claims
+* (in a {@link ConcurrentBitSet ConcurrentBitSet}, which grows to fit
+* Rooms created during the walk).
+* <br />On a map shaped like a tree, or one where all the exits come in
+* pairs and agree with each other, the result is the same as
+* BoundsMapper's. Otherwise a Room which BoundsMapper would place next to
+* an earlier Room on the same level may be placed differently (but
+* always the same way, however the work is split).
+* <br />Only walk is done in parallel; the coordinates are copied into
+* coords on the walking thread at the end. Frontiers holding Rooms from a
+* {@link PagedWorld PagedWorld} are done on the walking thread. The map
+* must not change during a walk.
+* @author JF
+*/
+public class ParallelBoundsMapper extends BoundsMapper
+{
+    /** Fewest Rooms handed to one task */
+    private static final int MIN_CHUNK = 64;
+
+    private final Room root;
+    private final ForkJoinPool pool;
+    /** Position of each Room on the current or an earlier level in the
+    *   order they were reached (by id, -1 for the rest) */
+    private SparseIntArray order;
+    /** Number of Rooms given a position so far */
+    private int placed;
+    /** Position of the first Room on the current level */
+    private int levelStart;
+    /** Packed cell of each placed Room (by position) */
+    private long[] cells;
+    /** Rooms which have been added to a frontier (by id) */
+    private ConcurrentBitSet reached;
+
+    /**
+    * Choose start room (for a walk on the common pool) but do not start
+    * the walk.
+    * @param root Room to begin exploring from
+    */
+    public ParallelBoundsMapper(Room root) {
+        this(root, ForkJoinPool.commonPool());
+    }
+
+    /**
+    * Choose start room but do not start the walk.
+    * @param root Room to begin exploring from
+    * @param pool Threads to lay the map out with
+    */
+    public ParallelBoundsMapper(Room root, ForkJoinPool pool) {
+        super(root);
+        this.root = root;
+        this.pool = pool;
+    }
+
+    /**
+    * Find the coordinates of all reachable rooms and the bounding box.
+    */
+    @Override
+    public void walk() {
+        reset();
+        order = new SparseIntArray(-1);
+        placed = 0;
+        levelStart = 0;
+        cells = new long[16];
+        reached = new ConcurrentBitSet();
+        reached.set(root.getId());
+        List<Room[]> frontiers = new ArrayList<Room[]>();
+        Room[] frontier = {root};
+        int[] box = {0, 0, 0, 0};
+        while (frontier.length > 0) {
+            frontiers.add(frontier);
+            frontier = expand(frontier, box);
+        }
+        int i = 0;
+        for (Room[] f : frontiers) {
+            for (Room r : f) {
+                long cell = cells[i++];
+                coords.put(r, CoordTable.x(cell), CoordTable.y(cell));
+            }
+        }
+        xMin = box[0];
+        xMax = box[1];
+        yMin = box[2];
+        yMax = box[3];
+        order = null;
+        cells = null;
+        reached = null;
+    }
+
+    @Override
+    public boolean hasVisited(Room room) {
+        return coords.contains(room);
+    }
+
+    /* Place a frontier and claim the next one. box (xMin, xMax, yMin,
+     * yMax) is grown to fit the frontier.
+     */
+    private Room[] expand(Room[] frontier, int[] box) {
+        levelStart = placed;
+        for (Room r : frontier) {       // before any task reads order
+            order.put(r.getId(), placed++);
+        }
+        if (placed > cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(placed, cells.length * 2));
+        }
+        int chunk = chunkSize(frontier);
+        int chunks = (frontier.length + chunk - 1) / chunk;
+        List<List<Room>> parts = new ArrayList<List<Room>>(
+                Collections.<List<Room>>nCopies(chunks, null));
+        int[][] boxes = new int[chunks][];
+        Chunks task = new Chunks(frontier, chunk, parts, boxes, 0, chunks);
+        if (chunks == 1) {
+            task.compute();     // not worth handing over
+        } else {
+            pool.invoke(task);
+        }
+        int size = 0;
+        for (int c = 0; c < chunks; ++c) {
+            size += parts.get(c).size();
+            box[0] = Math.min(box[0], boxes[c][0]);
+            box[1] = Math.max(box[1], boxes[c][1]);
+            box[2] = Math.min(box[2], boxes[c][2]);
+            box[3] = Math.max(box[3], boxes[c][3]);
+        }
+        Room[] res = new Room[size];
+        int i = 0;
+        for (List<Room> part : parts) {
+            for (Room r : part) {
+                res[i++] = r;
+            }
+        }
+        return res;
+    }
+
+    /* Rooms per task for a frontier (all of them if it should not be
+     * split up)
+     */
+    private int chunkSize(Room[] frontier) {
+        if ((pool.getParallelism() == 1) || paged(frontier)) {
+            return Math.max(frontier.length, 1);
+        }
+        return Math.max(MIN_CHUNK,
+                frontier.length / (pool.getParallelism() * 4) + 1);
+    }
+
+    /* Rooms from a PagedWorld read themselves in when their exits are
+     * asked for, which can only be done by one thread at a time.
+     */
+    private static boolean paged(Room[] frontier) {
+        for (Room r : frontier) {
+            if (r instanceof PagedRoom) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Coordinates for a Room on the current level (packed) */
+    private long place(Room room) {
+        int n;
+        if ((n = before(room.getExits().get("North"))) >= 0) {
+            return CoordTable.pack(CoordTable.x(cells[n]),
+                    CoordTable.y(cells[n]) + 1);
+        } else if ((n = before(room.getExits().get("South"))) >= 0) {
+            return CoordTable.pack(CoordTable.x(cells[n]),
+                    CoordTable.y(cells[n]) - 1);
+        } else if ((n = before(room.getExits().get("East"))) >= 0) {
+            return CoordTable.pack(CoordTable.x(cells[n]) - 1,
+                    CoordTable.y(cells[n]));
+        } else if ((n = before(room.getExits().get("West"))) >= 0) {
+            return CoordTable.pack(CoordTable.x(cells[n]) + 1,
+                    CoordTable.y(cells[n]));
+        }
+        return CoordTable.pack(0, 0);
+    }
+
+    /* Position of room if it was placed on a level before this one (-1
+     * otherwise). Rooms on this level come at or after levelStart, and
+     * those being claimed for the next level have no position yet.
+     */
+    private int before(Room room) {
+        if (room == null) {
+            return -1;
+        }
+        int n = order.get(room.getId());
+        return (n < levelStart) ? n : -1;
+    }
+
+    /** Task which handles a range of chunks of a frontier */
+    private class Chunks extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Room[] frontier;
+        private final int chunk;
+        private final List<List<Room>> parts;
+        private final int[][] boxes;
+        private final int from;
+        private final int to;
+
+        Chunks(Room[] frontier, int chunk, List<List<Room>> parts,
+                int[][] boxes, int from, int to) {
+            this.frontier = frontier;
+            this.chunk = chunk;
+            this.parts = parts;
+            this.boxes = boxes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunks(frontier, chunk, parts, boxes, from,
+                        mid), new Chunks(frontier, chunk, parts, boxes, mid,
+                        to));
+                return;
+            }
+            List<Room> out = new ArrayList<Room>();
+            int bxMin = 0, bxMax = 0, byMin = 0, byMax = 0;
+            int end = Math.min(frontier.length, (from + 1) * chunk);
+            for (int i = from * chunk; i < end; ++i) {
+                Room r = frontier[i];
+                long cell = place(r);
+                cells[levelStart + i] = cell;
+                bxMin = Math.min(bxMin, CoordTable.x(cell));
+                bxMax = Math.max(bxMax, CoordTable.x(cell));
+                byMin = Math.min(byMin, CoordTable.y(cell));
+                byMax = Math.max(byMax, CoordTable.y(cell));
+                for (Room e : r.getExits().values()) {
+                    if (reached.set(e.getId())) {
+                        out.add(e);
+                    }
+                }
+            }
+            parts.set(from, out);
+            boxes[from] = new int[] {bxMin, bxMax, byMin, byMax};
+        }
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Loads a saveMap file which has a {@link SectionIndex SectionIndex}
+* trailer, using several threads.
+* <br />Each block of rooms is parsed by its own task. Descriptions are
+* read first (creating the Rooms), then the exits and contents of each
+* block are read and linked in. Every task only changes the Rooms in its
+* own block, so the Rooms need no locking.
+* @author JF
+*/
+class ParallelMapLoader
+{
+    private final FileChannel channel;
+    private final SectionIndex index;
+    private final Room[] rooms;
+    /** Last Player found in each block */
+    private final Player[] players;
+    /** Room each of those Players was found in */
+    private final int[] playerRooms;
+
+    /**
+    * @param channel Open channel for the map file
+    * @param index Trailer read from that file
+    */
+    public ParallelMapLoader(FileChannel channel, SectionIndex index) {
+        this.channel = channel;
+        this.index = index;
+        this.rooms = new Room[index.getRooms()];
+        this.players = new Player[index.getBlocks()];
+        this.playerRooms = new int[index.getBlocks()];
+    }
+
+    /** Load the map.
+    * @param pool Threads to use
+    * @return rooms read (with the Player taken out) or null if the file
+    *       does not match its trailer
+    * @throws IOException if the file can not be read
+    * @throws UncheckedIOException if a block can not be read or decoded
+    * @throws NumberFormatException if a count or room number is malformed
+    * @throws IndexOutOfBoundsException if an exit leads to an unknown room
+    */
+    public LoadedMap load(ForkJoinPool pool) throws IOException {
+        MappedMapParser head = new MappedMapParser(channel, 0,
+                index.offset(SectionIndex.DESCRIPTIONS, 0));
+        if (head.readInt() != rooms.length) {
+            return null;
+        }
+        pool.invoke(new Blocks(0, index.getBlocks(), true));
+        pool.invoke(new Blocks(0, index.getBlocks(), false));
+        Player player = null;
+        int playerRoom = -1;
+        for (int b = 0; b < players.length; ++b) {
+            if (players[b] != null) {
+                player = players[b];
+                playerRoom = playerRooms[b];
+            }
+        }
+        LoadedMap map = new LoadedMap(rooms, player, playerRoom);
+        if (rooms.length > 0) {
+            map.layout = MapLayout.read(new MappedMapParser(channel,
+                    index.offset(SectionIndex.CONTENTS, index.getBlocks())),
+                    rooms.length);
+        }
+        return map;
+    }
+
+    /* Parser for one block of one section */
+    private MappedMapParser parser(int section, int b) throws IOException {
+        return new MappedMapParser(channel, index.offset(section, b),
+                index.offset(section, b + 1));
+    }
+
+    /* Create the Rooms in block b */
+    private void readDescriptions(int b) throws IOException {
+        MappedMapParser mp = parser(SectionIndex.DESCRIPTIONS, b);
+        for (int i = index.firstRoom(b); i < index.firstRoom(b + 1); ++i) {
+            rooms[i] = mp.readRoom();
+        }
+    }
+
+    /* Add exits and contents to the Rooms in block b */
+    private void readLinks(int b) throws IOException {
+        MappedMapParser mp = parser(SectionIndex.EXITS, b);
+        for (int i = index.firstRoom(b); i < index.firstRoom(b + 1); ++i) {
+            int exitcount = mp.readInt();
+            for (int j = 0; j < exitcount; ++j) {
+                mp.nextLine();
+                int target = mp.intUntil((byte)' ');
+                String exname = mp.restAsLabel();
+                try {
+                    rooms[i].addExit(exname, rooms[target]);
+                } catch (CrawlException e) {
+                    throw new IOException("bad exit from room " + i);
+                }
+            }
+        }
+        mp = parser(SectionIndex.CONTENTS, b);
+        for (int i = index.firstRoom(b); i < index.firstRoom(b + 1); ++i) {
+            int itemcount = mp.readInt();
+            for (int j = 0; j < itemcount; ++j) {
+                Thing t = mp.readThing(rooms[0]);
+                if (t == null) {
+                    throw new IOException("bad item in room " + i);
+                }
+                if (t instanceof Player) { // we don't add
+                    players[b] = (Player)t;  // players to rooms
+                    playerRooms[b] = i;
+                } else {
+                    rooms[i].enter(t);
+                }
+            }
+        }
+    }
+
+    /** Task which handles a range of blocks */
+    private class Blocks extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final boolean descriptions;
+
+        Blocks(int from, int to, boolean descriptions) {
+            this.from = from;
+            this.to = to;
+            this.descriptions = descriptions;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Blocks(from, mid, descriptions),
+                        new Blocks(mid, to, descriptions));
+                return;
+            }
+            try {
+                for (int b = from; b < to; ++b) {
+                    if (descriptions) {
+                        readDescriptions(b);
+                    } else {
+                        readLinks(b);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Visits all reachable {@link Room Room}s like {@link MapWalker
+* MapWalker}, using several threads.
+* <br />The walk goes one level at a time: every Room in the current
+* frontier has its exits read by a pool of tasks, and the Rooms reached
+* for the first time make up the next frontier. Rooms are claimed in a
+* {@link ConcurrentBitSet ConcurrentBitSet} indexed by {@link Room#getId
+* id}, which grows to fit Rooms created during the walk (eg by a
+* {@link PagedWorld PagedWorld}) and only takes memory for the ids the
+* walk reaches.
+* <br />Unordered walks call {@link #visit visit} from the pool's threads
+* as each frontier is expanded, in no particular order, so overriding
+* visit must be thread safe. Ordered walks call visit on the walking
+* thread in exactly the order MapWalker would (only reading the exits is
+* spread over the pool), so a subclass written for MapWalker works
+* unchanged.
+* <br />The map must not change during a walk. Frontiers holding Rooms
+* from a {@link PagedWorld PagedWorld} are expanded on the walking thread.
+* @author JF
+*/
+public class ParallelMapWalker
+{
+    /** Fewest Rooms handed to one task */
+    private static final int MIN_CHUNK = 64;
+
+    private final Room start;
+    private final boolean ordered;
+    private final ForkJoinPool pool;
+    /** Rooms which have been added to a frontier (by id) */
+    private ConcurrentBitSet reached;
+    /** Rooms we have already processed (by id) */
+    private ConcurrentBitSet visited;
+
+    /**
+    * Choose start room (for an unordered walk on the common pool) but
+    * do not start the walk.
+    * @param start Room to begin exploring from
+    */
+    public ParallelMapWalker(Room start) {
+        this(start, false);
+    }
+
+    /**
+    * Choose start room (for a walk on the common pool) but do not start
+    * the walk.
+    * @param start Room to begin exploring from
+    * @param ordered true if visit should be called in MapWalker's order
+    *       on the walking thread
+    */
+    public ParallelMapWalker(Room start, boolean ordered) {
+        this(start, ordered, ForkJoinPool.commonPool());
+    }
+
+    /**
+    * Choose start room but do not start the walk.
+    * @param start Room to begin exploring from
+    * @param ordered true if visit should be called in MapWalker's order
+    *       on the walking thread
+    * @param pool Threads to read exits with
+    */
+    public ParallelMapWalker(Room start, boolean ordered, ForkJoinPool pool) {
+        this.start = start;
+        this.ordered = ordered;
+        this.pool = pool;
+        reached = new ConcurrentBitSet();
+        visited = new ConcurrentBitSet();
+    }
+
+    /**
+     * Called by walk --- clears any state from previous walks.
+     * Subclasses which @Override this method must call super.reset().
+    */
+    protected void reset() {
+        reached = new ConcurrentBitSet();
+        visited = new ConcurrentBitSet();
+    }
+
+    /**
+    * Visit all reachable rooms and call visit().
+    */
+    public void walk() {
+        reset();
+        reached.set(start.getId());
+        Room[] frontier = {start};
+        while (frontier.length > 0) {
+            frontier = ordered ? nextOrdered(frontier)
+                    : expand(frontier, chunkSize(frontier), true);
+        }
+    }
+
+    /* Expand a frontier and visit its Rooms in order */
+    private Room[] nextOrdered(Room[] frontier) {
+        int chunk = chunkSize(frontier);
+        Room[] next;
+        if (chunk >= frontier.length) {     // claiming in order already
+            next = expand(frontier, chunk, true);
+        } else {
+            List<Room> claimed = new ArrayList<Room>();
+            for (Room e : expand(frontier, chunk, false)) {
+                if (reached.set(e.getId())) {
+                    claimed.add(e);
+                }
+            }
+            next = claimed.toArray(new Room[claimed.size()]);
+        }
+        for (Room r : frontier) {
+            visited.set(r.getId());
+            visit(r);
+        }
+        return next;
+    }
+
+    /* Rooms per task for a frontier (all of them if it should not be
+     * split up)
+     */
+    private int chunkSize(Room[] frontier) {
+        if ((pool.getParallelism() == 1) || paged(frontier)) {
+            return Math.max(frontier.length, 1);
+        }
+        return Math.max(MIN_CHUNK,
+                frontier.length / (pool.getParallelism() * 4) + 1);
+    }
+
+    /* Read the exits of every Room in a frontier, in chunks. If claim is
+     * true the Rooms reached for the first time are claimed and returned
+     * (and unordered walks visit the frontier). Otherwise every exit
+     * target not reached by an earlier level is returned, repeats
+     * included. Either way the result is in frontier and exit order
+     * within each chunk, and chunks are in order.
+     */
+    private Room[] expand(Room[] frontier, int chunk, boolean claim) {
+        int chunks = (frontier.length + chunk - 1) / chunk;
+        List<List<Room>> parts = new ArrayList<List<Room>>(
+                Collections.<List<Room>>nCopies(chunks, null));
+        Chunks task = new Chunks(frontier, chunk, claim, parts, 0, chunks);
+        if (chunks == 1) {
+            task.compute();     // not worth handing over
+        } else {
+            pool.invoke(task);
+        }
+        int size = 0;
+        for (List<Room> part : parts) {
+            size += part.size();
+        }
+        Room[] res = new Room[size];
+        int i = 0;
+        for (List<Room> part : parts) {
+            for (Room r : part) {
+                res[i++] = r;
+            }
+        }
+        return res;
+    }
+
+    /* Rooms from a PagedWorld read themselves in when their exits are
+     * asked for, which can only be done by one thread at a time.
+     */
+    private static boolean paged(Room[] frontier) {
+        for (Room r : frontier) {
+            if (r instanceof PagedRoom) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Task which expands a range of chunks of a frontier */
+    private class Chunks extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Room[] frontier;
+        private final int chunk;
+        private final boolean claim;
+        private final List<List<Room>> parts;
+        private final int from;
+        private final int to;
+
+        Chunks(Room[] frontier, int chunk, boolean claim,
+                List<List<Room>> parts, int from, int to) {
+            this.frontier = frontier;
+            this.chunk = chunk;
+            this.claim = claim;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunks(frontier, chunk, claim, parts, from, mid),
+                        new Chunks(frontier, chunk, claim, parts, mid, to));
+                return;
+            }
+            List<Room> out = new ArrayList<Room>();
+            int end = Math.min(frontier.length, (from + 1) * chunk);
+            for (int i = from * chunk; i < end; ++i) {
+                Room r = frontier[i];
+                for (Room e : r.getExits().values()) {
+                    if (claim ? reached.set(e.getId())
+                            : !reached.get(e.getId())) {
+                        out.add(e);
+                    }
+                }
+                if (!ordered) {
+                    visited.set(r.getId());
+                    visit(r);
+                }
+            }
+            parts.set(from, out);
+        }
+    }
+
+    /**
+    * @param room Room to query
+    * @return true if room has been processed
+    */
+    public boolean hasVisited(Room room) {
+        if (room == null) {
+            return false;
+        }
+        return visited.get(room.getId());
+    }
+
+    /** process a room
+    * override to customise behaviour (thread safely for unordered walks)
+    * @param room Room to deal with
+    */
+    protected void visit(Room room) {
+    }
+}
@@ -0,0 +1,281 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/** Keeps track of which {@link Room Room}s can be reached from a start
+* room as exits are added and removed, without walking the whole map
+* again.
+* <br />Listens to every reachable Room. Adding an exit only walks the
+* Rooms it makes reachable. Each reachable Room also remembers the Room it
+* was first reached from (giving a spanning tree) and which reachable
+* Rooms have exits to it. Removing an exit which is not part of the tree
+* changes nothing; removing one which is only re-checks the Rooms below
+* it in the tree, re-attaching those which can still be reached some
+* other way.
+* <br />Subclasses can override {@link #reached reached} and
+* {@link #lost lost} to follow the changes.
+* <br />Changes made without telling listeners (eg by loading code working
+* on a map nobody else can see yet) are not noticed. Not thread safe:
+* the map should only be changed on one thread.
+* @author JF
+*/
+public class Reachability implements RoomListener
+{
+    private static final Room[] NO_ROOMS = new Room[0];
+
+    private final Room root;
+    /** Slot of each Room the arrays below hold (by id, -1 if none). Slots
+    *   are handed out densely, so the arrays grow with the Rooms seen
+    *   rather than the highest id. */
+    private final SparseIntArray slots = new SparseIntArray(-1);
+    /** Number of slots handed out */
+    private int used;
+    /** Rooms which can be reached (by slot) */
+    private final BitSet reachable = new BitSet();
+    /** Room each reachable Room was reached from (by slot) */
+    private Room[] parent = new Room[0];
+    /** Reachable Rooms with exits to each reachable Room (by slot, one
+    *   entry per exit) */
+    private Room[][] inbound = new Room[0][];
+    private int[] inboundCount = new int[0];
+    /** Number of reachable Rooms */
+    private int size;
+
+    /** Find the Rooms reachable from root and start following changes.
+    * @param root Start room
+    */
+    public Reachability(Room root) {
+        this.root = root;
+        claim(root, null);
+        adopt(root);
+    }
+
+    /** The start room.
+    * @return start Room
+    */
+    public Room getRoot() {
+        return root;
+    }
+
+    /**
+    * @param room Room to query
+    * @return true if room can be reached from the start room
+    */
+    public boolean isReachable(Room room) {
+        if (room == null) {
+            return false;
+        }
+        int slot = slots.get(room.getId());
+        return (slot >= 0) && reachable.get(slot);
+    }
+
+    /** How many Rooms can be reached?
+    * @return number of reachable Rooms (including the start room)
+    */
+    public int size() {
+        return size;
+    }
+
+    /** The Room a reachable Room is attached through.
+    * @param room Room to query
+    * @return a reachable Room with an exit to room (null for the start
+    *       room or a Room which can't be reached)
+    */
+    protected Room reachedFrom(Room room) {
+        if (!isReachable(room)) {
+            return null;
+        }
+        return parent[slots.get(room.getId())];
+    }
+
+    /** Stop listening to the map. */
+    public void close() {
+            // each Room is visited once, by one thread, so its listeners
+            // are only changed by that thread
+        new ParallelMapWalker(root) {
+            @Override
+            protected void visit(Room room) {
+                room.removeListener(Reachability.this);
+            }
+        }.walk();
+    }
+
+    /** A Room has become reachable (Rooms are reported in the order they
+    * are found, each once its exits have been recorded).
+    * @param room Room which can now be reached
+    */
+    protected void reached(Room room) {
+    }
+
+    /** A Room can no longer be reached.
+    * @param room Room which has been cut off
+    */
+    protected void lost(Room room) {
+    }
+
+    @Override
+    public void exitAdded(Room room, String label, Room target) {
+        if (!isReachable(room)) {
+            return;
+        }
+        addInbound(target, room);
+        if (!isReachable(target)) {
+            claim(target, room);
+            adopt(target);
+        }
+    }
+
+    @Override
+    public void exitRemoved(Room room, String label, Room target) {
+        if (!isReachable(room)) {
+            return;
+        }
+        removeInbound(target, room);
+        int t = slot(target);
+        if ((parent[t] != room) || room.getExits().containsValue(target)) {
+            return;     // target is still attached the same way
+        }
+            // everything below target in the tree may be cut off
+        List<Room> below = new ArrayList<Room>();
+        BitSet isBelow = new BitSet();      // by slot
+        below.add(target);
+        isBelow.set(t);
+        for (int i = 0; i < below.size(); ++i) {
+            for (Room e : below.get(i).getExits().values()) {
+                if (!isReachable(e)) {
+                    continue;
+                }
+                int s = slot(e);
+                if (!isBelow.get(s) && (parent[s] != null)
+                        && isBelow.get(slot(parent[s]))) {
+                    isBelow.set(s);
+                    below.add(e);
+                }
+            }
+        }
+        for (Room r : below) {
+            reachable.clear(slot(r));
+        }
+            // re-attach what can still be reached from outside
+        ArrayDeque<Room> todo = new ArrayDeque<Room>();
+        for (Room r : below) {
+            int s = slot(r);
+            for (int j = 0; j < inboundCount[s]; ++j) {
+                Room from = inbound[s][j];
+                if (isReachable(from)) {
+                    reachable.set(s);
+                    parent[s] = from;
+                    todo.add(r);
+                    break;
+                }
+            }
+        }
+        while (!todo.isEmpty()) {
+            Room r = todo.removeFirst();
+            for (Room e : r.getExits().values()) {
+                int s = slots.get(e.getId());
+                if ((s >= 0) && isBelow.get(s) && !reachable.get(s)) {
+                    reachable.set(s);
+                    parent[s] = r;
+                    todo.add(e);
+                }
+            }
+        }
+        List<Room> cut = new ArrayList<Room>();
+        for (Room r : below) {
+            if (!isReachable(r)) {
+                for (Room e : r.getExits().values()) {
+                    removeInbound(e, r);
+                }
+                r.removeListener(this);
+                parent[slot(r)] = null;
+                --size;
+                cut.add(r);
+            }
+        }
+        for (Room r : cut) {
+            int s = slot(r);
+            inbound[s] = null;
+            inboundCount[s] = 0;
+            lost(r);
+        }
+    }
+
+    /* Mark a Room reachable, reached from p */
+    private void claim(Room r, Room p) {
+        int s = slot(r);
+        reachable.set(s);
+        parent[s] = p;
+        ++size;
+        r.addListener(this);
+    }
+
+    /* Find the Rooms newly reachable from r (which has just been
+     * claimed) and record the exits out of all of them.
+     */
+    private void adopt(Room r) {
+        ArrayDeque<Room> todo = new ArrayDeque<Room>();
+        todo.add(r);
+        while (!todo.isEmpty()) {
+            Room next = todo.removeFirst();
+            for (Room e : next.getExits().values()) {
+                addInbound(e, next);
+                if (!isReachable(e)) {
+                    claim(e, next);
+                    todo.add(e);
+                }
+            }
+            reached(next);
+        }
+    }
+
+    private void addInbound(Room r, Room from) {
+        int s = slot(r);
+        Room[] in = inbound[s];
+        if (in == null) {
+            in = NO_ROOMS;
+        }
+        if (inboundCount[s] == in.length) {
+            in = Arrays.copyOf(in, Math.max(4, in.length * 2));
+        }
+        in[inboundCount[s]++] = from;
+        inbound[s] = in;
+    }
+
+    private void removeInbound(Room r, Room from) {
+        int s = slots.get(r.getId());
+        if ((s < 0) || (inbound[s] == null)) {
+            return;
+        }
+        Room[] in = inbound[s];
+        int n = inboundCount[s];
+        for (int j = 0; j < n; ++j) {
+            if (in[j] == from) {
+                in[j] = in[n - 1];
+                in[n - 1] = null;
+                inboundCount[s] = n - 1;
+                return;
+            }
+        }
+    }
+
+    /* Slot for a Room, handing out the next one (and making room for it
+     * in the arrays) if it has none
+     */
+    private int slot(Room r) {
+        int s = slots.get(r.getId());
+        if (s < 0) {
+            s = used++;
+            slots.put(r.getId(), s);
+            if (s >= parent.length) {
+                int len = Math.max(16, parent.length * 2);
+                parent = Arrays.copyOf(parent, len);
+                inbound = Arrays.copyOf(inbound, len);
+                inboundCount = Arrays.copyOf(inboundCount, len);
+            }
+        }
+        return s;
+    }
+}
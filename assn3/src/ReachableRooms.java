@@ -0,0 +1,122 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/** The {@link Room Room}s reachable from a start room, handed out one at a
+* time in the same order as {@link MapWalker MapWalker} visits them.
+* <br />The walk is lazy: a Room's exits are only read when the Room after
+* it is asked for, so a search which stops early (eg
+* <code>stream().filter(...).findFirst()</code>) only touches the Rooms
+* it needed. The walk can also be kept near the start (a depth limit) or
+* kept from going past some Rooms (a stop test).
+* <br />The map must not change while an iterator is in use.
+* @author JF
+*/
+public class ReachableRooms implements Iterable<Room>
+{
+    private final Room start;
+    private final int maxDepth;
+    private final Predicate<Room> stop;
+
+    /**
+    * @param start Room to begin exploring from
+    */
+    public ReachableRooms(Room start) {
+        this(start, Integer.MAX_VALUE, null);
+    }
+
+    /**
+    * @param start Room to begin exploring from
+    * @param maxDepth Furthest number of exits to follow from start
+    *       (0 gives just start)
+    * @param stop Rooms whose exits should not be followed (they are still
+    *       handed out). May be null.
+    */
+    public ReachableRooms(Room start, int maxDepth, Predicate<Room> stop) {
+        this.start = start;
+        this.maxDepth = maxDepth;
+        this.stop = stop;
+    }
+
+    /** A fresh walk from the start room.
+    * @return iterator over the reachable Rooms
+    */
+    @Override
+    public Iterator<Room> iterator() {
+        return new Walk();
+    }
+
+    @Override
+    public Spliterator<Room> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.DISTINCT
+                | Spliterator.NONNULL);
+    }
+
+    /** The reachable Rooms as a (sequential) stream
+    * @return stream which walks the map as it is consumed
+    */
+    public Stream<Room> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /** State of one walk */
+    private class Walk implements Iterator<Room>
+    {
+        /** Rooms which have been queued (by id) */
+        private final SparseBitSet queued = new SparseBitSet();
+        /** Queued Rooms at the current depth and the next one */
+        private ArrayDeque<Room> current = new ArrayDeque<Room>();
+        private ArrayDeque<Room> next = new ArrayDeque<Room>();
+        /** Distance of the Rooms in current from start */
+        private int depth;
+        /** Room handed out last whose exits have not been read yet */
+        private Room pending;
+
+        Walk() {
+            current.add(start);
+            queued.set(start.getId());
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending != null) {
+                expand(pending);
+                pending = null;
+            }
+            if (current.isEmpty() && !next.isEmpty()) {
+                ArrayDeque<Room> t = current;
+                current = next;
+                next = t;
+                ++depth;
+            }
+            return !current.isEmpty();
+        }
+
+        @Override
+        public Room next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            pending = current.removeFirst();
+            return pending;
+        }
+
+        /* Queue the Rooms next to r which have not been seen yet */
+        private void expand(Room r) {
+            if ((depth >= maxDepth) || ((stop != null) && stop.test(r))) {
+                return;
+            }
+            for (Room e : r.getExits().values()) {
+                if (queued.set(e.getId())) {
+                    next.add(e);
+                }
+            }
+        }
+    }
+}
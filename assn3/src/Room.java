@@ -1,9 +1,12 @@
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Building block for the map. Contains {@link Thing Thing}s Note: all exit labels are case sensitive.
@@ -13,12 +16,22 @@ import java.util.TreeMap;
  */
 public class Room implements Serializable {
 
-    // Description for this Room
+    // Description for this Room (null while pending is still encoded)
     private String description;
+    // Description which has not been decoded yet
+    private transient ByteText pending;
     // Exits from this Room. Strings are names of the exits
     private Map<String, Room> exits;
     // Things in this Room
     private List<Thing> contents;
+    // Told about changes to this Room (null if there are none)
+    private transient RoomListener[] listeners;
+    // Number for this Room, unique within the program (-1 for copies)
+    private final transient int id;
+
+    // Next id to hand out. Ids are handed out in order and never reused;
+    // this stops (at a negative value) once they have all been used
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
 
     /*
      * Replace characters in description strings
@@ -33,11 +46,91 @@ public class Room implements Serializable {
     /**
      * @param description Description for the room Note: each \r \n 
      *                    in description will be replaced with a `*`.
+     * @throws IllegalStateException if every Room id has been used
      */
     public Room(String description) {
+        this(description, nextId());
+    }
+
+    /*
+     * Hand out the next id
+     */
+    private static int nextId() {
+        int id = NEXT_ID.getAndUpdate(i -> (i < 0) ? i : i + 1);
+        if (id < 0) {
+            throw new IllegalStateException("every Room id has been used");
+        }
+        return id;
+    }
+
+    /*
+     * Hand out count ids in a row, returning the first of them
+     * (for Rooms which are made later with the package constructor)
+     */
+    static int reserveIds(int count) {
+        while (true) {
+            int first = NEXT_ID.get();
+            if ((first < 0) || ((long)first + count > Integer.MAX_VALUE + 1L)) {
+                throw new IllegalStateException("every Room id has been used");
+            }
+            if (NEXT_ID.compareAndSet(first, first + count)) {
+                return first;
+            }
+        }
+    }
+
+    /**
+     * Room with an id from {@link #reserveIds reserveIds} (or -1).
+     *
+     * @param description Description for the room
+     * @param id Id for the room
+     */
+    Room(String description, int id) {
         replaceDescription(description);
         exits = new TreeMap<String, Room>();
         contents = new LinkedList<Thing>();
+        this.id = id;
+    }
+
+    /**
+     * Room which is not given an id ({@link #getId getId} gives -1), for
+     * copies of a map which are only written out and never walked (such as
+     * a {@link MapSnapshot MapSnapshot}'s), so that they do not use up ids.
+     *
+     * @param description Description for the room
+     * @return new Room
+     */
+    static Room copy(String description) {
+        return new Room(description, -1);
+    }
+
+    /**
+     * Room whose description is decoded on first use.
+     *
+     * @param description Encoded description (must not contain \r or \n)
+     */
+    Room(ByteText description) {
+        pending = description;
+        exits = new TreeMap<String, Room>();
+        contents = new LinkedList<Thing>();
+        id = nextId();
+    }
+
+    /**
+     * A number for this Room which no other Room in the program has.
+     * Numbers are handed out in order (from 0) and are not reused (the
+     * Rooms of a {@link PagedWorld PagedWorld} use a block set aside when
+     * it is opened), so at most Integer.MAX_VALUE + 1 Rooms can be made in one
+     * run (making another throws IllegalStateException). Ids can be used
+     * to index bit sets and tables instead of hashing Rooms; as they keep
+     * growing over a long run, such tables should be sparse (see
+     * {@link SparseBitSet SparseBitSet} and {@link SparseIntArray
+     * SparseIntArray}).
+     *
+     * @return id of the Room (-1 for a Room made by {@link #copy copy})
+     */
+    public int getId() {
+        return id;
     }
 
     /**
@@ -46,6 +139,10 @@ public class Room implements Serializable {
      * @return Description
      */
     public String getDescription() {
+        if (pending != null) {
+            replaceDescription(pending.toString());
+            pending = null;
+        }
         return description;
     }
 
@@ -56,7 +153,85 @@ public class Room implements Serializable {
      * @param description new Description
      */
     public void setDescription(String description) {
+        pending = null;
         replaceDescription(description);
+        if (listeners != null) {
+            for (RoomListener l : listeners) {
+                l.descriptionChanged(this);
+            }
+        }
+    }
+
+    /**
+     * Ask to be told about changes to this Room.
+     * Note: adding the same listener twice has no extra effect.
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(RoomListener listener) {
+        if ((listener == null) || hasListener(listener)) {
+            return;
+        }
+        RoomListener[] added = (listeners == null) ? new RoomListener[1]
+                : Arrays.copyOf(listeners, listeners.length + 1);
+        added[added.length - 1] = listener;
+        listeners = added;
+    }
+
+    /**
+     * Stop telling a listener about changes to this Room.
+     * Note: silently fails if the listener was not added.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(RoomListener listener) {
+        if (!hasListener(listener)) {
+            return;
+        }
+        if (listeners.length == 1) {
+            listeners = null;
+            return;
+        }
+        RoomListener[] left = new RoomListener[listeners.length - 1];
+        int i = 0;
+        for (RoomListener l : listeners) {
+            if (l != listener) {
+                left[i++] = l;
+            }
+        }
+        listeners = left;
+    }
+
+    private boolean hasListener(RoomListener listener) {
+        if (listeners != null) {
+            for (RoomListener l : listeners) {
+                if (l == listener) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tell listeners that a Thing in this Room has changed in place
+     * (eg a Critter was hurt in a fight).
+     */
+    public void markChanged() {
+        if (listeners != null) {
+            for (RoomListener l : listeners) {
+                l.contentsChanged(this);
+            }
+        }
+    }
+
+    /*
+     * Serialise the whole map reachable from this Room as a table rather
+     * than following exits recursively (which overflows the stack on long
+     * corridors). Subclasses inherit this, so it can not be private.
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return new RoomGraph(this);
     }
 
     /**
@@ -87,13 +262,20 @@ public class Room implements Serializable {
      */
     public void addExit(String name, Room target) throws ExitExistsException,
             NullRoomException {
-        if (exits.containsKey(name)) {
-            throw new ExitExistsException();
-        }
         if (target == null) {
+            if (exits.containsKey(name)) {
+                throw new ExitExistsException();
+            }
             throw new NullRoomException();
         }
-        exits.put(name, target);
+        if (exits.putIfAbsent(name, target) != null) {
+            throw new ExitExistsException();
+        }
+        if (listeners != null) {
+            for (RoomListener l : listeners) {
+                l.exitAdded(this, name, target);
+            }
+        }
     }
 
     /**
@@ -103,7 +285,12 @@ public class Room implements Serializable {
      * @param name Name of exit to remove
      */
     public void removeExit(String name) {
-        exits.remove(name);
+        Room target = exits.remove(name);
+        if ((target != null) && (listeners != null)) {
+            for (RoomListener l : listeners) {
+                l.exitRemoved(this, name, target);
+            }
+        }
     }
 
     /**
@@ -114,6 +301,7 @@ public class Room implements Serializable {
     public void enter(Thing item) {
         if (!contents.contains(item)) {
             contents.add(item);
+            markChanged();
         }
     }
 
@@ -143,6 +331,7 @@ public class Room implements Serializable {
             return false;
         }
         contents.remove(item);
+        markChanged();
         return true;
     }
 
@@ -173,4 +362,30 @@ public class Room implements Serializable {
             throw e;
         }
     }
+
+    /*
+     * Direct access for classes which page Rooms in and out of memory.
+     * These bypass any overriding of the public methods and do not tell
+     * listeners about changes.
+     */
+    Map<String, Room> exitMap() {
+        return exits;
+    }
+
+    List<Thing> contentList() {
+        return contents;
+    }
+
+    /*
+     * Forget all exits and contents and set a new description.
+     * Fresh collections are used so that any views handed out earlier
+     * keep showing the old state rather than changing underneath their
+     * users.
+     */
+    void resetState(String description) {
+        pending = null;
+        replaceDescription(description);
+        exits = new TreeMap<String, Room>();
+        contents = new LinkedList<Thing>();
+    }
 }
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/** Serialised form of a {@link Room Room} and everything reachable from it.
+* <br />Default serialisation follows exits from Room to Room, so the
+* stack depth grows with the length of the longest path and every Room
+* drags a TreeMap and a LinkedList along with it. Instead the Rooms are
+* written as a table in {@link MapIO#saveMap MapIO.saveMap} order:
+* <ol><li>The number of rooms</li>
+*     <li>Room descriptions</li>
+*     <li>Room exits (count, then label and target room number for each)</li>
+*     <li>Room contents (count, then each Thing)</li>
+* </ol>
+* Reading rebuilds the graph and resolves to the start room.
+* <br />Note: every Room written to a stream brings its whole map with it,
+* so write the start room only once rather than several Rooms from the
+* same map.
+* @author JF
+*/
+class RoomGraph implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    /** Start room (written or read) */
+    private transient Room root;
+
+    /**
+    * @param root Start room to write
+    */
+    RoomGraph(Room root) {
+        this.root = root;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        List<Room> rooms = MapIO.roomSequence(root);
+        Map<Room, Integer> idm = MapIO.roomIds(rooms);
+        out.writeInt(rooms.size());
+        for (Room r : rooms) {
+            out.writeObject(r.getDescription());
+        }
+        for (Room r : rooms) {
+            Map<String, Room> m = r.getExits();
+            out.writeInt(m.size());
+            for (Map.Entry<String, Room> entry : m.entrySet()) {
+                out.writeObject(entry.getKey());
+                out.writeInt(idm.get(entry.getValue()));
+            }
+        }
+        for (Room r : rooms) {
+            List<Thing> l = r.getContents();
+            out.writeInt(l.size());
+            for (Thing t : l) {
+                out.writeObject(t);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        int count = in.readInt();
+        if (count <= 0) {
+            throw new InvalidObjectException("no rooms");
+        }
+        Room[] rooms = new Room[count];
+        for (int i = 0; i < count; ++i) {
+            rooms[i] = new Room(readString(in));
+        }
+        for (int i = 0; i < count; ++i) {
+            int exitcount = in.readInt();
+            Map<String, Room> exits = rooms[i].exitMap();
+            for (int j = 0; j < exitcount; ++j) {
+                String label = readString(in);
+                int target = in.readInt();
+                if ((target < 0) || (target >= count)) {
+                    throw new InvalidObjectException("bad exit target");
+                }
+                exits.put(label, rooms[target]);
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            int itemcount = in.readInt();
+            List<Thing> contents = rooms[i].contentList();
+            for (int j = 0; j < itemcount; ++j) {
+                Object t = in.readObject();
+                if (!(t instanceof Thing)) {
+                    throw new InvalidObjectException("not a Thing");
+                }
+                contents.add((Thing)t);
+            }
+        }
+        root = rooms[0];
+    }
+
+    private static String readString(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        Object s = in.readObject();
+        if (!(s instanceof String)) {
+            throw new InvalidObjectException("expected a String");
+        }
+        return (String)s;
+    }
+
+    private Object readResolve() {
+        return root;
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/** Sidecar file giving the byte offsets of every room in a saveMap file,
+* so that a single room can be read without loading the others.
+* <br />The index for <code>name</code> is kept in <code>name.idx</code>:
+* <ol><li>Magic bytes <code>CRWI</code> and a version byte</li>
+*     <li>Length and modification time of the map file, and a CRC-32 of
+*         its first and last {@link #SAMPLE SAMPLE} bytes (longs)</li>
+*     <li>Number of rooms (int)</li>
+*     <li>Number of the room holding the Player (int, -1 if none)</li>
+*     <li>Offsets of the ends of the descriptions, exits and contents
+*         sections (longs)</li>
+*     <li>For each room: offsets of its description, exit count and item
+*         count lines (longs)</li>
+* </ol>
+* An index which does not match its map file's length, modification time
+* and checksum is rebuilt when it is next opened. The checksum catches
+* most maps rewritten with the same length within the timestamp
+* granularity (the room count and the last rooms are at the ends of the
+* file) while only reading a little of it, so opening an index stays cheap
+* however large the map is.
+* {@link MapIO#saveMap MapIO.saveMap} also removes any old index.
+* @author JF
+*/
+class RoomIndex
+{
+    static final byte[] MAGIC = {'C', 'R', 'W', 'I'};
+    static final int VERSION = 5;
+    /** Bytes at each end of the map file covered by the checksum */
+    static final int SAMPLE = 4096;
+    /** Bytes before the first room entry */
+    private static final int HEADER = 4 + 1 + 8 + 8 + 8 + 4 + 4 + 3 * 8;
+    /** Bytes in each room entry */
+    private static final int ENTRY = 3 * 8;
+
+    private final RandomAccessFile map;
+    private final RandomAccessFile idx;
+    private final int rooms;
+    private final int playerRoom;
+    /** End of each section */
+    private final long[] ends = new long[3];
+
+    /** Open the index for a map, building it first if needed.
+    * @param filename Map file (written by saveMap)
+    * @throws IOException if the map can not be read or indexed
+    * @throws NumberFormatException if the map is malformed
+    */
+    public RoomIndex(String filename) throws IOException {
+        File f = new File(filename);
+        File idxFile = new File(indexName(filename));
+        if (!fresh(f, idxFile)) {
+            build(filename);
+        }
+        map = new RandomAccessFile(f, "r");
+        idx = new RandomAccessFile(idxFile, "r");
+        idx.seek(MAGIC.length + 1 + 8 + 8 + 8);
+        rooms = idx.readInt();
+        playerRoom = idx.readInt();
+        for (int i = 0; i < ends.length; ++i) {
+            ends[i] = idx.readLong();
+        }
+    }
+
+    /** Name of the index for a map file
+    * @param filename Map file
+    * @return filename of the index
+    */
+    static String indexName(String filename) {
+        return filename + ".idx";
+    }
+
+    /* Does idxFile describe the current contents of f? */
+    private static boolean fresh(File f, File idxFile) throws IOException {
+        if (!idxFile.isFile()) {
+            return false;
+        }
+        RandomAccessFile in = new RandomAccessFile(idxFile, "r");
+        try {
+            for (int i = 0; i < MAGIC.length; ++i) {
+                if (in.readByte() != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return (in.readUnsignedByte() == VERSION)
+                    && (in.readLong() == f.length())
+                    && (in.readLong() == f.lastModified())
+                    && (in.readLong() == checksum(f));
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /* CRC-32 of the first and last SAMPLE bytes of a file (the whole file
+     * if it is shorter than that)
+     */
+    private static long checksum(File f) throws IOException {
+        CRC32 crc = new CRC32();
+        FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            long tail = Math.max(SAMPLE, size - SAMPLE);
+            crc.update(bytes(ch, 0, Math.min(SAMPLE, size)));
+            if (tail < size) {
+                crc.update(bytes(ch, tail, size));
+            }
+        } finally {
+            ch.close();
+        }
+        return crc.getValue();
+    }
+
+    /* The bytes of a file from start up to end (fewer if it is shorter) */
+    private static ByteBuffer bytes(FileChannel ch, long start, long end)
+            throws IOException {
+        ByteBuffer b = ByteBuffer.allocate((int)(end - start));
+        while (b.hasRemaining()) {
+            if (ch.read(b, start + b.position()) < 0) {
+                break;
+            }
+        }
+        b.flip();
+        return b;
+    }
+
+    /** Scan a map file and write its index.
+    * @param filename Map file (written by saveMap)
+    * @throws IOException if the map can not be read or the index written
+    * @throws NumberFormatException if the map is malformed
+    */
+    static void build(String filename) throws IOException {
+        File f = new File(filename);
+        long length = f.length();
+        long modified = f.lastModified();
+        long crc = checksum(f);
+        long[][] offsets;
+        long[] ends = new long[3];
+        int playerRoom = -1;
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            MappedMapParser mp = new MappedMapParser(raf.getChannel(), 0);
+            int count = mp.readInt();
+            if (count < 0) {
+                throw new NumberFormatException("negative room count");
+            }
+            offsets = new long[3][count];
+            for (int i = 0; i < count; ++i) {
+                offsets[SectionIndex.DESCRIPTIONS][i] = mp.offset();
+                mp.nextLine();
+            }
+            ends[SectionIndex.DESCRIPTIONS] = mp.offset();
+            for (int s = SectionIndex.EXITS; s <= SectionIndex.CONTENTS; ++s) {
+                for (int i = 0; i < count; ++i) {
+                    offsets[s][i] = mp.offset();
+                    int lines = mp.readInt();
+                    for (int j = 0; j < lines; ++j) {
+                        if (s != SectionIndex.CONTENTS) {
+                            mp.nextLine();
+                        } else if (mp.readThing(null) instanceof Player) {
+                            playerRoom = i;     // as readRooms decides
+                        }
+                    }
+                }
+                ends[s] = mp.offset();
+            }
+        } finally {
+            raf.close();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(indexName(filename))));
+        try {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(length);
+            out.writeLong(modified);
+            out.writeLong(crc);
+            out.writeInt(offsets[0].length);
+            out.writeInt(playerRoom);
+            for (long e : ends) {
+                out.writeLong(e);
+            }
+            for (int i = 0; i < offsets[0].length; ++i) {
+                for (long[] section : offsets) {
+                    out.writeLong(section[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Number of rooms in the map
+    * @return room count
+    */
+    public int size() {
+        return rooms;
+    }
+
+    /** Which room holds the Player?
+    * @return room number or -1 if there is no Player
+    */
+    public int getPlayerRoom() {
+        return playerRoom;
+    }
+
+    /** Read one room from the map.
+    * @param id Room number
+    * @param root Start room of the map (given to Things which need it,
+    *       may be null)
+    * @return the room's record or null if id is out of range or the room
+    *       is not encoded correctly
+    * @throws IOException if the files can not be read
+    */
+    public RoomRecord read(int id, Room root) throws IOException {
+        if ((id < 0) || (id >= rooms)) {
+            return null;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(2 * ENTRY);
+        FileChannel ic = idx.getChannel();
+        long at = HEADER + (long)ENTRY * id;
+        while (entry.hasRemaining()) {
+            if (ic.read(entry, at + entry.position()) < 0) {
+                break;    // the last room has no following entry
+            }
+        }
+        FileChannel ch = map.getChannel();
+        try {
+            long[] start = new long[3];
+            long[] end = new long[3];
+            for (int s = 0; s < 3; ++s) {
+                start[s] = entry.getLong(s * 8);
+                end[s] = (id + 1 < rooms) ? entry.getLong(ENTRY + s * 8)
+                        : ends[s];
+            }
+            MapParser[] parts = new MapParser[3];
+            for (int s = 0; s < 3; ++s) {
+                parts[s] = parser(ch, start[s], end[s]);
+            }
+            return RoomRecord.read(id, parts[SectionIndex.DESCRIPTIONS],
+                    parts[SectionIndex.EXITS], parts[SectionIndex.CONTENTS],
+                    root);
+        } catch (NumberFormatException nfe) {
+            return null;
+        } catch (IllegalArgumentException ex) {    // offsets out of order
+            return null;
+        }
+    }
+
+    /** Parser for a small part of a file.
+    * The bytes are read onto the heap: mapping lots of small pieces of a
+    * file costs far more than copying them.
+    * @param ch File to read from
+    * @param start Offset of the first byte
+    * @param end Offset just past the last byte
+    * @return parser for those bytes
+    * @throws IOException if the file can not be read
+    * @throws IllegalArgumentException if end is before start
+    */
+    static MapParser parser(FileChannel ch, long start, long end)
+            throws IOException {
+        if ((end < start) || (end - start > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("bad range");
+        }
+        return new MapParser(bytes(ch, start, end));
+    }
+
+    /** Release the files
+    * @throws IOException if they can not be closed
+    */
+    public void close() throws IOException {
+        map.close();
+        idx.close();
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Told about changes made to the {@link Room Room}s it has been added to
+ * with {@link Room#addListener Room.addListener}.
+ * Each method does nothing by default, so listeners only need to
+ * override the changes they care about.
+ *
+ * @author JF
+ */
+public interface RoomListener {
+
+    /**
+     * The description of a Room was changed.
+     *
+     * @param room Room which changed
+     */
+    default void descriptionChanged(Room room) {
+    }
+
+    /**
+     * An exit was added to a Room.
+     *
+     * @param room   Room which changed
+     * @param label  Name of the new exit
+     * @param target Room the exit goes to
+     */
+    default void exitAdded(Room room, String label, Room target) {
+    }
+
+    /**
+     * An exit was removed from a Room.
+     *
+     * @param room   Room which changed
+     * @param label  Name of the removed exit
+     * @param target Room the exit went to
+     */
+    default void exitRemoved(Room room, String label, Room target) {
+    }
+
+    /**
+     * A Thing entered or left a Room or changed in place.
+     *
+     * @param room Room which changed
+     */
+    default void contentsChanged(Room room) {
+    }
+}
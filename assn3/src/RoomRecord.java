@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The saved form of a single {@link Room Room}: its description, its exits
+ * as room numbers and its contents.
+ * Room numbers are positions in the file the record came from.
+ *
+ * @author JF
+ */
+public class RoomRecord {
+    // Position of this room in the file
+    private final int id;
+    // Description of the room
+    private final String description;
+    // Names of the exits (in the same order as targets)
+    private final String[] labels;
+    // Room numbers the exits lead to
+    private final int[] targets;
+    // Things in the room (including any Player)
+    private final List<Thing> contents;
+
+    /**
+     * @param id          Position of the room in its file
+     * @param description Room description
+     * @param labels      Exit names
+     * @param targets     Room numbers for each exit in labels
+     * @param contents    Things in the room
+     */
+    public RoomRecord(int id, String description, String[] labels,
+            int[] targets, List<Thing> contents) {
+        this.id = id;
+        this.description = description;
+        this.labels = labels;
+        this.targets = targets;
+        this.contents = contents;
+    }
+
+    /**
+     * Position of the room in its file.
+     *
+     * @return room number
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Description of the room.
+     *
+     * @return Description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * How many exits does the room have?
+     *
+     * @return number of exits
+     */
+    public int getExitCount() {
+        return labels.length;
+    }
+
+    /**
+     * Name of an exit.
+     *
+     * @param i Exit number (0 &lt;= i &lt; getExitCount())
+     * @return Name of the exit
+     */
+    public String getExitLabel(int i) {
+        return labels[i];
+    }
+
+    /**
+     * Where an exit leads.
+     *
+     * @param i Exit number (0 &lt;= i &lt; getExitCount())
+     * @return Room number of the target
+     */
+    public int getExitTarget(int i) {
+        return targets[i];
+    }
+
+    /**
+     * What Things were in the room (including any Player)?
+     *
+     * @return Non-modifiable List of Things
+     */
+    public List<Thing> getContents() {
+        return Collections.unmodifiableList(contents);
+    }
+
+    /**
+     * Read a record from the three parts of a saved room.
+     * The parsers may be the same object if the parts follow each other.
+     *
+     * @param id       Room number
+     * @param desc     Positioned at the description line
+     * @param exits    Positioned at the exit count line
+     * @param contents Positioned at the item count line
+     * @param root     Start room of the map (given to Things which need it)
+     * @return record read or null if an item is not encoded correctly
+     * @throws IOException if a part ends early
+     * @throws NumberFormatException if a count or room number is malformed
+     */
+    static RoomRecord read(int id, MapParser desc, MapParser exits,
+            MapParser contents, Room root) throws IOException {
+        String description = desc.readLine();
+        int exitcount = exits.readInt();
+        if (exitcount < 0) {
+            throw new NumberFormatException("negative exit count");
+        }
+        String[] labels = new String[exitcount];
+        int[] targets = new int[exitcount];
+        for (int j = 0; j < exitcount; ++j) {
+            exits.nextLine();
+            targets[j] = exits.intUntil((byte)' ');
+            labels[j] = exits.restAsLabel();
+        }
+        int itemcount = contents.readInt();
+        if (itemcount < 0) {
+            throw new NumberFormatException("negative item count");
+        }
+        List<Thing> items = new ArrayList<Thing>(itemcount);
+        for (int j = 0; j < itemcount; ++j) {
+            Thing t = contents.readThing(root);
+            if (t == null) {
+                return null;
+            }
+            items.add(t);
+        }
+        return new RoomRecord(id, description, labels, targets, items);
+    }
+}
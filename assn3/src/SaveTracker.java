@@ -0,0 +1,257 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Saves a map by appending only the Rooms which have changed.
+* <br />The map file written by {@link MapIO#saveMap MapIO.saveMap} acts as
+* a base. The tracker listens to every Room in the map and
+* {@link #saveChanges saveChanges} appends the Rooms which changed since
+* the last save to a {@link MapJournal MapJournal} next to the base, so the
+* cost of a save depends on what changed rather than on the size of the
+* map. Rooms which are linked in later are given numbers after the
+* base's rooms. {@link MapIO#loadMap MapIO.loadMap} applies the journal
+* when reading the base, and {@link #compact compact} folds it back into a
+* fresh base.
+* <br />Changes to Things which stay in a Room (eg damage from a fight)
+* are only noticed if {@link Room#markChanged Room.markChanged} is called.
+* @author JF
+*/
+public class SaveTracker implements RoomListener
+{
+    private final String filename;
+    /** Start room */
+    private final Room root;
+    /** Player taken out of the map when it was opened */
+    private Player player;
+    /** Number of each tracked Room */
+    private final Map<Room, Integer> ids = new HashMap<Room, Integer>();
+    /** Tracked Rooms by number */
+    private final List<Room> rooms = new ArrayList<Room>();
+    /** Rooms changed since the last save (in the order they changed) */
+    private final Set<Room> changed = new LinkedHashSet<Room>();
+    private MapJournal journal;
+
+    private SaveTracker(String filename, Room root) {
+        this.filename = filename;
+        this.root = root;
+    }
+
+    /** Load a map (and its journal) and track changes to it.
+    * As with loadMap, the Player is taken out of the room it was in; the
+    * caller is responsible for placing it before the next save.
+    * @param filename Map file to read
+    * @return tracker for the map or null on failure
+    */
+    public static SaveTracker open(String filename) {
+        try {
+            LoadedMap map;
+            InputStream is = MapIO.openInput(filename);
+            try {
+                map = MapIO.replayJournal(filename,
+                        MapIO.readRooms(new MapParser(is), false), false);
+            } finally {
+                is.close();
+            }
+            if ((map == null) || (map.rooms.length == 0)) {
+                return null;
+            }
+            SaveTracker st = new SaveTracker(filename, map.rooms[0]);
+            st.player = map.player;
+            for (Room r : map.rooms) {
+                st.track(r);    // numbers match positions in map.rooms
+            }
+            st.journal = new MapJournal(filename, map.playerRoom);
+            if (map.playerRoom >= 0) {      // the Player has been taken out
+                st.changed.add(map.rooms[map.playerRoom]);
+            }
+            return st;
+        } catch (IOException ex) {
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            return null;
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /** Save a map in full and track changes to it from then on.
+    * @param root Start room
+    * @param filename Map file to write
+    * @return tracker for the map or null on failure
+    */
+    public static SaveTracker create(Room root, String filename) {
+        SaveTracker st = new SaveTracker(filename, root);
+        return st.rebase() ? st : null;
+    }
+
+    /* Write a fresh base and start tracking from it */
+    private boolean rebase() {
+            // the base is replaced whole before the old journal is let
+            // go, so a failed save leaves the base, the journal and this
+            // tracker as they were
+        if (!MapIO.saveMap(root, filename)) {
+            return false;
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ex) {  // its records are in the new base
+            }
+            journal = null;
+                // saveMap could not delete it if it was held open
+            new File(MapJournal.journalName(filename)).delete();
+        }
+        for (Room r : rooms) {
+            if (r != null) {
+                r.removeListener(this);
+            }
+        }
+        ids.clear();
+        rooms.clear();
+        changed.clear();
+        for (Room r : MapIO.roomSequence(root)) {
+            track(r);
+        }
+        return openJournal();
+    }
+
+    /* Start a journal for the current base if there is none */
+    private boolean openJournal() {
+        if (journal == null) {
+            try {
+                journal = new MapJournal(filename, -1);
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Give a Room the next number and listen to it */
+    private void track(Room r) {
+        if (r != null) {
+            ids.put(r, rooms.size());
+            r.addListener(this);
+        }
+        rooms.add(r);
+    }
+
+    /* Track a Room which has just been linked in, along with any other
+     * untracked Rooms reachable from it. They all need saving.
+     */
+    private void adopt(Room r) {
+        Deque<Room> todo = new ArrayDeque<Room>();
+        todo.add(r);
+        while (!todo.isEmpty()) {
+            Room next = todo.poll();
+            if (!ids.containsKey(next)) {
+                track(next);
+                changed.add(next);
+                todo.addAll(next.getExits().values());
+            }
+        }
+    }
+
+    /** The start room of the map.
+    * @return start Room
+    */
+    public Room getRoot() {
+        return root;
+    }
+
+    /** The Player taken out of the map by {@link #open open}
+    * @return Player or null if there was none
+    */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /** How many Rooms will the next save write?
+    * @return number of changed Rooms
+    */
+    public int getChangedCount() {
+        return changed.size();
+    }
+
+    /** Append the Rooms which changed since the last save to the journal.
+    * The Rooms are written as a group, so if the save is interrupted
+    * loading sees none of them.
+    * @return true if successful
+    */
+    public boolean saveChanges() {
+        if (changed.isEmpty()) {
+            return true;
+        }
+        if (!openJournal()) {   // a compact could not start a new one
+            return false;
+        }
+        try {
+            journal.appendAll(new ArrayList<Room>(changed), r -> ids.get(r));
+            journal.sync();
+        } catch (IOException ex) {
+            return false;
+        }
+        changed.clear();
+        return true;
+    }
+
+    /** Write the whole map as a new base, discarding the journal.
+    * Rooms which can no longer be reached are dropped and the rest are
+    * renumbered. If the new base can not be written, the old base and
+    * journal are kept and later saves go on appending to the journal.
+    * @return true if successful
+    */
+    public boolean compact() {
+        return rebase();
+    }
+
+    /** Stop tracking and release the journal.
+    * Changes which have not been saved are lost.
+    * @return true if successful
+    */
+    public boolean close() {
+        for (Room r : rooms) {
+            if (r != null) {
+                r.removeListener(this);
+            }
+        }
+        if (journal == null) {
+            return true;
+        }
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void descriptionChanged(Room room) {
+        changed.add(room);
+    }
+
+    @Override
+    public void exitAdded(Room room, String label, Room target) {
+        changed.add(room);
+        adopt(target);
+    }
+
+    @Override
+    public void exitRemoved(Room room, String label, Room target) {
+        changed.add(room);
+    }
+
+    @Override
+    public void contentsChanged(Room room) {
+        changed.add(room);
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Byte offsets of blocks of rooms within each section of a saveMap file.
+* <br />Written as an optional trailer after the contents section, so
+* readers which stop after the contents never see it:<br />
+* <code>#sections number_of_rooms rooms_per_block</code><br />
+* <code>offsets for descriptions</code><br />
+* <code>offsets for exits</code><br />
+* <code>offsets for contents</code><br />
+* <code>#end offset_of_#sections_line</code><br />
+* Each offsets line holds the offset of every block's first room followed
+* by the offset just past the end of the section.
+* @author JF
+*/
+class SectionIndex
+{
+    /** Section numbers */
+    static final int DESCRIPTIONS = 0, EXITS = 1, CONTENTS = 2;
+    /** Default number of rooms in each block */
+    static final int BLOCK = 4096;
+    /** Largest trailer we are prepared to read */
+    private static final long MAX_TRAILER = 64L << 20;
+
+    private final int rooms;
+    private final int block;
+    /** offsets[section][b] is where block b starts (last is the end) */
+    private final long[][] offsets;
+    /** Source of offsets while writing */
+    private Writer out;
+    private CountingOutputStream counter;
+
+    /**
+    * @param rooms Number of rooms in the map
+    * @param block Rooms in each block
+    */
+    public SectionIndex(int rooms, int block) {
+        this.rooms = rooms;
+        this.block = block;
+        int blocks = (rooms + block - 1) / block;
+        offsets = new long[3][blocks + 1];
+    }
+
+    /** Track offsets while a map is written.
+    * @param out Writer the map is written through
+    * @param counter Counts bytes out has written
+    */
+    void track(Writer out, CountingOutputStream counter) {
+        this.out = out;
+        this.counter = counter;
+    }
+
+    /** Called as each room in a section is about to be written
+    * @param section Which section
+    * @param room Number of the room
+    * @throws IOException if out could not be flushed
+    */
+    void room(int section, int room) throws IOException {
+        if (room % block == 0) {
+            out.flush();
+            offsets[section][room / block] = counter.getCount();
+        }
+    }
+
+    /** Called when a section has been written
+    * @param section Which section
+    * @throws IOException if out could not be flushed
+    */
+    void end(int section) throws IOException {
+        out.flush();
+        offsets[section][offsets[section].length - 1] = counter.getCount();
+    }
+
+    /** Number of rooms in the map
+    * @return room count
+    */
+    public int getRooms() {
+        return rooms;
+    }
+
+    /** Number of blocks the rooms are split into
+    * @return block count
+    */
+    public int getBlocks() {
+        return offsets[0].length - 1;
+    }
+
+    /** First room in a block
+    * @param b Block number (getBlocks() gives the end of the last block)
+    * @return room number
+    */
+    public int firstRoom(int b) {
+        return Math.min(b * block, rooms);
+    }
+
+    /** Where a block starts
+    * @param section Which section
+    * @param b Block number (getBlocks() gives the end of the section)
+    * @return byte offset in the file
+    */
+    public long offset(int section, int b) {
+        return offsets[section][b];
+    }
+
+    /** Append the trailer to a map which has just been written.
+    * @throws IOException if the trailer can not be written
+    */
+    void writeTrailer() throws IOException {
+        out.flush();
+        long start = counter.getCount();
+        out.write("#sections " + rooms + " " + block + "\n");
+        for (long[] section : offsets) {
+            for (int i = 0; i < section.length; ++i) {
+                out.write(((i > 0) ? " " : "") + section[i]);
+            }
+            out.write('\n');
+        }
+        out.write("#end " + start + "\n");
+    }
+
+    /** Read the trailer from a saveMap file.
+    * @param channel Open channel for the file
+    * @return index or null if the file does not have a valid trailer
+    * @throws IOException if the file can not be read
+    */
+    public static SectionIndex read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        String tail = readText(channel, Math.max(0, size - 64), size);
+        int at = tail.lastIndexOf("#end ");
+        if (at < 0) {
+            return null;
+        }
+        try {
+            long start = Long.parseLong(tail.substring(at + 5).trim());
+            if ((start < 0) || (start >= size) || (size - start > MAX_TRAILER)) {
+                return null;
+            }
+            String[] lines = readText(channel, start, size).split("\n");
+            String[] head = lines[0].split(" ");
+            if ((lines.length < 5) || !head[0].equals("#sections")) {
+                return null;
+            }
+            int rooms = Integer.parseInt(head[1]);
+            int block = Integer.parseInt(head[2]);
+            if ((rooms < 0) || (block <= 0)) {
+                return null;
+            }
+            SectionIndex index = new SectionIndex(rooms, block);
+            for (int s = 0; s < 3; ++s) {
+                String[] toks = lines[s + 1].split(" ");
+                if (toks.length != index.offsets[s].length) {
+                    return null;
+                }
+                for (int i = 0; i < toks.length; ++i) {
+                    index.offsets[s][i] = Long.parseLong(toks[i]);
+                }
+            }
+            return index;
+        } catch (NumberFormatException nfe) {
+            return null;
+        } catch (IndexOutOfBoundsException ex) {
+            return null;
+        }
+    }
+
+    /* Read part of a file as (ASCII) text */
+    private static String readText(FileChannel channel, long from, long to)
+            throws IOException {
+        ByteBuffer b = ByteBuffer.allocate((int)(to - from));
+        while (b.hasRemaining()) {
+            if (channel.read(b, from + b.position()) < 0) {
+                break;
+            }
+        }
+        return new String(b.array(), 0, b.position(), "US-ASCII");
+    }
+}
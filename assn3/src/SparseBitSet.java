@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/** Set of {@link Room#getId Room ids} (or other non-negative ints) which
+* only takes memory for the ranges of values it holds.
+* <br />Values are kept in pages of 4096 bits, found through a directory
+* covering the pages between the lowest and highest ones used. The Rooms
+* of one map are usually created together, so a set of them costs about
+* the same however many other Rooms the program has made.
+* Not thread safe.
+* @author JF
+*/
+class SparseBitSet
+{
+    /** log2(bits per page) */
+    private static final int SHIFT = 12;
+    /** longs per page */
+    private static final int WORDS = 1 << (SHIFT - 6);
+
+    /** Pages for page numbers base, base + 1, ... (null if empty) */
+    private long[][] pages = new long[0][];
+    private int base;
+
+    /** Is a value in the set?
+    * @param i Value to check
+    * @return true if i has been added (false if it is negative)
+    */
+    public boolean get(int i) {
+        int p = (i >>> SHIFT) - base;
+        if ((i < 0) || (p < 0) || (p >= pages.length) || (pages[p] == null)) {
+            return false;
+        }
+        return (pages[p][(i >>> 6) & (WORDS - 1)] & (1L << i)) != 0;
+    }
+
+    /** Add a value to the set.
+    * @param i Value to add
+    * @return true if i was not in the set before
+    * @throws IndexOutOfBoundsException if i is negative
+    */
+    public boolean set(int i) {
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("bit " + i);
+        }
+        long[] page = page(i >>> SHIFT);
+        int w = (i >>> 6) & (WORDS - 1);
+        long bit = 1L << i;
+        if ((page[w] & bit) != 0) {
+            return false;
+        }
+        page[w] |= bit;
+        return true;
+    }
+
+    /** Take a value out of the set.
+    * @param i Value to remove
+    */
+    public void clear(int i) {
+        int p = (i >>> SHIFT) - base;
+        if ((i >= 0) && (p >= 0) && (p < pages.length) && (pages[p] != null)) {
+            pages[p][(i >>> 6) & (WORDS - 1)] &= ~(1L << i);
+        }
+    }
+
+    /** Empty the set (and release its memory). */
+    public void clear() {
+        pages = new long[0][];
+        base = 0;
+    }
+
+    /* Page n, creating it (and growing the directory) if needed */
+    private long[] page(int n) {
+        if (pages.length == 0) {
+            pages = new long[1][];
+            base = n;
+        } else if (n < base) {
+            int grow = Math.min(base, Math.max(base - n, pages.length));
+            long[][] bigger = new long[pages.length + grow][];
+            System.arraycopy(pages, 0, bigger, grow, pages.length);
+            pages = bigger;
+            base -= grow;
+        } else if (n - base >= pages.length) {
+            pages = Arrays.copyOf(pages,
+                    Math.max(n - base + 1, pages.length * 2));
+        }
+        long[] page = pages[n - base];
+        if (page == null) {
+            page = new long[WORDS];
+            pages[n - base] = page;
+        }
+        return page;
+    }
+}
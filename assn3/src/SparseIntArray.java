@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/** Map from {@link Room#getId Room ids} (or other non-negative ints) to
+* ints which only takes memory for the ranges of keys it holds.
+* <br />Laid out like a {@link SparseBitSet SparseBitSet}: pages of 1024
+* values found through a directory covering the pages between the lowest
+* and highest ones used. Keys which have not been given a value read as
+* the missing value chosen when the array is made.
+* Not thread safe.
+* @author JF
+*/
+class SparseIntArray
+{
+    /** log2(values per page) */
+    private static final int SHIFT = 10;
+    private static final int SIZE = 1 << SHIFT;
+
+    /** Value of keys which have not been set */
+    private final int missing;
+    /** Pages for page numbers base, base + 1, ... (null if empty) */
+    private int[][] pages = new int[0][];
+    private int base;
+
+    /**
+    * @param missing Value to give for keys which have not been set
+    */
+    public SparseIntArray(int missing) {
+        this.missing = missing;
+    }
+
+    /** Look up a key.
+    * @param i Key
+    * @return value for i (the missing value if it has not been set or is
+    *       negative)
+    */
+    public int get(int i) {
+        int p = (i >>> SHIFT) - base;
+        if ((i < 0) || (p < 0) || (p >= pages.length) || (pages[p] == null)) {
+            return missing;
+        }
+        return pages[p][i & (SIZE - 1)];
+    }
+
+    /** Set the value for a key.
+    * @param i Key
+    * @param value Value for i
+    * @throws IndexOutOfBoundsException if i is negative
+    */
+    public void put(int i, int value) {
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("key " + i);
+        }
+        page(i >>> SHIFT)[i & (SIZE - 1)] = value;
+    }
+
+    /* Page n, creating it (and growing the directory) if needed */
+    private int[] page(int n) {
+        if (pages.length == 0) {
+            pages = new int[1][];
+            base = n;
+        } else if (n < base) {
+            int grow = Math.min(base, Math.max(base - n, pages.length));
+            int[][] bigger = new int[pages.length + grow][];
+            System.arraycopy(pages, 0, bigger, grow, pages.length);
+            pages = bigger;
+            base -= grow;
+        } else if (n - base >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(n - base + 1,
+                    pages.length * 2));
+        }
+        int[] page = pages[n - base];
+        if (page == null) {
+            page = new int[SIZE];
+            if (missing != 0) {
+                Arrays.fill(page, missing);
+            }
+            pages[n - base] = page;
+        }
+        return page;
+    }
+}
@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/** Finds the {@link Room Room}s at or near a position on the map.
+* <br />The plane is cut into square tiles of {@link #TILE TILE} x TILE
+* cells, and each tile that holds any Rooms keeps them along with their
+* packed cells (see {@link CoordTable#pack CoordTable.pack}). A query
+* only looks at the tiles it overlaps, so its cost depends on the size of
+* the area (or how far away the nearest Rooms are) and not the size of the
+* map. Several Rooms may share a cell (eg on a map whose exits do not
+* agree); they are all kept.
+* <br />Usually kept by a {@link BoundsMapper#index BoundsMapper}. Not
+* thread safe.
+* @author JF
+*/
+public class SpatialIndex
+{
+    /** Cells along each side of a tile */
+    public static final int TILE = 16;
+    /** log2(TILE) */
+    private static final int SHIFT = 4;
+
+    /** Rooms in one tile */
+    private static class Tile
+    {
+        Room[] rooms = new Room[4];
+        long[] cells = new long[4];
+        int count;
+    }
+
+    /** Tiles holding Rooms, by packed tile position */
+    private final Map<Long, Tile> tiles = new HashMap<Long, Tile>();
+    private int size;
+    /** Range of tile positions ever used */
+    private int txMin, txMax, tyMin, tyMax;
+
+    /** An empty index. */
+    public SpatialIndex() {
+    }
+
+    /** Index the Rooms in a table.
+    * @param coords Rooms and their coordinates
+    */
+    public SpatialIndex(CoordTable coords) {
+        coords.forEach(this::add);
+    }
+
+    /**
+    * @return number of Rooms in the index
+    */
+    public int size() {
+        return size;
+    }
+
+    /** Add a Room.
+    * @param room Room to add
+    * @param x x coordinate of room
+    * @param y y coordinate of room
+    */
+    public void add(Room room, int x, int y) {
+        int tx = x >> SHIFT;
+        int ty = y >> SHIFT;
+        Long key = CoordTable.pack(tx, ty);
+        Tile t = tiles.get(key);
+        if (t == null) {
+            t = new Tile();
+            tiles.put(key, t);
+            if (tiles.size() == 1) {
+                txMin = txMax = tx;
+                tyMin = tyMax = ty;
+            } else {
+                txMin = Math.min(txMin, tx);
+                txMax = Math.max(txMax, tx);
+                tyMin = Math.min(tyMin, ty);
+                tyMax = Math.max(tyMax, ty);
+            }
+        }
+        if (t.count == t.rooms.length) {
+            t.rooms = Arrays.copyOf(t.rooms, t.count * 2);
+            t.cells = Arrays.copyOf(t.cells, t.count * 2);
+        }
+        t.rooms[t.count] = room;
+        t.cells[t.count++] = CoordTable.pack(x, y);
+        ++size;
+    }
+
+    /** Remove a Room.
+    * @param room Room to remove
+    * @param x x coordinate room was added with
+    * @param y y coordinate room was added with
+    * @return false if room was not there
+    */
+    public boolean remove(Room room, int x, int y) {
+        Long key = CoordTable.pack(x >> SHIFT, y >> SHIFT);
+        Tile t = tiles.get(key);
+        if (t == null) {
+            return false;
+        }
+        for (int i = 0; i < t.count; ++i) {
+            if (t.rooms[i] == room) {
+                --t.count;
+                t.rooms[i] = t.rooms[t.count];
+                t.cells[i] = t.cells[t.count];
+                t.rooms[t.count] = null;
+                if (t.count == 0) {
+                    tiles.remove(key);
+                }
+                --size;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Find the Rooms in a rectangle of cells.
+    * @param x0 Smallest x coordinate
+    * @param y0 Smallest y coordinate
+    * @param x1 Largest x coordinate
+    * @param y1 Largest y coordinate
+    * @param v Called for each Room in the rectangle (the index must not
+    *       be changed until this returns)
+    */
+    public void query(int x0, int y0, int x1, int y1, CoordTable.Visitor v) {
+        if (tiles.isEmpty() || (x0 > x1) || (y0 > y1)) {
+            return;
+        }
+        int tx0 = Math.max(x0 >> SHIFT, txMin);
+        int tx1 = Math.min(x1 >> SHIFT, txMax);
+        int ty0 = Math.max(y0 >> SHIFT, tyMin);
+        int ty1 = Math.min(y1 >> SHIFT, tyMax);
+        for (int tx = tx0; tx <= tx1; ++tx) {
+            for (int ty = ty0; ty <= ty1; ++ty) {
+                Tile t = tiles.get(CoordTable.pack(tx, ty));
+                if (t == null) {
+                    continue;
+                }
+                for (int i = 0; i < t.count; ++i) {
+                    int x = CoordTable.x(t.cells[i]);
+                    int y = CoordTable.y(t.cells[i]);
+                    if ((x >= x0) && (x <= x1) && (y >= y0) && (y <= y1)) {
+                        v.room(t.rooms[i], x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Find the Rooms on one cell.
+    * @param x x coordinate
+    * @param y y coordinate
+    * @return Rooms there (empty if there are none)
+    */
+    public List<Room> at(int x, int y) {
+        List<Room> res = new ArrayList<Room>();
+        query(x, y, x, y, (r, rx, ry) -> res.add(r));
+        return res;
+    }
+
+    /** Find the Rooms closest to a cell (by straight line distance).
+    * @param x x coordinate
+    * @param y y coordinate
+    * @param k Most Rooms to find
+    * @return up to k Rooms, nearest first (Rooms the same distance away
+    *       come in no particular order)
+    */
+    public List<Room> nearest(int x, int y, int k) {
+        PriorityQueue<Hit> best = new PriorityQueue<Hit>(
+                (a, b) -> Long.compare(b.dist, a.dist));    // furthest first
+        int tx = x >> SHIFT;
+        int ty = y >> SHIFT;
+        int rings = Math.max(Math.max(Math.abs(tx - txMin),
+                Math.abs(tx - txMax)), Math.max(Math.abs(ty - tyMin),
+                Math.abs(ty - tyMax)));
+        for (int d = 0; (k > 0) && !tiles.isEmpty() && (d <= rings); ++d) {
+                // every cell in ring d is at least (d-1)*TILE+1 away
+            long near = (d == 0) ? 0 : (long)(d - 1) * TILE + 1;
+            if ((best.size() == k) && (best.peek().dist <= near * near)) {
+                break;
+            }
+            for (int i = -d; i <= d; ++i) {
+                ring(tx + i, ty - d, x, y, k, best);
+                if (d > 0) {
+                    ring(tx + i, ty + d, x, y, k, best);
+                }
+            }
+            for (int j = -d + 1; j <= d - 1; ++j) {
+                ring(tx - d, ty + j, x, y, k, best);
+                ring(tx + d, ty + j, x, y, k, best);
+            }
+        }
+        Room[] res = new Room[best.size()];
+        for (int i = res.length - 1; i >= 0; --i) {
+            res[i] = best.poll().room;
+        }
+        return Arrays.asList(res);
+    }
+
+    /** Candidate for nearest */
+    private static class Hit
+    {
+        final Room room;
+        /** Squared distance */
+        final long dist;
+
+        Hit(Room room, long dist) {
+            this.room = room;
+            this.dist = dist;
+        }
+    }
+
+    /* Offer the Rooms in one tile to the k best so far */
+    private void ring(int tx, int ty, int x, int y, int k,
+            PriorityQueue<Hit> best) {
+        Tile t = tiles.get(CoordTable.pack(tx, ty));
+        if (t == null) {
+            return;
+        }
+        for (int i = 0; i < t.count; ++i) {
+            long dx = CoordTable.x(t.cells[i]) - (long)x;
+            long dy = CoordTable.y(t.cells[i]) - (long)y;
+            long dist = dx * dx + dy * dy;
+            if (best.size() < k) {
+                best.add(new Hit(t.rooms[i], dist));
+            } else if (dist < best.peek().dist) {
+                best.poll();
+                best.add(new Hit(t.rooms[i], dist));
+            }
+        }
+    }
+
+    /** Find Rooms which have been placed on the same cell.
+    * @return a list of the Rooms on each shared cell (empty if every
+    *       Room has a cell of its own)
+    */
+    public List<List<Room>> collisions() {
+        List<List<Room>> res = new ArrayList<List<Room>>();
+        for (Tile t : tiles.values()) {
+            Integer[] order = new Integer[t.count];
+            for (int i = 0; i < order.length; ++i) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(t.cells[a], t.cells[b]));
+            for (int i = 0; i < order.length; ) {
+                int j = i + 1;
+                while ((j < order.length)
+                        && (t.cells[order[j]] == t.cells[order[i]])) {
+                    ++j;
+                }
+                if (j - i > 1) {
+                    List<Room> same = new ArrayList<Room>();
+                    for (int m = i; m < j; ++m) {
+                        same.add(t.rooms[order[m]]);
+                    }
+                    res.add(same);
+                }
+                i = j;
+            }
+        }
+        return res;
+    }
+}
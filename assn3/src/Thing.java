@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -106,4 +107,15 @@ public abstract class Thing implements Serializable {
     *    the type and recreate it.
     */
     public abstract String repr();
+
+    /** Write the same text as repr() without building it as a String
+    * first. Types with a {@link ThingCodec ThingCodec} are encoded without
+    * creating any objects.
+    * Note: to write many Things, reuse one {@link ThingWriter ThingWriter}.
+    * @param out Destination for the encoding
+    * @throws IOException if out can not be written to
+    */
+    public void writeTo(Appendable out) throws IOException {
+        new ThingWriter(out).write(this);
+    }
 }
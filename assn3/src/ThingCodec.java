@@ -0,0 +1,49 @@
+import java.io.IOException;
+
+/**
+ * Saves and loads one type of {@link Thing Thing} in the
+ * {@link MapIO#saveMap MapIO.saveMap} format.
+ * An encoded Thing is a tag character followed by <code>;</code>
+ * separated fields (the same text as its repr()). Codecs are looked up by
+ * tag when loading and by exact class when saving; see
+ * {@link ThingCodecs ThingCodecs}.
+ *
+ * @param <T> Type of Thing handled
+ * @author JF
+ */
+public interface ThingCodec<T extends Thing> {
+
+    /**
+     * Character which starts every encoding of this type.
+     *
+     * @return tag (must be a single byte character other than ';')
+     */
+    char tag();
+
+    /**
+     * Class whose instances this codec saves (subclasses are not included).
+     *
+     * @return class handled
+     */
+    Class<T> type();
+
+    /**
+     * Write the fields of a Thing (the tag has already been written).
+     *
+     * @param thing Thing to encode
+     * @param out   Where to write the fields
+     * @throws IOException if out can not be written to
+     */
+    void encode(T thing, ThingWriter out) throws IOException;
+
+    /**
+     * Create a Thing from its fields.
+     *
+     * @param in   Fields of the encoding (field 0 holds the tag)
+     * @param root Start room of the map being read (null if a room is
+     *             being read on its own)
+     * @return decoded Thing or null if the fields are not a valid encoding
+     * @throws NumberFormatException if a numeric field is malformed
+     */
+    T decode(ThingReader in, Room root);
+}
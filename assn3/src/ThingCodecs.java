@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the {@link ThingCodec ThingCodec}s used to save and load
+ * Things in the {@link MapIO#saveMap MapIO.saveMap} format.
+ * Codecs for Treasure, Critter, Explorer and Builder are registered from
+ * the start; other types of Thing can be added with
+ * {@link #register register} without changing MapIO.
+ *
+ * @author JF
+ */
+public class ThingCodecs {
+
+    // Codec for each tag character (replaced as a whole on registration)
+    private static volatile ThingCodec<?>[] byTag = new ThingCodec<?>[256];
+    // Codec for each class (replaced as a whole on registration)
+    private static volatile Map<Class<?>, ThingCodec<?>> byType =
+            new HashMap<Class<?>, ThingCodec<?>>();
+
+    /** $;value;short */
+    static final ThingCodec<Treasure> TREASURE = new ThingCodec<Treasure>() {
+        public char tag() {
+            return '$';
+        }
+
+        public Class<Treasure> type() {
+            return Treasure.class;
+        }
+
+        public void encode(Treasure t, ThingWriter out) throws IOException {
+            out.number(t.getValue());
+            out.text(t.getShort());
+        }
+
+        public Treasure decode(ThingReader in, Room root) {
+            if (in.fieldCount() != 3) {
+                return null;
+            }
+            return new Treasure(in.text(2), in.doubleField(1));
+        }
+    };
+
+    /** C;value;health;short;long */
+    static final ThingCodec<Critter> CRITTER = new ThingCodec<Critter>() {
+        public char tag() {
+            return 'C';
+        }
+
+        public Class<Critter> type() {
+            return Critter.class;
+        }
+
+        public void encode(Critter c, ThingWriter out) throws IOException {
+            out.number(c.getValue());
+            out.number(c.getHealth());
+            out.text(c.getShort());
+            out.text(c.getLong());
+        }
+
+        public Critter decode(ThingReader in, Room root) {
+            if (in.fieldCount() != 5) {
+                return null;
+            }
+            return new Critter(in.text(3), in.text(4), in.doubleField(1),
+                    in.intField(2));
+        }
+    };
+
+    /** E;health;short;long */
+    static final ThingCodec<Explorer> EXPLORER = new ThingCodec<Explorer>() {
+        public char tag() {
+            return 'E';
+        }
+
+        public Class<Explorer> type() {
+            return Explorer.class;
+        }
+
+        public void encode(Explorer e, ThingWriter out) throws IOException {
+            out.number(e.getHealth());
+            out.text(e.getShort());
+            out.text(e.getLong());
+        }
+
+        public Explorer decode(ThingReader in, Room root) {
+            if (in.fieldCount() != 4) {
+                return null;
+            }
+            return new Explorer(in.text(2), in.text(3), in.intField(1));
+        }
+    };
+
+    /** B;short;long (extra fields are ignored, as by Builder.decode) */
+    static final ThingCodec<Builder> BUILDER = new ThingCodec<Builder>() {
+        public char tag() {
+            return 'B';
+        }
+
+        public Class<Builder> type() {
+            return Builder.class;
+        }
+
+        public void encode(Builder b, ThingWriter out) throws IOException {
+            out.text(b.getShort());
+            out.text(b.getLong());
+        }
+
+        public Builder decode(ThingReader in, Room root) {
+            if ((in.fieldCount() < 3) || !in.text(0).equals("B")) {
+                return null;
+            }
+            return new Builder(in.text(1), in.text(2), root);
+        }
+    };
+
+    static {
+        register(TREASURE);
+        register(CRITTER);
+        register(EXPLORER);
+        register(BUILDER);
+    }
+
+    /**
+     * Add a codec, replacing any codec with the same tag or type.
+     *
+     * @param codec Codec to add
+     * @throws IllegalArgumentException if the codec's tag is ';' or is not
+     *                                  a single byte character
+     */
+    public static synchronized void register(ThingCodec<?> codec) {
+        char tag = codec.tag();
+        if ((tag > 0x7f) || (tag == ';') || (tag == '\n') || (tag == '\r')) {
+            throw new IllegalArgumentException("bad tag " + tag);
+        }
+        ThingCodec<?>[] tags = byTag.clone();
+        Map<Class<?>, ThingCodec<?>> types =
+                new HashMap<Class<?>, ThingCodec<?>>(byType);
+        ThingCodec<?> old = tags[tag];
+        if (old != null) {
+            types.remove(old.type());
+        }
+        old = types.remove(codec.type());
+        if (old != null) {
+            tags[old.tag()] = null;
+        }
+        tags[tag] = codec;
+        types.put(codec.type(), codec);
+        byTag = tags;
+        byType = types;
+    }
+
+    /**
+     * Codec for encodings which start with a byte.
+     *
+     * @param tag First byte (or character) of the encoding
+     * @return codec or null if there is none for that tag
+     */
+    public static ThingCodec<?> forTag(int tag) {
+        return ((tag >= 0) && (tag < 256)) ? byTag[tag] : null;
+    }
+
+    /**
+     * Codec which saves a Thing.
+     *
+     * @param thing Thing to be saved
+     * @return codec for the exact class of thing or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static ThingCodec<Thing> forThing(Thing thing) {
+        return (ThingCodec<Thing>)byType.get(thing.getClass());
+    }
+
+    /**
+     * Decode a Thing from a single line of text.
+     *
+     * @param encoded Encoded Thing
+     * @param root    Start room of the map being read (may be null)
+     * @return decoded Thing or null if encoded is not a valid encoding
+     */
+    public static Thing decode(String encoded, Room root) {
+        if ((encoded == null) || encoded.isEmpty()) {
+            return null;
+        }
+        ThingCodec<?> codec = forTag(encoded.charAt(0));
+        if (codec == null) {
+            return null;
+        }
+        try {
+            return codec.decode(new Fields(encoded.split(";")), root);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /**
+     * Encode a Thing as a String.
+     *
+     * @param thing Thing to encode
+     * @return the same text as thing.repr()
+     */
+    public static String encode(Thing thing) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            new ThingWriter(sb).write(thing);
+        } catch (IOException ex) {      // StringBuilder does not throw
+            throw new IllegalStateException(ex);
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Fields of an encoding which has already been split.
+     */
+    private static class Fields implements ThingReader {
+        private final String[] fields;
+
+        Fields(String[] fields) {
+            this.fields = fields;
+        }
+
+        public int fieldCount() {
+            return fields.length;
+        }
+
+        public String text(int i) {
+            return fields[i];
+        }
+
+        public int intField(int i) {
+            return Integer.parseInt(fields[i]);
+        }
+
+        public double doubleField(int i) {
+            return Double.parseDouble(fields[i]);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * The <code>;</code> separated fields of an encoded {@link Thing Thing},
+ * split the same way as String.split (trailing empty fields are dropped).
+ *
+ * @author JF
+ */
+public interface ThingReader {
+
+    /**
+     * How many fields are there (including the tag field)?
+     *
+     * @return number of fields
+     */
+    int fieldCount();
+
+    /**
+     * A field as text.
+     *
+     * @param i Field number (0 &lt;= i &lt; fieldCount())
+     * @return contents of the field
+     */
+    String text(int i);
+
+    /**
+     * A field as an int (same rules as Integer.parseInt).
+     *
+     * @param i Field number (0 &lt;= i &lt; fieldCount())
+     * @return value of the field
+     * @throws NumberFormatException if the field is not an int
+     */
+    int intField(int i);
+
+    /**
+     * A field as a double (same rules as Double.parseDouble).
+     *
+     * @param i Field number (0 &lt;= i &lt; fieldCount())
+     * @return value of the field
+     * @throws NumberFormatException if the field is not a double
+     */
+    double doubleField(int i);
+}
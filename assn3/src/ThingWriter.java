@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Writes encoded {@link Thing Thing}s (the text their repr() gives) using
+ * the codecs registered with {@link ThingCodecs ThingCodecs}.
+ * One writer can be reused for any number of Things. Numbers are
+ * formatted straight into the destination, so encoding the built in
+ * types creates no objects.
+ *
+ * @author JF
+ */
+public class ThingWriter {
+    // Largest magnitude formatted without String.format
+    private static final double FIXED_LIMIT = 1e9;
+    // Locale checked by plainLocale and whether it formats like ASCII
+    private static volatile LocaleCheck checked;
+
+    // Where the text goes
+    private final Appendable out;
+    // Digits of a number, filled from the end
+    private final char[] digits = new char[20];
+
+    /**
+     * @param out Destination for encoded Things
+     */
+    public ThingWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Write the encoding of a Thing (without a line terminator).
+     * Types without a codec are written using repr().
+     *
+     * @param thing Thing to encode
+     * @throws IOException if the destination can not be written to
+     */
+    public void write(Thing thing) throws IOException {
+        ThingCodec<Thing> codec = ThingCodecs.forThing(thing);
+        if (codec == null) {
+            out.append(thing.repr());
+            return;
+        }
+        out.append(codec.tag());
+        codec.encode(thing, this);
+    }
+
+    /**
+     * Write a text field.
+     *
+     * @param text Contents of the field (must not contain ';' or line
+     *             breaks)
+     * @throws IOException if the destination can not be written to
+     */
+    public void text(String text) throws IOException {
+        out.append(';').append(text);
+    }
+
+    /**
+     * Write an int field.
+     *
+     * @param value Contents of the field
+     * @throws IOException if the destination can not be written to
+     */
+    public void number(int value) throws IOException {
+        out.append(';');
+        appendLong(value);
+    }
+
+    /**
+     * Write a double field with five decimal places (as
+     * String.format("%.5f", value) would).
+     *
+     * @param value Contents of the field
+     * @throws IOException if the destination can not be written to
+     */
+    public void number(double value) throws IOException {
+        out.append(';');
+        if (!appendFixed5(value)) {
+            out.append(String.format("%.5f", value));
+        }
+    }
+
+    /*
+     * Write a long in decimal.
+     */
+    private void appendLong(long value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (char)('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (; i < digits.length; ++i) {
+            out.append(digits[i]);
+        }
+    }
+
+    /*
+     * Write value as String.format("%.5f", value) would, if that can be
+     * done exactly here.
+     * String.format rounds half up on the shortest decimal form of the
+     * value, which differs from the exact binary value by less than an
+     * ulp. So rounding value * 10^5 directly gives the same answer unless
+     * the fraction is within a few ulps of one half; those cases, large
+     * values and locales which don't use ASCII digits and '.' are left to
+     * the caller (and nothing is written).
+     */
+    private boolean appendFixed5(double value) throws IOException {
+        double a = Math.abs(value);
+        if (!(a < FIXED_LIMIT) || !plainLocale()) {   // also rejects NaN
+            return false;
+        }
+        double x = a * 100000;
+        double whole = Math.floor(x);
+        double frac = x - whole;
+        if (Math.abs(frac - 0.5) <= 4 * Math.ulp(x)) {
+            return false;
+        }
+        long units = (long)whole + ((frac > 0.5) ? 1 : 0);
+        if (Double.compare(value, 0.0) < 0) {    // "-0.00000" for -0.0
+            out.append('-');
+        }
+        appendLong(units / 100000);
+        out.append('.');
+        long f = units % 100000;
+        for (long d = 10000; d > 0; d /= 10) {
+            out.append((char)('0' + (f / d) % 10));
+        }
+        return true;
+    }
+
+    /*
+     * Does String.format use ASCII digits and '.' in the current locale?
+     */
+    private static boolean plainLocale() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        LocaleCheck c = checked;
+        if ((c == null) || (c.locale != locale)) {
+            DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(locale);
+            c = new LocaleCheck(locale, (dfs.getZeroDigit() == '0')
+                    && (dfs.getDecimalSeparator() == '.'));
+            checked = c;
+        }
+        return c.plain;
+    }
+
+    /*
+     * Result of checking a locale.
+     */
+    private static class LocaleCheck {
+        final Locale locale;
+        final boolean plain;
+
+        LocaleCheck(Locale locale, boolean plain) {
+            this.locale = locale;
+            this.plain = plain;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Class AsyncSaverTest: JUnit4 Testing Class for background saves with
+ * Classes AsyncSaver and MapSnapshot
+ * @author JF
+ */
+public class AsyncSaverTest {
+    /** Method contents(): The text of a file
+     */
+    private static String contents(String name) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(name)));
+    }
+
+    /** Method snapshotTest(): Test that a snapshot writes what saveMap
+     * would have written when it was taken
+     */
+    @Test
+    public void snapshotTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        Critter frog = new Critter("frog", "a frog", 1.5, 3);
+        r1.enter(frog);
+        assertTrue(MapIO.saveMap(r1, name));
+        MapSnapshot snapshot = new MapSnapshot(r1);
+        r1.setDescription("later");
+        frog.takeDamage(1);
+        assertTrue(r1.leave(frog));
+        StringWriter out = new StringWriter();
+        snapshot.write(out);
+        assertEquals(contents(name), out.toString());
+    }
+
+    /** Method saveTest(): Test saving in the background while the map
+     * changes, and that only the latest of several saves to one file
+     * needs to be written
+     */
+    @Test
+    public void saveTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        List<Boolean> results = Collections.synchronizedList(
+                new ArrayList<Boolean>());
+        AsyncSaver saver = new AsyncSaver();
+        r1.setDescription("first");
+        saver.save(r1, name, results::add);
+        r1.setDescription("r1");
+        saver.save(r1, name, results::add);
+        r1.setDescription("not saved");
+        assertTrue(saver.shutdown(10000));
+        assertEquals(2, results.size());
+        assertTrue(results.get(0));
+        assertTrue(results.get(1));
+        MapIOTest.checkSmallMap(MapIO.loadMap(name));
+    }
+
+    /** Method failTest(): Test that a save which can not be written is
+     * reported
+     */
+    @Test
+    public void failTest() throws CrawlException {
+        List<Boolean> results = Collections.synchronizedList(
+                new ArrayList<Boolean>());
+        AsyncSaver saver = new AsyncSaver();
+        saver.save(MapIOTest.smallMap(), "no such directory/map",
+                results::add);
+        assertTrue(saver.shutdown(10000));
+        assertEquals(Collections.singletonList(Boolean.FALSE), results);
+    }
+
+    /** Method replaceTest(): Test that saving over a map replaces it whole,
+     * drops the journal and index which belonged to the old one, and
+     * leaves no temporary files behind
+     */
+    @Test
+    public void replaceTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room first = MapIOTest.chain(50);
+        SaveTracker st = SaveTracker.create(first, name);
+        first.setDescription("changed");
+        assertTrue(st.saveChanges());
+        assertTrue(st.close());
+        assertNotNull(MapIO.readRoom(name, 0));
+        assertTrue(new File(name + ".journal").length() > 0);
+        assertTrue(new File(name + ".idx").exists());
+
+        AsyncSaver saver = new AsyncSaver();
+        saver.save(MapIOTest.smallMap(), name, ok -> { });
+        assertTrue(saver.shutdown(10000));
+        assertFalse(new File(name + ".journal").exists());
+        assertFalse(new File(name + ".idx").exists());
+        MapIOTest.checkSmallMap(MapIO.loadMap(name));
+        File dir = new File(name).getAbsoluteFile().getParentFile();
+        String prefix = new File(name).getName();
+        for (String f : dir.list()) {
+            assertFalse(f.startsWith(prefix) && f.endsWith(".tmp"));
+        }
+    }
+}
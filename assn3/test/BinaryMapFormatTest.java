@@ -0,0 +1,88 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/** Class BinaryMapFormatTest: JUnit4 Testing Class for Class
+ * BinaryMapFormat and the binary map methods of MapIO
+ * @author JF
+ */
+public class BinaryMapFormatTest {
+    /** Method varintTest(): Test writeVarint() and readVarint() around
+     * each change in length
+     */
+    @Test
+    public void varintTest() throws IOException {
+        int[] values = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152,
+            Integer.MAX_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int v : values) {
+            BinaryMapFormat.writeVarint(out, v);
+        }
+        out.flush();
+        assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 3 + 4 + 5, bytes.size());
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        for (int v : values) {
+            assertEquals(v, BinaryMapFormat.readVarint(in));
+        }
+    }
+
+    /** Method saveLoadTest(): Test saveBinary() then loadBinary()
+     */
+    @Test
+    public void saveLoadTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveBinary(MapIOTest.smallMap(), name));
+        MapIOTest.checkSmallMap(MapIO.loadBinary(name));
+    }
+
+    /** Method precisionTest(): Test that values keep full precision, which
+     * the text format rounds to 5 places
+     */
+    @Test
+    public void precisionTest() throws IOException {
+        String name = MapIOTest.tempMap();
+        Room r = new Room("r");
+        r.enter(new Treasure("third", 1.0 / 3));
+        r.enter(new Critter("frog", "a frog", 2.0 / 3, 4));
+        assertTrue(MapIO.saveBinary(r, name));
+        Object[] loaded = MapIO.loadBinary(name);
+        assertNotNull(loaded);
+        Room l = (Room) loaded[1];
+        assertEquals(1.0 / 3, ((Treasure) l.getContents().get(0)).getValue(),
+                0);
+        Critter frog = (Critter) l.getContents().get(1);
+        assertEquals(2.0 / 3, frog.getValue(), 0);
+        assertEquals(4, frog.getHealth());
+        assertEquals("a frog", frog.getDescription());
+    }
+
+    /** Method convertTest(): Test converting a text map to binary and
+     * back again
+     */
+    @Test
+    public void convertTest() throws IOException, CrawlException {
+        String text = MapIOTest.tempMap();
+        String binary = MapIOTest.tempMap();
+        String back = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.smallMap(), text));
+        assertTrue(MapIO.textToBinary(text, binary));
+        MapIOTest.checkSmallMap(MapIO.loadBinary(binary));
+        assertTrue(MapIO.binaryToText(binary, back));
+        MapIOTest.checkSmallMap(MapIO.loadMap(back));
+    }
+
+    /** Method notBinaryTest(): Test loading a text map as a binary one
+     */
+    @Test
+    public void notBinaryTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.smallMap(), name));
+        assertNull(MapIO.loadBinary(name));
+    }
+}
@@ -0,0 +1,154 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Random;
+
+/** Class BoundsMapperTest: JUnit4 Testing Class for Class BoundsMapper
+ * @author JF
+ */
+public class BoundsMapperTest {
+    private static final int SIDE = 12;
+
+    /** Method cells(): Rooms for a SIDE by SIDE grid, with no exits yet
+     */
+    private static Room[][] cells() {
+        Room[][] rooms = new Room[SIDE][SIDE];
+        for (int x = 0; x < SIDE; ++x) {
+            for (int y = 0; y < SIDE; ++y) {
+                rooms[x][y] = new Room(x + "," + y);
+            }
+        }
+        return rooms;
+    }
+
+    /** Method toggle(): Join (or part) a cell and the one East of it, or
+     * South of it, with a pair of exits which agree with each other
+     */
+    private static void toggle(Room[][] rooms, int x, int y, boolean east)
+            throws CrawlException {
+        Room a = rooms[x][y];
+        Room b = east ? rooms[x + 1][y] : rooms[x][y + 1];
+        String there = east ? "East" : "South";
+        String back = east ? "West" : "North";
+        if (a.getExits().containsKey(there)) {
+            a.removeExit(there);
+            b.removeExit(back);
+        } else {
+            Room.makeExitPair(a, b, there, back);
+        }
+    }
+
+    /** Method randomToggle(): toggle() a random pair of neighbours
+     */
+    private static void randomToggle(Room[][] rooms, Random random)
+            throws CrawlException {
+        boolean east = random.nextBoolean();
+        int x = random.nextInt(east ? SIDE - 1 : SIDE);
+        int y = random.nextInt(east ? SIDE : SIDE - 1);
+        toggle(rooms, x, y, east);
+    }
+
+    /** Method check(): Test a tracking mapper against a fresh walk, and
+     * its index against its coordinates
+     */
+    private static void check(BoundsMapper tracked, Room root) {
+        BoundsMapper fresh = new BoundsMapper(root);
+        fresh.walk();
+        MapLayoutTest.sameLayout(fresh, tracked, root);
+        SpatialIndex index = tracked.index();
+        assertEquals(tracked.coords.size(), index.size());
+        tracked.coords.forEach((r, x, y) ->
+                assertTrue(index.at(x, y).contains(r)));
+    }
+
+    /** Method trackTest(): Test that tracking gives the same coordinates
+     * and bounds as a fresh walk as exit pairs are added and removed
+     */
+    @Test
+    public void trackTest() throws CrawlException {
+        for (long seed = 1; seed <= 3; ++seed) {
+            Random random = new Random(seed);
+            Room[][] rooms = cells();
+            for (int i = 0; i < SIDE * SIDE; ++i) {
+                randomToggle(rooms, random);
+            }
+            Room root = rooms[SIDE / 2][SIDE / 2];
+            BoundsMapper tracked = new BoundsMapper(root);
+            tracked.track();
+            tracked.index();
+            check(tracked, root);
+            for (int step = 0; step < 600; ++step) {
+                randomToggle(rooms, random);
+                check(tracked, root);
+                for (int x = 0; x < SIDE; ++x) {
+                    for (int y = 0; y < SIDE; ++y) {
+                        assertEquals(tracked.coords.contains(rooms[x][y]),
+                                tracked.hasVisited(rooms[x][y]));
+                    }
+                }
+            }
+            tracked.stopTracking();
+        }
+    }
+
+    /** Method walkedTest(): Test tracking after a walk, when the map has
+     * changed since then
+     */
+    @Test
+    public void walkedTest() throws CrawlException {
+        Room[][] rooms = cells();
+        for (int x = 0; x < SIDE; ++x) {
+            for (int y = 0; y < SIDE; ++y) {
+                if (x + 1 < SIDE) {
+                    toggle(rooms, x, y, true);
+                }
+                if (y + 1 < SIDE) {
+                    toggle(rooms, x, y, false);
+                }
+            }
+        }
+        Room root = rooms[0][0];
+        BoundsMapper mapper = new BoundsMapper(root);
+        mapper.walk();
+        assertEquals(SIDE - 1, mapper.xMax);
+        assertEquals(SIDE - 1, mapper.yMax);
+            // cut off the last column
+        for (int y = 0; y < SIDE; ++y) {
+            toggle(rooms, SIDE - 2, y, true);
+        }
+        mapper.track();
+        check(mapper, root);
+        assertEquals(SIDE - 2, mapper.xMax);
+        assertEquals(SIDE * (SIDE - 1), mapper.coords.size());
+        toggle(rooms, SIDE - 2, 3, true);
+        check(mapper, root);
+        assertEquals(SIDE - 1, mapper.xMax);
+        mapper.stopTracking();
+    }
+
+    /** Method stopTest(): Test that the coordinates stop changing after
+     * stopTracking and are cleared by reset
+     */
+    @Test
+    public void stopTest() throws CrawlException {
+        Room[][] rooms = cells();
+        toggle(rooms, 0, 0, true);
+        toggle(rooms, 1, 0, false);
+        Room root = rooms[0][0];
+        BoundsMapper mapper = new BoundsMapper(root);
+        mapper.track();
+        assertEquals(3, mapper.coords.size());
+        mapper.stopTracking();
+        toggle(rooms, 0, 0, true);
+        assertEquals(3, mapper.coords.size());
+        assertEquals(1, mapper.xMax);
+        assertEquals(1, mapper.yMax);
+        mapper.track();
+        check(mapper, root);
+        assertEquals(1, mapper.coords.size());
+        mapper.reset();
+        assertEquals(0, mapper.coords.size());
+        toggle(rooms, 0, 0, true);
+        assertEquals(0, mapper.coords.size());
+        assertEquals(0, mapper.xMax);
+    }
+}
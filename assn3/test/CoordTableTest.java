@@ -0,0 +1,145 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Class CoordTableTest: JUnit4 Testing Class for Class CoordTable
+ * @author JF
+ */
+public class CoordTableTest {
+    /** Method packTest(): Test packing cells into longs and back
+     */
+    @Test
+    public void packTest() {
+        int[] values = {0, 1, -1, 7, -7, 65535, -65536, Integer.MAX_VALUE,
+            Integer.MIN_VALUE};
+        for (int x : values) {
+            for (int y : values) {
+                long p = CoordTable.pack(x, y);
+                assertEquals(x, CoordTable.x(p));
+                assertEquals(y, CoordTable.y(p));
+            }
+        }
+        assertTrue(CoordTable.pack(0, -1) != CoordTable.pack(-1, 0));
+    }
+
+    /** Method basicTest(): Test putting, finding and removing a few rooms
+     */
+    @Test
+    public void basicTest() {
+        CoordTable t = new CoordTable();
+        Room a = new Room("a");
+        Room b = new Room("b");
+        assertEquals(0, t.size());
+        assertFalse(t.contains(a));
+        assertFalse(t.contains(null));
+        assertNull(t.at(0, 0));
+        t.put(a, 0, 0);
+        t.put(b, -3, 4);
+        assertEquals(2, t.size());
+        assertTrue(t.contains(a));
+        assertEquals(-3, t.getX(b));
+        assertEquals(4, t.getY(b));
+        assertEquals(CoordTable.pack(-3, 4), t.get(b));
+        assertSame(a, t.at(0, 0));
+        assertSame(b, t.at(-3, 4));
+        assertNull(t.at(4, -3));
+        t.put(a, 5, 5);         // moving a room frees its old cell
+        assertEquals(2, t.size());
+        assertNull(t.at(0, 0));
+        assertSame(a, t.at(5, 5));
+        assertTrue(t.remove(b));
+        assertFalse(t.remove(b));
+        assertFalse(t.contains(b));
+        assertNull(t.at(-3, 4));
+        assertEquals(1, t.size());
+    }
+
+    /** Method sameCellTest(): Test two rooms put on the same cell
+     */
+    @Test
+    public void sameCellTest() {
+        CoordTable t = new CoordTable();
+        Room a = new Room("a");
+        Room b = new Room("b");
+        t.put(a, 1, 1);
+        t.put(b, 1, 1);
+        assertTrue(t.contains(a));
+        assertTrue(t.contains(b));
+        Room found = t.at(1, 1);
+        assertTrue((found == a) || (found == b));
+        t.remove(found);
+        assertTrue(t.contains((found == a) ? b : a));
+        assertEquals(1, t.size());
+    }
+
+    /** Method randomTest(): Test random changes against a HashMap, with
+     * enough rooms for the table to grow several times
+     */
+    @Test
+    public void randomTest() {
+        Random random = new Random(11);
+        List<Room> rooms = new ArrayList<Room>();
+        for (int i = 0; i < 3000; ++i) {
+            rooms.add(new Room("r" + i));
+        }
+        CoordTable t = new CoordTable(4);
+        Map<Room, Long> cellOf = new HashMap<Room, Long>();
+        Map<Long, Room> roomAt = new HashMap<Long, Room>();
+        for (int step = 0; step < 40000; ++step) {
+            Room r = rooms.get(random.nextInt(rooms.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(cellOf.containsKey(r), t.remove(r));
+                Long old = cellOf.remove(r);
+                if (old != null) {
+                    roomAt.remove(old);
+                }
+            } else {
+                int x = random.nextInt(120) - 60;
+                int y = random.nextInt(120) - 60;
+                long p = CoordTable.pack(x, y);
+                if (roomAt.containsKey(p)) {
+                    continue;       // keep one room per cell
+                }
+                t.put(r, x, y);
+                Long old = cellOf.put(r, p);
+                if (old != null) {
+                    roomAt.remove(old);
+                }
+                roomAt.put(p, r);
+            }
+            if (step % 1000 == 0) {
+                check(t, rooms, cellOf, roomAt);
+            }
+        }
+        check(t, rooms, cellOf, roomAt);
+    }
+
+    /** Method check(): Test a table against the rooms and cells it should
+     * hold
+     */
+    private static void check(CoordTable t, List<Room> rooms,
+            Map<Room, Long> cellOf, Map<Long, Room> roomAt) {
+        assertEquals(cellOf.size(), t.size());
+        for (Room r : rooms) {
+            assertEquals(cellOf.containsKey(r), t.contains(r));
+            if (cellOf.containsKey(r)) {
+                long p = cellOf.get(r);
+                assertEquals(p, t.get(r));
+                assertSame(r, t.at(CoordTable.x(p), CoordTable.y(p)));
+            }
+        }
+        for (int x = -61; x <= 61; ++x) {
+            for (int y = -61; y <= 61; ++y) {
+                assertSame(roomAt.get(CoordTable.pack(x, y)), t.at(x, y));
+            }
+        }
+        Map<Room, Long> seen = new HashMap<Room, Long>();
+        t.forEach((r, x, y) ->
+                assertNull(seen.put(r, CoordTable.pack(x, y))));
+        assertEquals(cellOf, seen);
+    }
+}
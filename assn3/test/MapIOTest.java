@@ -0,0 +1,151 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+/** Class MapIOTest: JUnit4 Testing Class for saving and loading maps with
+ * Class MapIO
+ * @author JF
+ */
+public class MapIOTest {
+    /** Method tempMap(): A fresh filename for a map, removed (along with
+     * its journal and index) when the tests finish
+     */
+    static String tempMap() throws IOException {
+        File f = File.createTempFile("maptest", ".map");
+        f.deleteOnExit();
+        new File(f.getPath() + ".journal").deleteOnExit();
+        new File(f.getPath() + ".idx").deleteOnExit();
+        return f.getPath();
+    }
+
+    /** Method smallMap(): Three rooms in a row, with an Explorer and a
+     * Treasure in the middle one
+     */
+    static Room smallMap() throws CrawlException {
+        Room r1 = new Room("r1");
+        Room r2 = new Room("r2");
+        Room r3 = new Room("r3");
+        Room.makeExitPair(r1, r2, "East", "West");
+        Room.makeExitPair(r2, r3, "North", "South");
+        r2.enter(new Explorer("me", "the explorer", 7));
+        r2.enter(new Treasure("gold", 2.5));
+        return r1;
+    }
+
+    /** Method checkSmallMap(): Check the result of loading smallMap()
+     */
+    static void checkSmallMap(Object[] loaded) {
+        assertNotNull(loaded);
+        assertEquals("E;7;me;the explorer", ((Thing) loaded[0]).repr());
+        Room r1 = (Room) loaded[1];
+        assertEquals("r1", r1.getDescription());
+        Room r2 = r1.getExits().get("East");
+        assertEquals("r2", r2.getDescription());
+        assertSame(r1, r2.getExits().get("West"));
+        assertEquals("r3", r2.getExits().get("North").getDescription());
+        /* The player is left for the caller to place */
+        assertEquals(1, r2.getContents().size());
+        assertEquals("gold", r2.getContents().get(0).getShortDescription());
+    }
+
+    /** Method chain(): n rooms in a row
+     */
+    static Room chain(int n) throws CrawlException {
+        Room first = new Room("r0");
+        Room last = first;
+        for (int i = 1; i < n; ++i) {
+            Room next = new Room("r" + i);
+            Room.makeExitPair(last, next, "East", "West");
+            last = next;
+        }
+        return first;
+    }
+
+    /** Method saveLoadTest(): Test saveMap() then loadMap()
+     */
+    @Test
+    public void saveLoadTest() throws IOException, CrawlException {
+        String name = tempMap();
+        assertTrue(MapIO.saveMap(smallMap(), name));
+        checkSmallMap(MapIO.loadMap(name));
+    }
+
+    /** Method parseTest(): Test loading a map file written by hand, with
+     * no Player in it
+     */
+    @Test
+    public void parseTest() throws IOException {
+        String name = tempMap();
+        Writer w = new FileWriter(name);
+        try {
+            w.write("2\n#1\n#2\n1\n1 North\n1\n0 South\n1\n"
+                    + "$;2.00000;coin\n0\n");
+        } finally {
+            w.close();
+        }
+        Object[] loaded = MapIO.loadMap(name);
+        assertNotNull(loaded);
+        assertNull(loaded[0]);
+        Room r1 = (Room) loaded[1];
+        assertEquals("#1", r1.getDescription());
+        Room r2 = r1.getExits().get("North");
+        assertEquals("#2", r2.getDescription());
+        assertSame(r1, r2.getExits().get("South"));
+        assertEquals("coin", r1.getContents().get(0).getShortDescription());
+        assertTrue(r2.getContents().isEmpty());
+    }
+
+    /** Method compressTest(): Test saving and loading a compressed map,
+     * by each of the loaders
+     */
+    @Test
+    public void compressTest() throws IOException, CrawlException {
+        String name = tempMap();
+        assertTrue(MapIO.saveMap(smallMap(), name, MapIO.SaveOption.COMPRESS));
+        checkSmallMap(MapIO.loadMap(name));
+        checkSmallMap(MapIO.loadMapped(name));
+        checkSmallMap(MapIO.loadParallel(name));
+        RandomAccessFile raf = new RandomAccessFile(name, "r");
+        try {
+            assertEquals(0x1f, raf.read());   /* gzip magic */
+            assertEquals(0x8b, raf.read());
+        } finally {
+            raf.close();
+        }
+        assertNull(MapIO.deserializeMap(name));
+        assertTrue(MapIO.serializeMap(smallMap(), name,
+                MapIO.SaveOption.COMPRESS));
+        Room r = MapIO.deserializeMap(name);
+        assertEquals("r2", r.getExits().get("East").getDescription());
+    }
+
+    /** Method compressOptionsTest(): Test options which can not be used
+     * with compression
+     */
+    @Test
+    public void compressOptionsTest() throws IOException, CrawlException {
+        String name = tempMap();
+        assertFalse(MapIO.saveMap(smallMap(), name,
+                MapIO.SaveOption.COMPRESS, MapIO.SaveOption.SECTION_OFFSETS));
+        assertFalse(MapIO.saveMap(smallMap(), name,
+                MapIO.SaveOption.COMPRESS, MapIO.SaveOption.ROOM_INDEX));
+        assertFalse(MapIO.serializeMap(smallMap(), name,
+                MapIO.SaveOption.SECTION_OFFSETS));
+        assertEquals(0, new File(name).length());
+    }
+
+    /** Method loadMissingTest(): Test loading a file which is not there
+     * or is not a map
+     */
+    @Test
+    public void loadMissingTest() throws IOException {
+        String name = tempMap();
+        assertNull(MapIO.loadMap(name));
+        new File(name).delete();
+        assertNull(MapIO.loadMap(name));
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+
+/** Class MapLayoutTest: JUnit4 Testing Class for saving BoundsMapper
+ * layouts with maps (Class MapLayout)
+ * @author JF
+ */
+public class MapLayoutTest {
+    /** Method oddMap(): A grid with some rooms off to the side, reached by
+     * exits which are not compass directions or only go one way
+     */
+    static Room oddMap() throws CrawlException {
+        Room root = PagedWorldTest.grid(5);
+        Room attic = new Room("attic");
+        Room.makeExitPair(root, attic, "Up", "Down");
+        Room lane = new Room("lane");
+        Room.makeExitPair(attic, lane, "West", "East");
+        Room pit = new Room("pit");
+        root.getExits().get("South").addExit("Down", pit);
+        pit.addExit("Out", root);
+        return root;
+    }
+
+    /** Method sameLayout(): Check two mappers hold the same coordinates
+     * and bounds for every room reachable from root
+     */
+    static void sameLayout(BoundsMapper expected, BoundsMapper actual,
+            Room root) {
+        assertEquals(expected.xMin, actual.xMin);
+        assertEquals(expected.xMax, actual.xMax);
+        assertEquals(expected.yMin, actual.yMin);
+        assertEquals(expected.yMax, actual.yMax);
+        assertEquals(expected.coords.size(), actual.coords.size());
+        for (Room r : new ReachableRooms(root)) {
+            assertEquals(r.getDescription(), expected.coords.contains(r),
+                    actual.coords.contains(r));
+            if (expected.coords.contains(r)) {
+                assertEquals(r.getDescription(), expected.coords.get(r),
+                        actual.coords.get(r));
+            }
+        }
+    }
+
+    /** Method layoutTest(): Test that a saved layout matches a walk of the
+     * loaded map
+     */
+    @Test
+    public void layoutTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(oddMap(), name, MapIO.SaveOption.LAYOUT));
+        for (Object[] loaded : new Object[][] {MapIO.loadMap(name),
+                MapIO.loadMapped(name), MapIO.loadParallel(name)}) {
+            assertNotNull(loaded);
+            Room root = (Room) loaded[1];
+            BoundsMapper saved = (BoundsMapper) loaded[2];
+            assertNotNull(saved);
+            BoundsMapper walked = new BoundsMapper(root);
+            walked.walk();
+            sameLayout(walked, saved, root);
+        }
+    }
+
+    /** Method noLayoutTest(): Test maps saved without a layout, or changed
+     * since it was saved
+     */
+    @Test
+    public void noLayoutTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room root = oddMap();
+        assertTrue(MapIO.saveMap(root, name));
+        assertNull(MapIO.loadMap(name)[2]);
+
+        assertTrue(MapIO.saveMap(root, name, MapIO.SaveOption.LAYOUT));
+        SaveTracker st = SaveTracker.open(name);
+        Room extra = new Room("extra");
+        Room.makeExitPair(st.getRoot(), extra, "North", "South");
+        assertTrue(st.saveChanges());
+        assertTrue(st.close());
+        Object[] loaded = MapIO.loadMap(name);
+        assertEquals("extra",
+                ((Room) loaded[1]).getExits().get("North").getDescription());
+        assertNull(loaded[2]);
+    }
+}
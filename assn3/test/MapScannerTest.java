@@ -0,0 +1,156 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+
+/** Class MapScannerTest: JUnit4 Testing Class for reading maps without
+ * building them with MapIO.scan (Class MapScanner)
+ * @author JF
+ */
+public class MapScannerTest {
+    /** Class Recorder: Writes down everything it is told, one line each
+     */
+    private static class Recorder implements MapVisitor {
+        final StringBuilder log = new StringBuilder();
+
+        @Override
+        public void start(int rooms) {
+            log.append("start ").append(rooms).append('\n');
+        }
+
+        @Override
+        public void room(int id, CharSequence description) {
+            log.append("room ").append(id).append(' ').append(description)
+                    .append('\n');
+        }
+
+        @Override
+        public void exit(int from, CharSequence label, int to) {
+            log.append("exit ").append(from).append(' ').append(label)
+                    .append(' ').append(to).append('\n');
+        }
+
+        @Override
+        public void thing(int room, char tag, ThingReader fields) {
+            log.append("thing ").append(room).append(' ').append(tag);
+            switch (tag) {
+            case '$':
+                log.append(' ').append(fields.doubleField(1)).append(' ')
+                        .append(fields.text(2));
+                break;
+            case 'C':
+                log.append(' ').append(fields.doubleField(1)).append(' ')
+                        .append(fields.intField(2)).append(' ')
+                        .append(fields.text(3)).append(' ')
+                        .append(fields.text(4));
+                break;
+            case 'E':
+                log.append(' ').append(fields.intField(1)).append(' ')
+                        .append(fields.text(2)).append(' ')
+                        .append(fields.text(3));
+                break;
+            default:
+                log.append(' ').append(fields.fieldCount());
+                break;
+            }
+            log.append('\n');
+        }
+
+        @Override
+        public void end() {
+            log.append("end\n");
+        }
+    }
+
+    /** Method expected(): What a Recorder should be told about the map
+     * reachable from root
+     */
+    private static String expected(Room root) {
+        List<Room> rooms = MapIO.roomSequence(root);
+        Map<Room, Integer> ids = MapIO.roomIds(rooms);
+        Recorder r = new Recorder();
+        r.start(rooms.size());
+        for (int i = 0; i < rooms.size(); ++i) {
+            r.room(i, rooms.get(i).getDescription());
+        }
+        for (int i = 0; i < rooms.size(); ++i) {
+            for (Map.Entry<String, Room> e
+                    : rooms.get(i).getExits().entrySet()) {
+                r.exit(i, e.getKey(), ids.get(e.getValue()));
+            }
+        }
+        for (int i = 0; i < rooms.size(); ++i) {
+            for (Thing t : rooms.get(i).getContents()) {
+                final String[] parts = t.repr().split(";");
+                r.thing(i, parts[0].charAt(0), new ThingReader() {
+                    public int fieldCount() {
+                        return parts.length;
+                    }
+
+                    public String text(int f) {
+                        return parts[f];
+                    }
+
+                    public int intField(int f) {
+                        return Integer.parseInt(parts[f]);
+                    }
+
+                    public double doubleField(int f) {
+                        return Double.parseDouble(parts[f]);
+                    }
+                });
+            }
+        }
+        r.end();
+        return r.log.toString();
+    }
+
+    /** Method testMap(): smallMap() with a Critter in the last room
+     */
+    private static Room testMap() throws CrawlException {
+        Room root = MapIOTest.smallMap();
+        root.getExits().get("East").getExits().get("North")
+                .enter(new Critter("cat", "a cat", 14.5, 2));
+        return root;
+    }
+
+    /** Method scanTest(): Test scanning text, compressed and binary maps
+     */
+    @Test
+    public void scanTest() throws IOException, CrawlException {
+        Room root = testMap();
+        String name = MapIOTest.tempMap();
+        for (int format = 0; format < 3; ++format) {
+            if (format == 0) {
+                assertTrue(MapIO.saveMap(root, name));
+            } else if (format == 1) {
+                assertTrue(MapIO.saveMap(root, name,
+                        MapIO.SaveOption.COMPRESS));
+            } else {
+                assertTrue(MapIO.saveBinary(root, name));
+            }
+            Recorder r = new Recorder();
+            assertTrue(MapIO.scan(name, r));
+            assertEquals(expected(root), r.log.toString());
+        }
+    }
+
+    /** Method badTest(): Test scanning a map which has been cut short
+     */
+    @Test
+    public void badTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(testMap(), name));
+        RandomAccessFile raf = new RandomAccessFile(name, "rw");
+        try {
+            raf.setLength(raf.length() / 2);
+        } finally {
+            raf.close();
+        }
+        Recorder r = new Recorder();
+        assertFalse(MapIO.scan(name, r));
+        assertFalse(r.log.toString().contains("end"));
+    }
+}
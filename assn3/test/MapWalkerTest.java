@@ -0,0 +1,126 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/** Class MapWalkerTest: JUnit4 Testing Class for Class MapWalker
+ * @author JF
+ */
+public class MapWalkerTest {
+    /** Method randomMap(): n rooms joined by one way exits at random, all
+     * reachable from the first (which is returned)
+     */
+    static Room randomMap(long seed, int n, int extraExits)
+            throws CrawlException {
+        Random random = new Random(seed);
+        Room[] rooms = new Room[n];
+        for (int i = 0; i < n; ++i) {
+            rooms[i] = new Room("r" + i);
+            if (i > 0) {
+                rooms[random.nextInt(i)].addExit("to" + i, rooms[i]);
+            }
+        }
+        for (int k = 0; k < extraExits; ++k) {
+            rooms[random.nextInt(n)].addExit("x" + k,
+                    rooms[random.nextInt(n)]);
+        }
+        return rooms[0];
+    }
+
+    /** Method reference(): Rooms in the order the original MapWalker
+     * visited them (queueing every exit and skipping repeats)
+     */
+    static List<Room> reference(Room start) {
+        List<Room> order = new ArrayList<>();
+        Set<Room> visited = new HashSet<>();
+        LinkedList<Room> toVisit = new LinkedList<>();
+        toVisit.add(start);
+        while (!toVisit.isEmpty()) {
+            Room r = toVisit.removeFirst();
+            if (visited.add(r)) {
+                toVisit.addAll(r.getExits().values());
+                order.add(r);
+            }
+        }
+        return order;
+    }
+
+    /** Class Recorder: Records the order rooms are visited in and checks
+     * hasVisited() as it goes
+     */
+    private static class Recorder extends MapWalker {
+        final List<Room> order = new ArrayList<>();
+
+        Recorder(Room start) {
+            super(start);
+        }
+
+        @Override
+        protected void visit(Room room) {
+            assertTrue(hasVisited(room));
+            order.add(room);
+        }
+    }
+
+    /** Method orderTest(): Test that rooms are visited once each, in the
+     * same order as before visits were tracked by id
+     */
+    @Test
+    public void orderTest() throws CrawlException {
+        Room[] maps = {PagedWorldTest.grid(12), MapLayoutTest.oddMap(),
+            randomMap(1, 500, 1500), randomMap(2, 2000, 100),
+            new Room("alone")};
+        for (Room start : maps) {
+            Recorder walker = new Recorder(start);
+            walker.walk();
+            assertEquals(reference(start), walker.order);
+        }
+    }
+
+    /** Method hasVisitedTest(): Test hasVisited() after a walk, including
+     * rooms which are not reachable and rooms made since
+     */
+    @Test
+    public void hasVisitedTest() throws CrawlException {
+        Room start = MapIOTest.chain(5);
+        Room other = new Room("other");
+        MapWalker walker = new MapWalker(start);
+        walker.walk();
+        for (Room r : reference(start)) {
+            assertTrue(walker.hasVisited(r));
+        }
+        assertFalse(walker.hasVisited(other));
+        assertFalse(walker.hasVisited(null));
+        Room later = new Room("later");
+        start.addExit("Later", later);
+        assertFalse(walker.hasVisited(later));
+        walker.walk();
+        assertTrue(walker.hasVisited(later));
+    }
+
+    /** Method sparseIdTest(): Test a map whose rooms were made far apart,
+     * with many other rooms made in between
+     */
+    @Test
+    public void sparseIdTest() throws CrawlException {
+        Room start = new Room("start");
+        Room last = start;
+        for (int i = 0; i < 5; ++i) {
+            for (int j = 0; j < 100000; ++j) {
+                new Room("junk");
+            }
+            Room next = new Room("r" + i);
+            last.addExit("Next", next);
+            last = next;
+        }
+        last.addExit("Back", start);
+        Recorder walker = new Recorder(start);
+        walker.walk();
+        assertEquals(reference(start), walker.order);
+        assertEquals(6, walker.order.size());
+    }
+}
@@ -0,0 +1,50 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+
+/** Class MappedMapParserTest: JUnit4 Testing Class for loading maps with
+ * MapIO.loadMapped (Class MappedMapParser)
+ * @author JF
+ */
+public class MappedMapParserTest {
+    /** Method loadTest(): Test saveMap() then loadMapped()
+     */
+    @Test
+    public void loadTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.smallMap(), name));
+        MapIOTest.checkSmallMap(MapIO.loadMapped(name));
+    }
+
+    /** Method descriptionTest(): Test that descriptions which are decoded
+     * later (including ones which are not plain ASCII) match loadMap()
+     */
+    @Test
+    public void descriptionTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room first = MapIOTest.chain(300);
+        first.setDescription("caf\u00e9 \u2603");
+        first.getExits().get("East").setDescription("");
+        assertTrue(MapIO.saveMap(first, name));
+        Room mapped = (Room) MapIO.loadMapped(name)[1];
+        Room loaded = (Room) MapIO.loadMap(name)[1];
+        while (loaded != null) {
+            assertEquals(loaded.getDescription(), mapped.getDescription());
+            loaded = loaded.getExits().get("East");
+            mapped = mapped.getExits().get("East");
+        }
+        assertNull(mapped);
+    }
+
+    /** Method loadMissingTest(): Test loading a file which is not there
+     * or is not a map
+     */
+    @Test
+    public void loadMissingTest() throws IOException {
+        String name = MapIOTest.tempMap();
+        assertNull(MapIO.loadMapped(name));
+        new File(name).delete();
+        assertNull(MapIO.loadMapped(name));
+    }
+}
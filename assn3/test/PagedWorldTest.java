@@ -0,0 +1,164 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/** Class PagedWorldTest: JUnit4 Testing Class for Class PagedWorld
+ * @author JF
+ */
+public class PagedWorldTest {
+    /** Rooms in the maps used here (more than the smallest budget) */
+    private static final int ROOMS = PagedWorld.MIN_BUDGET * 4;
+    /** Width and height of the grid used here */
+    private static final int SIDE = 30;
+
+    /** Method grid(): side by side rooms, each joined to its neighbours,
+     * so there are many ways round to each room
+     */
+    static Room grid(int side) throws CrawlException {
+        Room[][] rooms = new Room[side][side];
+        for (int x = 0; x < side; ++x) {
+            for (int y = 0; y < side; ++y) {
+                rooms[x][y] = new Room(x + "," + y);
+                if (x > 0) {
+                    Room.makeExitPair(rooms[x - 1][y], rooms[x][y], "East",
+                            "West");
+                }
+                if (y > 0) {
+                    Room.makeExitPair(rooms[x][y - 1], rooms[x][y], "South",
+                            "North");
+                }
+            }
+        }
+        return rooms[0][0];
+    }
+
+    /** Class CountingWalker: Counts the rooms it visits and which ones
+     * they were, collecting garbage every so often so that the world
+     * forgets rooms during the walk
+     */
+    private static class CountingWalker extends MapWalker {
+        int visits;
+        Set<String> seen = new HashSet<>();
+
+        CountingWalker(Room start) {
+            super(start);
+        }
+
+        @Override
+        protected void visit(Room room) {
+            ++visits;
+            seen.add(room.getDescription());
+            assertTrue(visits <= SIDE * SIDE);
+            if (visits % 50 == 0) {
+                System.gc();
+            }
+        }
+    }
+
+    /** Method forgetTest(): Test walking a paged map with loops while the
+     * world forgets rooms, which should still see each room once
+     */
+    @Test
+    public void forgetTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(grid(SIDE), name));
+        PagedWorld w = PagedWorld.open(name, PagedWorld.MIN_BUDGET);
+        assertNotNull(w);
+        CountingWalker walker = new CountingWalker(w.getRoot());
+        walker.walk();
+        assertEquals(SIDE * SIDE, walker.visits);
+        assertEquals(SIDE * SIDE, walker.seen.size());
+
+        Set<Integer> ids = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        int count = 0;
+        for (Room r : new ReachableRooms(w.getRoot())) {
+            ++count;
+            ids.add(r.getId());
+            seen.add(r.getDescription());
+            assertTrue(count <= SIDE * SIDE);
+            if (count % 50 == 0) {
+                System.gc();
+            }
+        }
+        assertEquals(SIDE * SIDE, count);
+        assertEquals(SIDE * SIDE, ids.size());
+        assertEquals(SIDE * SIDE, seen.size());
+        assertTrue(w.close());
+    }
+
+    /** Method walkTest(): Test walking a paged map, which should reach
+     * every room while keeping few of them in memory
+     */
+    @Test
+    public void walkTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.chain(ROOMS), name));
+        PagedWorld w = PagedWorld.open(name, PagedWorld.MIN_BUDGET);
+        assertNotNull(w);
+        assertNull(w.getPlayer());
+        int count = 0;
+        for (Room r : new ReachableRooms(w.getRoot())) {
+            ++count;
+        }
+        assertEquals(ROOMS, count);
+        assertTrue(w.getResidentCount() <= PagedWorld.MIN_BUDGET);
+        Room r = w.getRoot();
+        for (int i = 0; i < ROOMS - 1; ++i) {
+            assertEquals("r" + i, r.getDescription());
+            r = r.getExits().get("East");
+        }
+        assertEquals("r" + (ROOMS - 1), r.getDescription());
+        assertTrue(w.close());
+    }
+
+    /** Method changeTest(): Test that changes to rooms which are dropped
+     * from memory are kept, and seen by loadMap once the world is closed
+     */
+    @Test
+    public void changeTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.chain(ROOMS), name));
+        PagedWorld w = PagedWorld.open(name, PagedWorld.MIN_BUDGET);
+        Room r = w.getRoot();
+        r.setDescription("first");
+        for (int i = 0; i < ROOMS - 1; ++i) {
+            r = r.getExits().get("East");
+        }
+        r.setDescription("last");
+        assertEquals("first", w.getRoot().getDescription());
+        assertTrue(w.close());
+
+        Object[] loaded = MapIO.loadMap(name);
+        assertNotNull(loaded);
+        r = (Room) loaded[1];
+        assertEquals("first", r.getDescription());
+        for (int i = 0; i < ROOMS - 1; ++i) {
+            r = r.getExits().get("East");
+        }
+        assertEquals("last", r.getDescription());
+    }
+
+    /** Method saveTest(): Test saving a paged map in full, with the Player
+     * placed back in it
+     */
+    @Test
+    public void saveTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        String copy = MapIOTest.tempMap();
+        String binary = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.smallMap(), name,
+                MapIO.SaveOption.ROOM_INDEX));
+        PagedWorld w = PagedWorld.open(name, PagedWorld.MIN_BUDGET);
+        assertNotNull(w);
+        Room r2 = w.getRoot().getExits().get("East");
+        r2.enter(w.getPlayer());
+        assertTrue(MapIO.saveMap(w.getRoot(), copy));
+        assertTrue(MapIO.saveBinary(w.getRoot(), binary));
+        assertTrue(w.close());
+        MapIOTest.checkSmallMap(MapIO.loadMap(copy));
+        MapIOTest.checkSmallMap(MapIO.loadBinary(binary));
+    }
+}
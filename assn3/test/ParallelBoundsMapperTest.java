@@ -0,0 +1,132 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/** Class ParallelBoundsMapperTest: JUnit4 Testing Class for Class
+ * ParallelBoundsMapper, checking it against BoundsMapper
+ * @author JF
+ */
+public class ParallelBoundsMapperTest {
+    private static final String[] LABELS = {"North", "South", "East",
+        "West", "Up", "Down"};
+    private static final String[] BACK = {"South", "North", "West",
+        "East", "Down", "Up"};
+
+    /** Method tree(): A random tree of n rooms, each joined to its parent
+     * by a compass exit (or Up/Down), with an exit back if paired is set
+     */
+    private static Room tree(long seed, int n, boolean paired)
+            throws CrawlException {
+        Random random = new Random(seed);
+        List<Room> rooms = new ArrayList<Room>();
+        rooms.add(new Room("t0"));
+        while (rooms.size() < n) {
+                // join to a recent room now and then, for long branches
+            int p = random.nextBoolean() ? random.nextInt(rooms.size())
+                    : Math.max(0, rooms.size() - 1 - random.nextInt(3));
+            Room parent = rooms.get(p);
+            int d = random.nextInt(LABELS.length);
+            if (parent.getExits().containsKey(LABELS[d])) {
+                continue;
+            }
+            Room child = new Room("t" + rooms.size());
+            if (paired) {
+                Room.makeExitPair(parent, child, LABELS[d], BACK[d]);
+            } else {
+                parent.addExit(LABELS[d], child);
+            }
+            rooms.add(child);
+        }
+        return rooms.get(0);
+    }
+
+    /** Method compare(): Test that ParallelBoundsMapper lays a map out
+     * the same as BoundsMapper, on a few pools
+     */
+    private static void compare(Room root, ForkJoinPool[] pools) {
+        BoundsMapper expected = new BoundsMapper(root);
+        expected.walk();
+        for (ForkJoinPool pool : pools) {
+            ParallelBoundsMapper actual = new ParallelBoundsMapper(root, pool);
+            actual.walk();
+            MapLayoutTest.sameLayout(expected, actual, root);
+            for (Room r : new ReachableRooms(root)) {
+                assertTrue(actual.hasVisited(r));
+            }
+            actual.walk();      // walking again starts afresh
+            MapLayoutTest.sameLayout(expected, actual, root);
+        }
+    }
+
+    /** Method treeTest(): Test trees, with and without exits back
+     */
+    @Test
+    public void treeTest() throws CrawlException {
+        ForkJoinPool[] pools = {new ForkJoinPool(4), new ForkJoinPool(1),
+            ForkJoinPool.commonPool()};
+        try {
+            for (long seed = 1; seed <= 4; ++seed) {
+                compare(tree(seed, 20000, true), pools);
+                compare(tree(seed, 5000, false), pools);
+            }
+            compare(new Room("alone"), pools);
+        } finally {
+            pools[0].shutdown();
+            pools[1].shutdown();
+        }
+    }
+
+    /** Method gridTest(): Test maps whose exits come in pairs which agree
+     * with each other
+     */
+    @Test
+    public void gridTest() throws CrawlException {
+        ForkJoinPool[] pools = {new ForkJoinPool(4)};
+        try {
+            compare(PagedWorldTest.grid(150), pools);
+            compare(MapLayoutTest.oddMap(), pools);
+        } finally {
+            pools[0].shutdown();
+        }
+    }
+
+    /** Method pagedTest(): Test a freshly opened PagedWorld, whose rooms
+     * are read in as they are reached
+     */
+    @Test
+    public void pagedTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room start = tree(9, 3000, true);
+        assertTrue(MapIO.saveMap(start, name));
+        BoundsMapper expected = new BoundsMapper(start);
+        expected.walk();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        PagedWorld w = PagedWorld.open(name, 100000);
+        try {
+            ParallelBoundsMapper actual = new ParallelBoundsMapper(
+                    w.getRoot(), pool);
+            actual.walk();
+            assertEquals(expected.xMin, actual.xMin);
+            assertEquals(expected.xMax, actual.xMax);
+            assertEquals(expected.yMin, actual.yMin);
+            assertEquals(expected.yMax, actual.yMax);
+            assertEquals(3000, actual.coords.size());
+            List<Room> a = MapWalkerTest.reference(start);
+            List<Room> b = MapWalkerTest.reference(w.getRoot());
+            assertEquals(a.size(), b.size());
+            for (int i = 0; i < a.size(); ++i) {
+                assertEquals(a.get(i).getDescription(),
+                        b.get(i).getDescription());
+                assertEquals(expected.coords.get(a.get(i)),
+                        actual.coords.get(b.get(i)));
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(w.close());
+        }
+    }
+}
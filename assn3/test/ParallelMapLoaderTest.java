@@ -0,0 +1,102 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/** Class ParallelMapLoaderTest: JUnit4 Testing Class for loading maps in
+ * parallel with MapIO.loadParallel (Classes ParallelMapLoader and
+ * SectionIndex)
+ * @author JF
+ */
+public class ParallelMapLoaderTest {
+    /** Rooms in the maps used here (more than two blocks) */
+    private static final int ROOMS = SectionIndex.BLOCK * 2 + 10;
+
+    /** Method bigMap(): A chain of ROOMS rooms which loops back to the
+     * start, with Treasure in every 100th room
+     */
+    private static Room bigMap() throws CrawlException {
+        Room first = MapIOTest.chain(ROOMS);
+        Room r = first;
+        for (int i = 0; i < ROOMS - 1; ++i) {
+            if (i % 100 == 0) {
+                r.enter(new Treasure("t" + i, i));
+            }
+            r = r.getExits().get("East");
+        }
+        r.addExit("Loop", first);
+        return first;
+    }
+
+    /** Method checkBigMap(): Check the result of loading bigMap()
+     */
+    private static void checkBigMap(Object[] loaded) {
+        assertNotNull(loaded);
+        assertNull(loaded[0]);
+        Room first = (Room) loaded[1];
+        Room r = first;
+        for (int i = 0; i < ROOMS - 1; ++i) {
+            assertEquals("r" + i, r.getDescription());
+            assertEquals((i % 100 == 0) ? 1 : 0, r.getContents().size());
+            r = r.getExits().get("East");
+        }
+        assertEquals("r" + (ROOMS - 1), r.getDescription());
+        assertSame(first, r.getExits().get("Loop"));
+    }
+
+    /** Method loadTest(): Test loading a map saved with section offsets,
+     * both in parallel and by readers which ignore them
+     */
+    @Test
+    public void loadTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(bigMap(), name,
+                MapIO.SaveOption.SECTION_OFFSETS));
+        checkBigMap(MapIO.loadParallel(name));
+        checkBigMap(MapIO.loadMap(name));
+        checkBigMap(MapIO.loadMapped(name));
+    }
+
+    /** Method noOffsetsTest(): Test loadParallel() on a map saved without
+     * section offsets
+     */
+    @Test
+    public void noOffsetsTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(bigMap(), name));
+        checkBigMap(MapIO.loadParallel(name));
+        assertTrue(MapIO.saveMap(MapIOTest.smallMap(), name));
+        MapIOTest.checkSmallMap(MapIO.loadParallel(name));
+    }
+
+    /** Method indexTest(): Test the offsets read back from the trailer
+     */
+    @Test
+    public void indexTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.chain(ROOMS), name,
+                MapIO.SaveOption.SECTION_OFFSETS));
+        RandomAccessFile raf = new RandomAccessFile(name, "r");
+        try {
+            SectionIndex index = SectionIndex.read(raf.getChannel());
+            assertNotNull(index);
+            assertEquals(ROOMS, index.getRooms());
+            assertEquals(3, index.getBlocks());
+            for (int b = 0; b < index.getBlocks(); ++b) {
+                int room = index.firstRoom(b);
+                assertEquals(b * SectionIndex.BLOCK, room);
+                raf.seek(index.offset(SectionIndex.DESCRIPTIONS, b));
+                assertEquals("r" + room, raf.readLine());
+            }
+        } finally {
+            raf.close();
+        }
+        assertTrue(MapIO.saveMap(MapIOTest.chain(ROOMS), name));
+        raf = new RandomAccessFile(name, "r");
+        try {
+            assertNull(SectionIndex.read(raf.getChannel()));
+        } finally {
+            raf.close();
+        }
+    }
+}
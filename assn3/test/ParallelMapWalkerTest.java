@@ -0,0 +1,130 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/** Class ParallelMapWalkerTest: JUnit4 Testing Class for Class
+ * ParallelMapWalker
+ * @author JF
+ */
+public class ParallelMapWalkerTest {
+    /** Method maps(): Maps to walk, some big enough to be split up
+     */
+    private static Room[] maps() throws CrawlException {
+        return new Room[] {PagedWorldTest.grid(60), MapLayoutTest.oddMap(),
+            MapWalkerTest.randomMap(3, 5000, 15000),
+            MapWalkerTest.randomMap(4, 20000, 0), new Room("alone")};
+    }
+
+    /** Class Recorder: Records the rooms visited, from any thread
+     */
+    private static class Recorder extends ParallelMapWalker {
+        final List<Room> order = Collections.synchronizedList(
+                new ArrayList<Room>());
+
+        Recorder(Room start, boolean ordered, ForkJoinPool pool) {
+            super(start, ordered, pool);
+        }
+
+        @Override
+        protected void visit(Room room) {
+            assertTrue(hasVisited(room));
+            order.add(room);
+        }
+    }
+
+    /** Method orderedTest(): Test that ordered walks visit rooms in the
+     * same order as MapWalker, however many threads read the exits
+     */
+    @Test
+    public void orderedTest() throws CrawlException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Room start : maps()) {
+                List<Room> expected = MapWalkerTest.reference(start);
+                Recorder walker = new Recorder(start, true, pool);
+                walker.walk();
+                assertEquals(expected, walker.order);
+                walker = new Recorder(start, true, new ForkJoinPool(1));
+                walker.walk();
+                assertEquals(expected, walker.order);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Method unorderedTest(): Test that unordered walks visit every room
+     * exactly once
+     */
+    @Test
+    public void unorderedTest() throws CrawlException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Room start : maps()) {
+                List<Room> expected = MapWalkerTest.reference(start);
+                Recorder walker = new Recorder(start, false, pool);
+                walker.walk();
+                assertEquals(expected.size(), walker.order.size());
+                assertEquals(new HashSet<Room>(expected),
+                        new HashSet<Room>(walker.order));
+                for (Room r : expected) {
+                    assertTrue(walker.hasVisited(r));
+                }
+                assertFalse(walker.hasVisited(new Room("other")));
+                assertFalse(walker.hasVisited(null));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Method saveMapTest(): Test that saveMap, which finds rooms with an
+     * ordered walk, writes rooms in MapWalker order
+     */
+    @Test
+    public void saveMapTest() throws IOException, CrawlException {
+        Room start = MapWalkerTest.randomMap(5, 3000, 3000);
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(start, name));
+        assertEquals(MapWalkerTest.reference(start), MapIO.roomSequence(start));
+        Room loaded = (Room) MapIO.loadMap(name)[1];
+        List<Room> a = MapWalkerTest.reference(start);
+        List<Room> b = MapWalkerTest.reference(loaded);
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); ++i) {
+            assertEquals(a.get(i).getDescription(), b.get(i).getDescription());
+        }
+    }
+
+    /** Method pagedTest(): Test walking a paged map, whose rooms are read
+     * in on the walking thread as they are reached
+     */
+    @Test
+    public void pagedTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(PagedWorldTest.grid(20), name));
+        PagedWorld w = PagedWorld.open(name, PagedWorld.MIN_BUDGET);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (boolean ordered : new boolean[] {true, false}) {
+                Recorder walker = new Recorder(w.getRoot(), ordered, pool);
+                walker.walk();
+                Set<String> seen = new HashSet<>();
+                for (Room r : walker.order) {
+                    seen.add(r.getDescription());
+                }
+                assertEquals(400, walker.order.size());
+                assertEquals(400, seen.size());
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(w.close());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/** Class ReachabilityTest: JUnit4 Testing Class for Class Reachability
+ * @author JF
+ */
+public class ReachabilityTest {
+    /** Class Recorder: Keeps its own set of rooms from reached and lost
+     */
+    private static class Recorder extends Reachability {
+        // no initialiser: reached is called before it would run
+        Set<Room> live;
+        int calls;
+
+        Recorder(Room root) {
+            super(root);
+        }
+
+        @Override
+        protected void reached(Room room) {
+            if (live == null) {
+                live = new HashSet<Room>();
+            }
+            assertTrue(isReachable(room));
+            assertTrue(live.add(room));
+            ++calls;
+        }
+
+        @Override
+        protected void lost(Room room) {
+            assertFalse(isReachable(room));
+            assertTrue(live.remove(room));
+            ++calls;
+        }
+    }
+
+    /** Method check(): Test that the tracker agrees with a fresh walk
+     */
+    private static void check(Recorder tracker, List<Room> rooms) {
+        Set<Room> fresh = new HashSet<Room>(
+                MapWalkerTest.reference(tracker.getRoot()));
+        assertEquals(fresh.size(), tracker.size());
+        assertEquals(fresh, tracker.live);
+        for (Room r : rooms) {
+            assertEquals(r.getDescription(), fresh.contains(r),
+                    tracker.isReachable(r));
+            if (fresh.contains(r) && (r != tracker.getRoot())) {
+                Room from = tracker.reachedFrom(r);
+                assertTrue(fresh.contains(from));
+                assertTrue(from.getExits().containsValue(r));
+            }
+        }
+    }
+
+    /** Method randomTest(): Test random changes to a map, some of which
+     * join on or cut off large parts of it
+     */
+    @Test
+    public void randomTest() throws CrawlException {
+        for (long seed = 1; seed <= 4; ++seed) {
+            Random random = new Random(seed);
+            List<Room> rooms = new ArrayList<Room>();
+            for (int i = 0; i < 300; ++i) {
+                rooms.add(new Room("r" + i));
+            }
+            int label = 0;
+            for (int i = 0; i < 200; ++i) {
+                rooms.get(random.nextInt(300)).addExit("e" + label++,
+                        rooms.get(random.nextInt(300)));
+            }
+            Recorder tracker = new Recorder(rooms.get(0));
+            check(tracker, rooms);
+            for (int step = 0; step < 1500; ++step) {
+                Room r = rooms.get(random.nextInt(300));
+                Map<String, Room> exits = r.getExits();
+                if (!exits.isEmpty() && random.nextInt(2) == 0) {
+                    List<String> labels = new ArrayList<String>(exits.keySet());
+                    r.removeExit(labels.get(random.nextInt(labels.size())));
+                } else if (random.nextInt(4) == 0) {
+                    Room.makeExitPair(r, rooms.get(random.nextInt(300)),
+                            "e" + label++, "e" + label++);
+                } else {
+                    r.addExit("e" + label++, rooms.get(random.nextInt(300)));
+                }
+                check(tracker, rooms);
+            }
+            tracker.close();
+        }
+    }
+
+    /** Method treeTest(): Test cutting a tree exit where the rooms below
+     * can still be reached another way, and where they can not
+     */
+    @Test
+    public void treeTest() throws CrawlException {
+        List<Room> rooms = new ArrayList<Room>();
+        Room start = MapIOTest.chain(6);
+        rooms.addAll(MapWalkerTest.reference(start));
+        Recorder tracker = new Recorder(start);
+        check(tracker, rooms);
+        Room r2 = rooms.get(2);
+        Room r3 = rooms.get(3);
+        Room r5 = rooms.get(5);
+        start.addExit("Jump", r5);
+        check(tracker, rooms);
+        int calls = tracker.calls;
+        r2.removeExit("East");          // r3 is still reached from r4
+        check(tracker, rooms);
+        assertEquals(calls, tracker.calls);
+        assertSame(rooms.get(4), tracker.reachedFrom(r3));
+        start.removeExit("Jump");       // r3, r4 and r5 are cut off
+        check(tracker, rooms);
+        assertEquals(3, tracker.size());
+        assertEquals(calls + 3, tracker.calls);
+        r3.addExit("Back", r2);         // r3 still can not be reached
+        check(tracker, rooms);
+        r2.addExit("East", r3);
+        check(tracker, rooms);
+        assertEquals(6, tracker.size());
+        tracker.close();
+    }
+
+    /** Method selfTest(): Test exits from a room to itself and repeated
+     * exits to the same room
+     */
+    @Test
+    public void selfTest() throws CrawlException {
+        Room a = new Room("a");
+        Room b = new Room("b");
+        List<Room> rooms = new ArrayList<Room>();
+        rooms.add(a);
+        rooms.add(b);
+        Recorder tracker = new Recorder(a);
+        a.addExit("Loop", a);
+        check(tracker, rooms);
+        a.addExit("One", b);
+        a.addExit("Two", b);
+        b.addExit("Loop", b);
+        check(tracker, rooms);
+        a.removeExit("One");
+        check(tracker, rooms);
+        assertTrue(tracker.isReachable(b));
+        a.removeExit("Two");
+        check(tracker, rooms);
+        assertFalse(tracker.isReachable(b));
+        a.removeExit("Loop");
+        check(tracker, rooms);
+        assertEquals(1, tracker.size());
+        assertFalse(tracker.isReachable(null));
+        tracker.close();
+    }
+
+    /** Method closeTest(): Test that a closed tracker stops listening to
+     * every room
+     */
+    @Test
+    public void closeTest() throws CrawlException {
+        Room start = PagedWorldTest.grid(15);
+        List<Room> rooms = MapWalkerTest.reference(start);
+        Recorder tracker = new Recorder(start);
+        assertEquals(225, tracker.calls);
+        tracker.close();
+        for (Room r : rooms) {
+            r.removeExit("East");
+            r.removeExit("South");
+        }
+        Room extra = new Room("extra");
+        start.addExit("Out", extra);
+        assertEquals(225, tracker.calls);
+        assertEquals(225, tracker.size());
+    }
+}
@@ -0,0 +1,185 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/** Class ReachableRoomsTest: JUnit4 Testing Class for Class ReachableRooms
+ * @author JF
+ */
+public class ReachableRoomsTest {
+    /** Method expected(): Rooms in MapWalker order, found with a plain
+     * breadth first search which keeps track of depths
+     */
+    private static List<Room> expected(Room start, int maxDepth,
+            Predicate<Room> stop) {
+        List<Room> found = new ArrayList<Room>();
+        Map<Room, Integer> depth = new HashMap<Room, Integer>();
+        LinkedList<Room> queue = new LinkedList<Room>();
+        depth.put(start, 0);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Room r = queue.removeFirst();
+            found.add(r);
+            int d = depth.get(r);
+            if ((d >= maxDepth) || ((stop != null) && stop.test(r))) {
+                continue;
+            }
+            for (Room e : r.getExits().values()) {
+                if (!depth.containsKey(e)) {
+                    depth.put(e, d + 1);
+                    queue.add(e);
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Method list(): Everything an Iterable hands out, in order
+     */
+    private static List<Room> list(Iterable<Room> rooms) {
+        List<Room> out = new ArrayList<Room>();
+        for (Room r : rooms) {
+            out.add(r);
+        }
+        return out;
+    }
+
+    /** Class Counted: Room which counts reads of its exits
+     */
+    private static class Counted extends Room {
+        private static final long serialVersionUID = 1L;
+
+        int reads;
+
+        Counted(String description) {
+            super(description);
+        }
+
+        @Override
+        public Map<String, Room> getExits() {
+            ++reads;
+            return super.getExits();
+        }
+    }
+
+    /** Method orderTest(): Test that every room is handed out once, in the
+     * same order as MapWalker
+     */
+    @Test
+    public void orderTest() throws CrawlException {
+        Room[] maps = {PagedWorldTest.grid(20), MapLayoutTest.oddMap(),
+            MapWalkerTest.randomMap(6, 3000, 6000), new Room("alone")};
+        for (Room start : maps) {
+            List<Room> ref = MapWalkerTest.reference(start);
+            ReachableRooms rooms = new ReachableRooms(start);
+            assertEquals(ref, list(rooms));
+            assertEquals(ref, list(rooms));     // each iterator walks again
+            assertEquals(ref, rooms.stream().collect(Collectors.toList()));
+        }
+    }
+
+    /** Method endTest(): Test the end of a walk
+     */
+    @Test
+    public void endTest() {
+        Iterator<Room> it = new ReachableRooms(new Room("alone")).iterator();
+        assertTrue(it.hasNext());
+        assertTrue(it.hasNext());
+        assertNotNull(it.next());
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail();
+        } catch (NoSuchElementException e) {
+        }
+    }
+
+    /** Method depthTest(): Test limiting how far the walk goes
+     */
+    @Test
+    public void depthTest() throws CrawlException {
+        Room start = PagedWorldTest.grid(10);
+        for (int d : new int[] {0, 1, 2, 5, 17, 18, 100}) {
+            List<Room> found = list(new ReachableRooms(start, d, null));
+            assertEquals(expected(start, d, null), found);
+            int n = Math.min(d, 18) + 1;    // rooms with x + y <= d
+            int size = 0;
+            for (int i = 0; i < n; ++i) {
+                size += (i < 10) ? i + 1 : 19 - i;
+            }
+            assertEquals(size, found.size());
+        }
+        assertEquals(1, list(new ReachableRooms(start, 0, null)).size());
+    }
+
+    /** Method stopTest(): Test keeping the walk from going past some rooms
+     */
+    @Test
+    public void stopTest() throws CrawlException {
+        Room start = MapLayoutTest.oddMap();
+        Predicate<Room> stop = r -> r.getDescription().startsWith("2,")
+                || r.getDescription().equals("attic");
+        List<Room> found = list(new ReachableRooms(start,
+                Integer.MAX_VALUE, stop));
+        assertEquals(expected(start, Integer.MAX_VALUE, stop), found);
+        for (Room r : found) {
+            String d = r.getDescription();
+            assertFalse(d, d.startsWith("3,") || d.startsWith("4,")
+                    || d.equals("lane"));
+        }
+        assertEquals(1, list(new ReachableRooms(start, Integer.MAX_VALUE,
+                r -> true)).size());
+        Room random = MapWalkerTest.randomMap(7, 2000, 2000);
+        Predicate<Room> odd = r -> (r.getId() & 1) != 0;
+        assertEquals(expected(random, 6, odd),
+                list(new ReachableRooms(random, 6, odd)));
+    }
+
+    /** Method lazyTest(): Test that a search which stops early only reads
+     * the exits it needed
+     */
+    @Test
+    public void lazyTest() throws CrawlException {
+        List<Counted> chain = new ArrayList<Counted>();
+        for (int i = 0; i < 100; ++i) {
+            chain.add(new Counted("c" + i));
+            if (i > 0) {
+                Room.makeExitPair(chain.get(i - 1), chain.get(i),
+                        "East", "West");
+            }
+        }
+        for (Counted c : chain) {
+            c.reads = 0;
+        }
+        Room found = new ReachableRooms(chain.get(0)).stream()
+                .filter(r -> r.getDescription().equals("c10"))
+                .findFirst().get();
+        assertSame(chain.get(10), found);
+        for (int i = 0; i < chain.size(); ++i) {
+            assertEquals("c" + i, (i < 10) ? 1 : 0, chain.get(i).reads);
+        }
+    }
+
+    /** Method spliteratorTest(): Test the spliterator's characteristics
+     */
+    @Test
+    public void spliteratorTest() throws CrawlException {
+        Room start = PagedWorldTest.grid(5);
+        Spliterator<Room> s = new ReachableRooms(start).spliterator();
+        assertTrue(s.hasCharacteristics(Spliterator.ORDERED));
+        assertTrue(s.hasCharacteristics(Spliterator.DISTINCT));
+        assertTrue(s.hasCharacteristics(Spliterator.NONNULL));
+        List<Room> out = new ArrayList<Room>();
+        s.forEachRemaining(out::add);
+        assertEquals(MapWalkerTest.reference(start), out);
+        assertEquals(25, new ReachableRooms(start).stream().count());
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/** Class RoomGraphTest: JUnit4 Testing Class for serialising Rooms (Class
+ * RoomGraph) and MapIO.serializeMap
+ * @author JF
+ */
+public class RoomGraphTest {
+    /** Method copy(): Serialise a Room and read it back
+     */
+    private static Room copy(Room room)
+            throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(room);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            return (Room) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Method smallMapTest(): Test serialising a map, with everything in
+     * it (the Player stays in its room)
+     */
+    @Test
+    public void smallMapTest()
+            throws IOException, ClassNotFoundException, CrawlException {
+        Room r1 = copy(MapIOTest.smallMap());
+        assertEquals("r1", r1.getDescription());
+        Room r2 = r1.getExits().get("East");
+        assertSame(r1, r2.getExits().get("West"));
+        assertEquals("r3", r2.getExits().get("North").getDescription());
+        assertEquals(2, r2.getContents().size());
+        assertEquals("E;7;me;the explorer", r2.getContents().get(0).repr());
+        assertEquals("gold", r2.getContents().get(1).getShortDescription());
+    }
+
+    /** Method deepTest(): Test serialising a chain far longer than the
+     * stack could follow one exit at a time
+     */
+    @Test
+    public void deepTest() throws IOException, CrawlException {
+        int n = 200000;
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.serializeMap(MapIOTest.chain(n), name));
+        Room r = MapIO.deserializeMap(name);
+        assertNotNull(r);
+        for (int i = 0; i < n - 1; ++i) {
+            assertEquals("r" + i, r.getDescription());
+            r = r.getExits().get("East");
+        }
+        assertEquals("r" + (n - 1), r.getDescription());
+        assertNull(r.getExits().get("East"));
+    }
+
+    /** Method middleTest(): Test serialising a Room which is not the start
+     * of its map, which should come back as the same Room
+     */
+    @Test
+    public void middleTest()
+            throws IOException, ClassNotFoundException, CrawlException {
+        Room r2 = copy(MapIOTest.smallMap().getExits().get("East"));
+        assertEquals("r2", r2.getDescription());
+        assertEquals("r1", r2.getExits().get("West").getDescription());
+        assertSame(r2, r2.getExits().get("West").getExits().get("East"));
+    }
+
+    /** Method missingTest(): Test reading a file which is not there
+     */
+    @Test
+    public void missingTest() throws IOException {
+        String name = MapIOTest.tempMap();
+        assertNull(MapIO.deserializeMap(name));
+    }
+}
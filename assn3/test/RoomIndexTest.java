@@ -0,0 +1,90 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/** Class RoomIndexTest: JUnit4 Testing Class for reading single rooms
+ * with Class RoomIndex and MapIO.readRoom
+ * @author JF
+ */
+public class RoomIndexTest {
+    /** Method readTest(): Test reading each room of a map on its own
+     */
+    @Test
+    public void readTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.smallMap(), name,
+                MapIO.SaveOption.ROOM_INDEX));
+        assertTrue(new File(name + ".idx").isFile());
+        RoomRecord r1 = MapIO.readRoom(name, 0);
+        assertEquals("r1", r1.getDescription());
+        assertEquals(1, r1.getExitCount());
+        assertEquals("East", r1.getExitLabel(0));
+        assertEquals(1, r1.getExitTarget(0));
+        assertTrue(r1.getContents().isEmpty());
+        RoomRecord r2 = MapIO.readRoom(name, 1);
+        assertEquals("r2", r2.getDescription());
+        assertEquals(2, r2.getExitCount());
+        assertEquals(2, r2.getContents().size());
+        RoomRecord r3 = MapIO.readRoom(name, 2);
+        assertEquals("r3", r3.getDescription());
+        assertNull(MapIO.readRoom(name, 3));
+        assertNull(MapIO.readRoom(name, -1));
+
+        RoomIndex index = new RoomIndex(name);
+        try {
+            assertEquals(3, index.size());
+            assertEquals(1, index.getPlayerRoom());
+            assertEquals("r3", index.read(2, null).getDescription());
+        } finally {
+            index.close();
+        }
+    }
+
+    /** Method buildTest(): Test that a missing index is built on first use
+     * and a fresh one is used as it is
+     */
+    @Test
+    public void buildTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.chain(20), name));
+        File idx = new File(name + ".idx");
+        assertFalse(idx.exists());
+        assertEquals("r7", MapIO.readRoom(name, 7).getDescription());
+        assertTrue(idx.isFile());
+        assertTrue(idx.setLastModified(1000000000000L));
+        assertEquals("r8", MapIO.readRoom(name, 8).getDescription());
+        assertEquals(1000000000000L, idx.lastModified());
+    }
+
+    /** Method changedTest(): Test reading rooms after the map has been
+     * saved again and after it has been changed in place without its
+     * length or modification time changing
+     */
+    @Test
+    public void changedTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        assertTrue(MapIO.saveMap(MapIOTest.chain(20), name,
+                MapIO.SaveOption.ROOM_INDEX));
+        assertEquals("r3", MapIO.readRoom(name, 3).getDescription());
+
+        Room first = MapIOTest.chain(20);
+        first.setDescription("start");
+        assertTrue(MapIO.saveMap(first, name));
+        assertEquals("start", MapIO.readRoom(name, 0).getDescription());
+        assertEquals("r3", MapIO.readRoom(name, 3).getDescription());
+
+        File f = new File(name);
+        long modified = f.lastModified();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.seek(raf.readLine().length() + 1);
+            raf.write("begin".getBytes("US-ASCII"));
+        } finally {
+            raf.close();
+        }
+        assertTrue(f.setLastModified(modified));
+        assertEquals("begin", MapIO.readRoom(name, 0).getDescription());
+    }
+}
@@ -0,0 +1,162 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/** Class SaveTrackerTest: JUnit4 Testing Class for saving changes to a map
+ * through a journal with Class SaveTracker
+ * @author JF
+ */
+public class SaveTrackerTest {
+    /** Method replayTest(): Test that loadMap applies saved changes,
+     * including Rooms linked in after the base was written
+     */
+    @Test
+    public void replayTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        SaveTracker st = SaveTracker.create(r1, name);
+        assertNotNull(st);
+        Room r2 = r1.getExits().get("East");
+        r2.setDescription("changed");
+        Room added = new Room("added");
+        Room.makeExitPair(r1, added, "South", "North");
+        assertTrue(st.saveChanges());
+        assertEquals(0, st.getChangedCount());
+        assertTrue(st.close());
+        assertTrue(new File(name + ".journal").length() > 0);
+
+        Object[] loaded = MapIO.loadMap(name);
+        assertNotNull(loaded);
+        Room l1 = (Room) loaded[1];
+        assertEquals("changed", l1.getExits().get("East").getDescription());
+        assertEquals("added", l1.getExits().get("South").getDescription());
+        assertSame(l1, l1.getExits().get("South").getExits().get("North"));
+        assertEquals("me", ((Thing) loaded[0]).getShortDescription());
+    }
+
+    /** Method openTest(): Test reopening a tracked map and saving more
+     * changes on top of the journal
+     */
+    @Test
+    public void openTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        SaveTracker st = SaveTracker.create(r1, name);
+        r1.setDescription("first");
+        assertTrue(st.saveChanges());
+        assertTrue(st.close());
+
+        st = SaveTracker.open(name);
+        assertNotNull(st);
+        assertEquals("first", st.getRoot().getDescription());
+        Room r2 = st.getRoot().getExits().get("East");
+        r2.enter(st.getPlayer());
+        r2.getExits().get("North").setDescription("second");
+        assertTrue(st.saveChanges());
+        assertTrue(st.close());
+
+        MapIOTest.checkSmallMap(renamed(MapIO.loadMap(name)));
+    }
+
+    /** Method tornTest(): Test that a journal whose last line was cut off
+     * (eg by a crash part way through a save) loads as if that save had
+     * not happened
+     */
+    @Test
+    public void tornTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        SaveTracker st = SaveTracker.create(r1, name);
+        r1.setDescription("kept");
+        assertTrue(st.saveChanges());
+        r1.getExits().get("East").setDescription("lost");
+        assertTrue(st.saveChanges());
+        assertTrue(st.close());
+
+        RandomAccessFile journal = new RandomAccessFile(name + ".journal",
+                "rw");
+        try {
+            journal.setLength(journal.length() - 1);
+        } finally {
+            journal.close();
+        }
+        Object[] loaded = MapIO.loadMap(name);
+        assertNotNull(loaded);
+        Room l1 = (Room) loaded[1];
+        assertEquals("kept", l1.getDescription());
+        assertEquals("r2", l1.getExits().get("East").getDescription());
+        assertNotNull(loaded[0]);
+    }
+
+    /** Method compactTest(): Test folding the journal into a new base
+     */
+    @Test
+    public void compactTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        SaveTracker st = SaveTracker.create(r1, name);
+        r1.setDescription("compacted");
+        assertTrue(st.saveChanges());
+        assertTrue(st.compact());
+        assertTrue(st.close());
+        assertFalse(new File(name + ".journal").exists()
+                && (new File(name + ".journal").length() > 0));
+        Object[] loaded = MapIO.loadMap(name);
+        assertEquals("compacted", ((Room) loaded[1]).getDescription());
+    }
+
+    /** Method failedCompactTest(): Test that a compact which can not write
+     * the new base leaves the journal in use, so later saves are kept
+     */
+    @Test
+    public void failedCompactTest() throws IOException, CrawlException {
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        SaveTracker st = SaveTracker.create(r1, name);
+        r1.setDescription("before");
+        assertTrue(st.saveChanges());
+
+        /* A non-empty directory in the way stops the base being replaced */
+        File base = new File(name);
+        File moved = new File(name + ".moved");
+        moved.deleteOnExit();
+        assertTrue(base.renameTo(moved));
+        File blocker = new File(base, "blocker");
+        assertTrue(base.mkdir());
+        assertTrue(blocker.createNewFile());
+        r1.getExits().get("East").setDescription("during");
+        assertFalse(st.compact());
+        assertTrue(blocker.delete());
+        assertTrue(base.delete());
+        assertTrue(moved.renameTo(base));
+
+        assertTrue(st.saveChanges());
+        r1.getExits().get("East").getExits().get("North")
+                .setDescription("after");
+        assertTrue(st.saveChanges());
+        assertTrue(st.close());
+        Object[] loaded = MapIO.loadMap(name);
+        assertNotNull(loaded);
+        Room l1 = (Room) loaded[1];
+        assertEquals("before", l1.getDescription());
+        Room l2 = l1.getExits().get("East");
+        assertEquals("during", l2.getDescription());
+        assertEquals("after", l2.getExits().get("North").getDescription());
+    }
+
+    /** Method renamed(): Undo the descriptions openTest() changed so the
+     * result can be compared with smallMap()
+     */
+    private static Object[] renamed(Object[] loaded) {
+        assertNotNull(loaded);
+        Room r1 = (Room) loaded[1];
+        assertEquals("first", r1.getDescription());
+        Room r3 = r1.getExits().get("East").getExits().get("North");
+        assertEquals("second", r3.getDescription());
+        r1.setDescription("r1");
+        r3.setDescription("r3");
+        return loaded;
+    }
+}
@@ -0,0 +1,158 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/** Class SpatialIndexTest: JUnit4 Testing Class for Class SpatialIndex,
+ * checking its queries against going through every room
+ * @author JF
+ */
+public class SpatialIndexTest {
+    /** Method fill(): Index (and return) rooms on random cells, some of
+     * them shared, then take some of them out again
+     */
+    private static CoordTable fill(SpatialIndex index, Random random,
+            int count, int spread) {
+        CoordTable all = new CoordTable();
+        List<Room> rooms = new ArrayList<Room>();
+        for (int i = 0; i < count; ++i) {
+            Room r = new Room("r" + i);
+            int x = random.nextInt(spread * 2 + 1) - spread;
+            int y = random.nextInt(spread * 2 + 1) - spread;
+            index.add(r, x, y);
+            all.put(r, x, y);
+            rooms.add(r);
+        }
+        for (int i = 0; i < count / 4; ++i) {
+            Room r = rooms.get(random.nextInt(count));
+            if (all.contains(r)) {
+                assertTrue(index.remove(r, all.getX(r), all.getY(r)));
+                all.remove(r);
+            }
+        }
+        return all;
+    }
+
+    /** Method squared(): Squared distance from a room to a cell
+     */
+    private static long squared(CoordTable all, Room r, int x, int y) {
+        long dx = all.getX(r) - (long)x;
+        long dy = all.getY(r) - (long)y;
+        return dx * dx + dy * dy;
+    }
+
+    /** Method rectangleTest(): Test rectangle and single cell queries
+     */
+    @Test
+    public void rectangleTest() {
+        Random random = new Random(21);
+        SpatialIndex index = new SpatialIndex();
+        CoordTable all = fill(index, random, 4000, 80);
+        assertEquals(all.size(), index.size());
+        for (int q = 0; q < 300; ++q) {
+            int x0 = random.nextInt(240) - 120;
+            int y0 = random.nextInt(240) - 120;
+            int x1 = x0 + random.nextInt(q % 3 == 0 ? 3 : 70) - 1;
+            int y1 = y0 + random.nextInt(q % 3 == 0 ? 3 : 70) - 1;
+            Set<Room> expected = new HashSet<Room>();
+            all.forEach((r, x, y) -> {
+                if ((x >= x0) && (x <= x1) && (y >= y0) && (y <= y1)) {
+                    expected.add(r);
+                }
+            });
+            List<Room> found = new ArrayList<Room>();
+            index.query(x0, y0, x1, y1, (r, x, y) -> {
+                assertEquals(all.get(r), CoordTable.pack(x, y));
+                found.add(r);
+            });
+            assertEquals(expected.size(), found.size());
+            assertEquals(expected, new HashSet<Room>(found));
+            Set<Room> here = new HashSet<Room>();
+            all.forEach((r, x, y) -> {
+                if ((x == x0) && (y == y0)) {
+                    here.add(r);
+                }
+            });
+            assertEquals(here, new HashSet<Room>(index.at(x0, y0)));
+        }
+    }
+
+    /** Method nearestTest(): Test nearest against sorting every room by
+     * distance, including cells far outside the rooms
+     */
+    @Test
+    public void nearestTest() {
+        Random random = new Random(22);
+        SpatialIndex index = new SpatialIndex();
+        CoordTable all = fill(index, random, 3000, 100);
+        for (int q = 0; q < 200; ++q) {
+            int x = random.nextInt(q % 4 == 0 ? 2000 : 240) - 120;
+            int y = random.nextInt(q % 4 == 0 ? 2000 : 240) - 120;
+            int k = 1 + random.nextInt(q % 5 == 0 ? 400 : 12);
+            List<Long> dists = new ArrayList<Long>();
+            all.forEach((r, rx, ry) -> dists.add(squared(all, r, x, y)));
+            Collections.sort(dists);
+            List<Room> found = index.nearest(x, y, k);
+            assertEquals(Math.min(k, all.size()), found.size());
+            assertEquals(found.size(), new HashSet<Room>(found).size());
+            for (int i = 0; i < found.size(); ++i) {
+                assertEquals(dists.get(i).longValue(),
+                        squared(all, found.get(i), x, y));
+            }
+        }
+        assertEquals(0, index.nearest(0, 0, 0).size());
+        assertEquals(0, new SpatialIndex().nearest(0, 0, 5).size());
+    }
+
+    /** Method collisionsTest(): Test finding rooms which share a cell
+     */
+    @Test
+    public void collisionsTest() {
+        Random random = new Random(23);
+        SpatialIndex index = new SpatialIndex();
+        CoordTable all = fill(index, random, 1500, 30);
+        Map<Long, Set<Room>> byCell = new HashMap<Long, Set<Room>>();
+        all.forEach((r, x, y) -> byCell.computeIfAbsent(
+                CoordTable.pack(x, y), c -> new HashSet<Room>()).add(r));
+        Set<Set<Room>> expected = new HashSet<Set<Room>>();
+        for (Set<Room> s : byCell.values()) {
+            if (s.size() > 1) {
+                expected.add(s);
+            }
+        }
+        Set<Set<Room>> found = new HashSet<Set<Room>>();
+        for (List<Room> same : index.collisions()) {
+            found.add(new HashSet<Room>(same));
+        }
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, found);
+        assertEquals(0, new SpatialIndex(new CoordTable()).collisions().size());
+    }
+
+    /** Method mapperTest(): Test an index built from a BoundsMapper
+     */
+    @Test
+    public void mapperTest() throws CrawlException {
+        Room root = PagedWorldTest.grid(40);
+        BoundsMapper bm = new BoundsMapper(root);
+        bm.walk();
+        SpatialIndex index = bm.index();
+        assertEquals(1600, index.size());
+        assertEquals(0, index.collisions().size());
+        assertEquals(Collections.singletonList(root), index.at(0, 0));
+        assertEquals(Collections.singletonList(root), index.nearest(-5, -5, 1));
+        List<Room> found = new ArrayList<Room>();
+        index.query(10, 10, 19, 14, (r, x, y) -> found.add(r));
+        assertEquals(50, found.size());
+        for (Room r : found) {
+            assertSame(r, bm.coords.at(bm.coords.getX(r), bm.coords.getY(r)));
+        }
+        assertFalse(index.remove(new Room("other"), 0, 0));
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+
+/** Class ThingCodecsTest: JUnit4 Testing Class for the Thing codec
+ * registry (Class ThingCodecs) and MapIO.decodeThing
+ * @author JF
+ */
+public class ThingCodecsTest {
+    /** Class Lamp: A Thing type known only to these tests */
+    private static class Lamp extends Thing {
+        private static final long serialVersionUID = 1L;
+
+        final int brightness;
+
+        Lamp(String shortDescription, int brightness) {
+            super(shortDescription, shortDescription);
+            this.brightness = brightness;
+        }
+
+        @Override
+        public String repr() {
+            return "Z;" + brightness + ";" + getShort();
+        }
+    }
+
+    /** Codec for Lamps */
+    private static final ThingCodec<Lamp> LAMP = new ThingCodec<Lamp>() {
+        public char tag() {
+            return 'Z';
+        }
+
+        public Class<Lamp> type() {
+            return Lamp.class;
+        }
+
+        public void encode(Lamp lamp, ThingWriter out) throws IOException {
+            out.number(lamp.brightness);
+            out.text(lamp.getShort());
+        }
+
+        public Lamp decode(ThingReader in, Room root) {
+            if (in.fieldCount() != 3) {
+                return null;
+            }
+            return new Lamp(in.text(2), in.intField(1));
+        }
+    };
+
+    /** Method builtInTest(): Test that each built in type decodes as its
+     * own decode method does and encodes as its repr() does
+     */
+    @Test
+    public void builtInTest() {
+        Room root = new Room("root");
+        String[] encodings = {"$;2.50000;gold", "$;-1.00000;debt",
+            "C;14.50000;2;cat;a cat", "C;0.00000;0;a;b", "E;7;me;the explorer",
+            "E;-3;x;y", "B;bob;the builder", "B;bob;the builder;extra"};
+        for (String s : encodings) {
+            Thing expected;
+            switch (s.charAt(0)) {
+            case '$':
+                expected = Treasure.decode(s);
+                break;
+            case 'C':
+                expected = Critter.decode(s);
+                break;
+            case 'E':
+                expected = Explorer.decode(s);
+                break;
+            default:
+                expected = Builder.decode(s, root);
+                break;
+            }
+            Thing t = MapIO.decodeThing(s, root);
+            assertNotNull(s, t);
+            assertSame(expected.getClass(), t.getClass());
+            assertEquals(expected.repr(), t.repr());
+            assertEquals(t.repr(), ThingCodecs.encode(t));
+        }
+    }
+
+    /** Method badTest(): Test encodings which are not valid
+     */
+    @Test
+    public void badTest() {
+        Room root = new Room("root");
+        String[] encodings = {null, "", "?;1;x", "$;gold;2.5", "$;1.0",
+            "C;1.0;x;cat;a cat", "E;7;me", "$;1.0;a;b"};
+        for (String s : encodings) {
+            assertNull(s, MapIO.decodeThing(s, root));
+        }
+        assertNull(MapIO.decodeThing("$;2.50000;gold", null));
+    }
+
+    /** Method registerTest(): Test adding a codec for a new type, which
+     * is then saved and loaded with the map
+     */
+    @Test
+    public void registerTest() throws IOException, CrawlException {
+        ThingCodecs.register(LAMP);
+        assertSame(LAMP, ThingCodecs.forTag('Z'));
+        Thing t = MapIO.decodeThing("Z;40;lamp", new Room("root"));
+        assertTrue(t instanceof Lamp);
+        assertEquals(40, ((Lamp) t).brightness);
+        assertEquals("Z;40;lamp", ThingCodecs.encode(t));
+
+        String name = MapIOTest.tempMap();
+        Room r1 = MapIOTest.smallMap();
+        r1.enter(new Lamp("lamp", 60));
+        assertTrue(MapIO.saveMap(r1, name));
+        Object[] loaded = MapIO.loadMap(name);
+        Thing lamp = ((Room) loaded[1]).getContents().get(0);
+        assertEquals("Z;60;lamp", lamp.repr());
+    }
+
+    /** Method badTagTest(): Test that tags which could not be read back
+     * are refused
+     */
+    @Test
+    public void badTagTest() {
+        for (char tag : new char[] {';', '\n', '\u00e9'}) {
+            try {
+                ThingCodecs.register(new ThingCodec<Lamp>() {
+                    public char tag() {
+                        return tag;
+                    }
+
+                    public Class<Lamp> type() {
+                        return Lamp.class;
+                    }
+
+                    public void encode(Lamp lamp, ThingWriter out) {
+                    }
+
+                    public Lamp decode(ThingReader in, Room root) {
+                        return null;
+                    }
+                });
+                fail();
+            } catch (IllegalArgumentException iae) { /* Expected */
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+/** Class ThingWriterTest: JUnit4 Testing Class for writing Things without
+ * repr() with Class ThingWriter
+ * @author JF
+ */
+public class ThingWriterTest {
+    /** Method formatted(): A double as ThingWriter writes it
+     */
+    private static String formatted(double value) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        new ThingWriter(sb).number(value);
+        return sb.substring(1);     // drop the ';'
+    }
+
+    /** Method checkDouble(): Check a double is written as
+     * String.format("%.5f") would
+     */
+    private static void checkDouble(double value) throws IOException {
+        assertEquals(Double.toString(value), String.format("%.5f", value),
+                formatted(value));
+    }
+
+    /** Method edgeTest(): Test doubles at or near rounding boundaries and
+     * the limits of the fast path
+     */
+    @Test
+    public void edgeTest() throws IOException {
+        double[] values = {0, -0.0, 0.000005, 0.000015, 0.000025, -0.000005,
+            0.0000049999, 1.000005, 2.675, 1.005, 0.123455, -0.123455,
+            0.5, 99999.999995, 999999999.999995, 999999999.99999, 1e9,
+            1e9 - 1, -1e9, 1e-10, -1e-10, 1e300, -1e300, Double.MIN_VALUE,
+            Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Long.MAX_VALUE, 14.5, 2.41, -2};
+        for (double v : values) {
+            checkDouble(v);
+        }
+    }
+
+    /** Method randomTest(): Test doubles of many sizes, including ones
+     * which end in exactly half of the last place written
+     */
+    @Test
+    public void randomTest() throws IOException {
+        Random random = new Random(12345);
+        for (int i = 0; i < 200000; ++i) {
+            double scale = Math.pow(10, random.nextInt(19) - 6);
+            double v = random.nextDouble() * scale;
+            checkDouble(random.nextBoolean() ? v : -v);
+            long units = random.nextInt(2000000000);
+            checkDouble((units + 0.5) / 100000);
+            checkDouble(Math.nextUp((units + 0.5) / 100000));
+            checkDouble(Math.nextDown((units + 0.5) / 100000));
+        }
+    }
+
+    /** Method localeTest(): Test a locale which does not use '.' for the
+     * decimal point
+     */
+    @Test
+    public void localeTest() throws IOException {
+        Locale old = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+            checkDouble(2.5);
+            checkDouble(-1234.567891);
+            assertEquals("2,50000", formatted(2.5));
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, old);
+        }
+        assertEquals("2.50000", formatted(2.5));
+    }
+
+    /** Method intTest(): Test int fields
+     */
+    @Test
+    public void intTest() throws IOException {
+        int[] values = {0, 1, -1, 10, 123456789, Integer.MAX_VALUE,
+            Integer.MIN_VALUE};
+        for (int v : values) {
+            StringBuilder sb = new StringBuilder();
+            new ThingWriter(sb).number(v);
+            assertEquals(";" + v, sb.toString());
+        }
+    }
+
+    /** Method reprTest(): Test that writeTo() writes what repr() gives for
+     * each type of Thing, including types without a codec
+     */
+    @Test
+    public void reprTest() throws IOException {
+        Room root = new Room("root");
+        Thing[] things = {new Treasure("gold", 1.0 / 3),
+            new Treasure("debt", -2.675), new Critter("cat", "a cat", 14.5, 2),
+            new Explorer("me", "the explorer", 7),
+            new Builder("bob", "the builder", root),
+            new Thing("plain", "a plain thing") {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public String repr() {
+                    return "P;plain";
+                }
+            }};
+        StringBuilder all = new StringBuilder();
+        ThingWriter writer = new ThingWriter(all);
+        for (Thing t : things) {
+            StringBuilder sb = new StringBuilder();
+            t.writeTo(sb);
+            assertEquals(t.repr(), sb.toString());
+            writer.write(t);
+            all.append('\n');
+        }
+        StringBuilder expected = new StringBuilder();
+        for (Thing t : things) {
+            expected.append(t.repr()).append('\n');
+        }
+        assertEquals(expected.toString(), all.toString());
+    }
+}